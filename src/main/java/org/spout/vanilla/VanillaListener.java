@@ -41,9 +41,13 @@ import org.spout.api.event.entity.EntityHiddenEvent;
 import org.spout.api.event.entity.EntityShownEvent;
 import org.spout.api.event.player.PlayerJoinEvent;
 import org.spout.api.event.server.permissions.PermissionNodeEvent;
+import org.spout.api.event.world.WorldUnloadEvent;
+import org.spout.api.geo.cuboid.Block;
+import org.spout.api.geo.cuboid.Chunk;
 import org.spout.api.material.BlockMaterial;
 import org.spout.api.material.block.BlockSnapshot;
 
+import org.spout.vanilla.ai.sensor.EntityGrid;
 import org.spout.vanilla.component.entity.inventory.PlayerInventory;
 import org.spout.vanilla.component.entity.inventory.WindowHolder;
 import org.spout.vanilla.component.entity.living.Human;
@@ -61,6 +65,7 @@ import org.spout.vanilla.component.entity.player.hud.VanillaDrowning;
 import org.spout.vanilla.component.entity.player.hud.VanillaExpBar;
 import org.spout.vanilla.component.entity.player.hud.VanillaHunger;
 import org.spout.vanilla.component.entity.player.hud.VanillaQuickbar;
+import org.spout.vanilla.component.entity.substance.ItemIndex;
 import org.spout.vanilla.component.world.sky.Sky;
 import org.spout.vanilla.data.configuration.VanillaConfiguration;
 import org.spout.vanilla.event.block.RedstoneChangeEvent;
@@ -68,6 +73,8 @@ import org.spout.vanilla.input.VanillaInputExecutor;
 import org.spout.vanilla.material.block.redstone.RedstoneSource;
 import org.spout.vanilla.protocol.ClientAuthentification;
 import org.spout.vanilla.protocol.PasteExceptionHandler;
+import org.spout.vanilla.protocol.netcache.ColumnPayloadCache;
+import org.spout.vanilla.util.flowing.LiquidSimulator;
 
 public class VanillaListener implements Listener {
 	private final VanillaPlugin plugin;
@@ -172,6 +179,23 @@ public class VanillaListener implements Listener {
 		}
 	}
 
+	@EventHandler(order = Order.MONITOR)
+	public void onBlockChanged(BlockChangeEvent event) {
+		if (event.isCancelled()) {
+			return;
+		}
+		// invalidate once per change, whether or not a player views the column
+		Block block = event.getBlock();
+		ColumnPayloadCache.INSTANCE.invalidate(block.getWorld(), block.getX() >> Chunk.BLOCKS.BITS, block.getZ() >> Chunk.BLOCKS.BITS);
+	}
+
+	@EventHandler
+	public void onWorldUnload(WorldUnloadEvent event) {
+		ItemIndex.unload(event.getWorld());
+		EntityGrid.unload(event.getWorld());
+		LiquidSimulator.unload(event.getWorld());
+	}
+
 	@EventHandler
 	public void onEntityHide(EntityHiddenEvent event) {
 		//TODO maps, sounds, etc.
@@ -26,10 +26,6 @@
  */
 package org.spout.vanilla.ai.examiner;
 
-import java.util.Set;
-
-import com.google.common.collect.Sets;
-
 import org.spout.api.ai.pathfinder.BlockExaminer;
 import org.spout.api.ai.pathfinder.BlockSource;
 import org.spout.api.ai.pathfinder.PathPoint;
@@ -40,68 +36,88 @@ import org.spout.api.math.Vector3;
 import org.spout.vanilla.material.VanillaMaterials;
 import org.spout.vanilla.material.block.plant.TallGrass;
 
+/**
+ * Examines blocks for the pathfinder of Vanilla entities.<br>
+ * The properties of materials are looked up in a table indexed by material
+ * id, which is built once from the Vanilla materials.
+ */
 public class VanillaBlockExaminer implements BlockExaminer {
-	private boolean canStandIn(Material mat) {
-		return PASSABLE.contains(mat);
-	}
+	private static final byte PASSABLE = 0x1, UNWALKABLE = 0x2, LIQUID = 0x4, SLOW_IN = 0x8, SLOW_ON = 0x10;
+	private static final byte[] FLAGS = new byte[1 << 16];
 
-	private boolean canStandOn(Material mat) {
-		return !UNWALKABLE.contains(mat);
+	static {
+		set(PASSABLE | UNWALKABLE, VanillaMaterials.AIR, VanillaMaterials.DEAD_BUSH, VanillaMaterials.RAIL_DETECTOR, VanillaMaterials.REDSTONE_REPEATER,
+				VanillaMaterials.REDSTONE_REPEATER_OFF, VanillaMaterials.REDSTONE_REPEATER_ON, VanillaMaterials.FENCE_GATE, VanillaMaterials.ITEM_FRAME, VanillaMaterials.LADDER, VanillaMaterials.LEVER,
+				TallGrass.TALL_GRASS, VanillaMaterials.MELON_STEM, VanillaMaterials.NETHER_BRICK_FENCE, VanillaMaterials.PUMPKIN_STEM, VanillaMaterials.RAIL_POWERED, VanillaMaterials.RAIL,
+				VanillaMaterials.ROSE, VanillaMaterials.RED_MUSHROOM, VanillaMaterials.REDSTONE_DUST, VanillaMaterials.REDSTONE_TORCH_OFF,
+				VanillaMaterials.REDSTONE_WIRE, VanillaMaterials.SIGN, VanillaMaterials.SIGN_POST, VanillaMaterials.SNOW, VanillaMaterials.STRING, VanillaMaterials.STONE_BUTTON,
+				VanillaMaterials.SUGAR_CANE_BLOCK, VanillaMaterials.TRIPWIRE, VanillaMaterials.VINES, VanillaMaterials.WALL_SIGN, VanillaMaterials.WHEAT, VanillaMaterials.WATER, VanillaMaterials.WEB,
+				VanillaMaterials.WOOD_BUTTON, VanillaMaterials.WOODEN_DOOR, VanillaMaterials.STATIONARY_WATER);
+		set(UNWALKABLE, VanillaMaterials.LAVA, VanillaMaterials.STATIONARY_LAVA, VanillaMaterials.CACTUS);
+		set(LIQUID, VanillaMaterials.WATER, VanillaMaterials.STATIONARY_WATER, VanillaMaterials.LAVA, VanillaMaterials.STATIONARY_LAVA);
+		set(SLOW_IN, VanillaMaterials.WEB);
+		set(SLOW_ON, VanillaMaterials.SOUL_SAND, VanillaMaterials.ICE);
 	}
 
-	private boolean contains(Material[] search, Material... find) {
-		for (Material haystack : search) {
-			for (Material needle : find) {
-				if (haystack.equals(needle)) {
-					return true;
-				}
-			}
+	private static void set(int flags, Material... materials) {
+		for (Material material : materials) {
+			FLAGS[material.getId() & 0xFFFF] |= flags;
 		}
-		return false;
+	}
+
+	private static int getFlags(Material material) {
+		return material == null ? 0 : FLAGS[material.getId() & 0xFFFF];
 	}
 
 	@Override
 	public float getCost(BlockSource source, PathPoint point) {
 		Vector3 pos = point.getVector();
-		Material above = source.getMaterialAt(pos.add(UP));
-		Material below = source.getMaterialAt(pos.add(DOWN));
-		Material in = source.getMaterialAt(pos);
-		if (above == VanillaMaterials.WEB || in == VanillaMaterials.WEB) {
+		return getCost(source, pos.getFloorX(), pos.getFloorY(), pos.getFloorZ());
+	}
+
+	/**
+	 * Gets the cost of moving through the given block.
+	 * @param source to get the materials from
+	 * @param x coordinate of the block
+	 * @param y coordinate of the block
+	 * @param z coordinate of the block
+	 * @return cost of the block
+	 */
+	public float getCost(BlockSource source, int x, int y, int z) {
+		int above = getFlags(source.getMaterialAt(x, y + 1, z));
+		int below = getFlags(source.getMaterialAt(x, y - 1, z));
+		int in = getFlags(source.getMaterialAt(x, y, z));
+		if (((above | in) & SLOW_IN) != 0) {
 			return 1F;
 		}
-		if (below == VanillaMaterials.SOUL_SAND || below == VanillaMaterials.ICE) {
+		if ((below & SLOW_ON) != 0) {
 			return 1F;
 		}
-		if (isLiquid(above, below, in)) {
+		if (((above | below | in) & LIQUID) != 0) {
 			return 0.5F;
 		}
 		return 0.5F; // TODO: add light level-specific costs
 	}
 
-	private boolean isLiquid(Material... materials) {
-		return contains(materials, VanillaMaterials.WATER, VanillaMaterials.STATIONARY_WATER, VanillaMaterials.LAVA, VanillaMaterials.STATIONARY_LAVA);
-	}
-
 	@Override
 	public boolean isPassable(BlockSource source, PathPoint point) {
 		Vector3 pos = point.getVector();
-		Material above = source.getMaterialAt(pos.add(UP));
-		Material below = source.getMaterialAt(pos.add(DOWN));
-		Material in = source.getMaterialAt(pos);
-		if (!(below instanceof BlockMaterial) || !canStandOn(below)) {
+		return isPassable(source, pos.getFloorX(), pos.getFloorY(), pos.getFloorZ());
+	}
+
+	/**
+	 * Gets whether an entity can stand in the given block.
+	 * @param source to get the materials from
+	 * @param x coordinate of the block
+	 * @param y coordinate of the block
+	 * @param z coordinate of the block
+	 * @return True if passable
+	 */
+	public boolean isPassable(BlockSource source, int x, int y, int z) {
+		Material below = source.getMaterialAt(x, y - 1, z);
+		if (!(below instanceof BlockMaterial) || (getFlags(below) & UNWALKABLE) != 0) {
 			return false;
 		}
-		return !(!canStandIn(above) || !canStandIn(in));
+		return (getFlags(source.getMaterialAt(x, y, z)) & PASSABLE) != 0 && (getFlags(source.getMaterialAt(x, y + 1, z)) & PASSABLE) != 0;
 	}
-
-	private static final Vector3 DOWN = new Vector3(0, -1, 0);
-	private static final Set<Material> PASSABLE = Sets.newHashSet(VanillaMaterials.AIR, VanillaMaterials.DEAD_BUSH, VanillaMaterials.RAIL_DETECTOR, VanillaMaterials.REDSTONE_REPEATER,
-			VanillaMaterials.REDSTONE_REPEATER_OFF, VanillaMaterials.REDSTONE_REPEATER_ON, VanillaMaterials.FENCE_GATE, VanillaMaterials.ITEM_FRAME, VanillaMaterials.LADDER, VanillaMaterials.LEVER,
-			TallGrass.TALL_GRASS, VanillaMaterials.MELON_STEM, VanillaMaterials.NETHER_BRICK_FENCE, VanillaMaterials.PUMPKIN_STEM, VanillaMaterials.RAIL_POWERED, VanillaMaterials.RAIL,
-			VanillaMaterials.ROSE, VanillaMaterials.RED_MUSHROOM, VanillaMaterials.REDSTONE_DUST, VanillaMaterials.REDSTONE_TORCH_OFF, VanillaMaterials.REDSTONE_TORCH_OFF,
-			VanillaMaterials.REDSTONE_WIRE, VanillaMaterials.SIGN, VanillaMaterials.SIGN_POST, VanillaMaterials.SNOW, VanillaMaterials.STRING, VanillaMaterials.STONE_BUTTON,
-			VanillaMaterials.SUGAR_CANE_BLOCK, VanillaMaterials.TRIPWIRE, VanillaMaterials.VINES, VanillaMaterials.WALL_SIGN, VanillaMaterials.WHEAT, VanillaMaterials.WATER, VanillaMaterials.WEB,
-			VanillaMaterials.WOOD_BUTTON, VanillaMaterials.WOODEN_DOOR, VanillaMaterials.STATIONARY_WATER);
-	private static final Set<Material> UNWALKABLE = Sets.union(Sets.newHashSet(VanillaMaterials.AIR, VanillaMaterials.LAVA, VanillaMaterials.STATIONARY_LAVA, VanillaMaterials.CACTUS), PASSABLE);
-	private static final Vector3 UP = new Vector3(0, 1, 0);
 }
@@ -0,0 +1,246 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.ai.sensor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import org.spout.api.component.type.EntityComponent;
+import org.spout.api.entity.Entity;
+import org.spout.api.entity.Player;
+import org.spout.api.geo.LoadOption;
+import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.geo.discrete.Point;
+
+/**
+ * A per-tick grid of the entities in a world, bucketed by component type.<br>
+ * The cells are chunks, and a cell of a type is filled from the entities of
+ * its chunk the first time a sensor needs it in a tick. Everything is thrown
+ * away when the world age changes. Queries are answered per cell, so all
+ * agents standing in the same cell share one candidate list.
+ */
+public class EntityGrid {
+	private static final ConcurrentHashMap<World, EntityGrid> grids = new ConcurrentHashMap<World, EntityGrid>();
+	private static final int CELL_BITS = Chunk.BLOCKS.BITS;
+	private static final int CELL_SIZE = Chunk.BLOCKS.SIZE;
+	private final World world;
+	private volatile Tick tick;
+
+	private EntityGrid(World world) {
+		this.world = world;
+		this.tick = new Tick(-1);
+	}
+
+	/**
+	 * Gets the grid of the given world.
+	 * @param world to get the grid of
+	 * @return the grid
+	 */
+	public static EntityGrid get(World world) {
+		EntityGrid grid = grids.get(world);
+		if (grid == null) {
+			grid = new EntityGrid(world);
+			EntityGrid previous = grids.putIfAbsent(world, grid);
+			if (previous != null) {
+				grid = previous;
+			}
+		}
+		return grid;
+	}
+
+	/**
+	 * Drops the grid of the given world, called when the world unloads.
+	 * @param world to drop the grid of
+	 */
+	public static void unload(World world) {
+		grids.remove(world);
+	}
+
+	/**
+	 * Gets the entities with the given component that may be within the
+	 * radius of the given position. The list contains all entities in the
+	 * cells overlapping the radius around the cell of the position, so
+	 * callers still need to check the exact distance.<br>
+	 * The list is shared and must not be modified.
+	 * @param type of component the entities have
+	 * @param position to search around
+	 * @param radius to search within
+	 * @return candidate entities
+	 */
+	public List<Entity> getCandidates(Class<? extends EntityComponent> type, Point position, int radius) {
+		return getLayer(type).getCandidates(position, radius);
+	}
+
+	/**
+	 * Gets the players that may be within the radius of the given position.
+	 * @param position to search around
+	 * @param radius to search within
+	 * @return candidate players, which are all {@link Player}s
+	 * @see #getCandidates(Class, Point, int)
+	 */
+	public List<Entity> getPlayerCandidates(Point position, int radius) {
+		return getLayer(Player.class).getCandidates(position, radius);
+	}
+
+	private Layer getLayer(Class<?> type) {
+		long age = world.getAge();
+		Tick current = tick;
+		if (current.age != age) {
+			synchronized (this) {
+				current = tick;
+				if (current.age != age) {
+					current = new Tick(age);
+					tick = current;
+				}
+			}
+		}
+		synchronized (current) {
+			Layer layer = current.layers.get(type);
+			if (layer == null) {
+				layer = new Layer(type);
+				current.layers.put(type, layer);
+			}
+			return layer;
+		}
+	}
+
+	private static long key(int cellX, int cellY, int cellZ) {
+		return ((long) (cellX & 0x1FFFFF) << 42) | ((long) (cellY & 0x1FFFFF) << 21) | (cellZ & 0x1FFFFF);
+	}
+
+	private static class Tick {
+		private final long age;
+		private final Map<Class<?>, Layer> layers = new HashMap<Class<?>, Layer>();
+
+		public Tick(long age) {
+			this.age = age;
+		}
+	}
+
+	private class Layer {
+		private final Class<?> type;
+		private final TLongObjectHashMap<List<Entity>> cells = new TLongObjectHashMap<List<Entity>>();
+		private final TLongObjectHashMap<TIntObjectHashMap<List<Entity>>> results = new TLongObjectHashMap<TIntObjectHashMap<List<Entity>>>();
+
+		public Layer(Class<?> type) {
+			this.type = type;
+			// players are few, so their cells are filled at once
+			if (type == Player.class) {
+				for (Player player : world.getPlayers()) {
+					Point position = player.getScene().getPosition();
+					getCell(position.getBlockX() >> CELL_BITS, position.getBlockY() >> CELL_BITS, position.getBlockZ() >> CELL_BITS, true).add(player);
+				}
+			}
+		}
+
+		private List<Entity> getCell(int cellX, int cellY, int cellZ, boolean create) {
+			long key = key(cellX, cellY, cellZ);
+			List<Entity> cell = cells.get(key);
+			if (cell == null && create) {
+				cell = new ArrayList<Entity>(4);
+				cells.put(key, cell);
+			}
+			return cell;
+		}
+
+		@SuppressWarnings("unchecked")
+		private List<Entity> fill(int cellX, int cellY, int cellZ) {
+			if (type == Player.class) {
+				return getCell(cellX, cellY, cellZ, false);
+			}
+			long key = key(cellX, cellY, cellZ);
+			List<Entity> cell = cells.get(key);
+			if (cell != null) {
+				return cell;
+			}
+			cell = Collections.emptyList();
+			Chunk chunk = world.getChunk(cellX, cellY, cellZ, LoadOption.NO_LOAD);
+			if (chunk != null) {
+				for (Entity entity : chunk.getEntities()) {
+					if (entity.get((Class<? extends EntityComponent>) type) == null) {
+						continue;
+					}
+					if (cell.isEmpty()) {
+						cell = new ArrayList<Entity>(4);
+					}
+					cell.add(entity);
+				}
+			}
+			cells.put(key, cell);
+			return cell;
+		}
+
+		public List<Entity> getCandidates(Point position, int radius) {
+			int cellX = position.getBlockX() >> CELL_BITS;
+			int cellY = position.getBlockY() >> CELL_BITS;
+			int cellZ = position.getBlockZ() >> CELL_BITS;
+			long key = key(cellX, cellY, cellZ);
+			synchronized (this) {
+				TIntObjectHashMap<List<Entity>> byRadius = results.get(key);
+				if (byRadius == null) {
+					byRadius = new TIntObjectHashMap<List<Entity>>(2);
+					results.put(key, byRadius);
+				}
+				List<Entity> result = byRadius.get(radius);
+				if (result == null) {
+					result = collect(cellX, cellY, cellZ, radius);
+					byRadius.put(radius, result);
+				}
+				return result;
+			}
+		}
+
+		private List<Entity> collect(int cellX, int cellY, int cellZ, int radius) {
+			int cellRadius = (radius + CELL_SIZE - 1) >> CELL_BITS;
+			List<Entity> result = null;
+			for (int x = cellX - cellRadius; x <= cellX + cellRadius; x++) {
+				for (int y = cellY - cellRadius; y <= cellY + cellRadius; y++) {
+					for (int z = cellZ - cellRadius; z <= cellZ + cellRadius; z++) {
+						List<Entity> cell = fill(x, y, z);
+						if (cell == null || cell.isEmpty()) {
+							continue;
+						}
+						if (result == null) {
+							result = new ArrayList<Entity>(cell);
+						} else {
+							result.addAll(cell);
+						}
+					}
+				}
+			}
+			return result == null ? Collections.<Entity>emptyList() : Collections.unmodifiableList(result);
+		}
+	}
+}
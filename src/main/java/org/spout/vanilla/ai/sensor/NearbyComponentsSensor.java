@@ -35,6 +35,7 @@ import org.spout.api.ai.goap.PlannerAgent;
 import org.spout.api.ai.goap.WorldState;
 import org.spout.api.component.type.EntityComponent;
 import org.spout.api.entity.Entity;
+import org.spout.api.geo.discrete.Point;
 
 /**
  * Simple Sensor that detects Entities with a specified Component nearby.
@@ -45,6 +46,7 @@ public class NearbyComponentsSensor implements Sensor {
 	private final PlannerAgent agent;
 	private final WorldState state;
 	private final List<Class<? extends EntityComponent>> classes;
+	private final List<Entity> entities = new ArrayList<Entity>();
 	private int radius;
 
 	public NearbyComponentsSensor(PlannerAgent agent, Class<? extends EntityComponent>... classes) {
@@ -58,23 +60,28 @@ public class NearbyComponentsSensor implements Sensor {
 
 	@Override
 	public WorldState generateState() {
-		ArrayList<Entity> entities = new ArrayList<Entity>();
-		for (Entity entity : agent.getEntity().getWorld().getNearbyEntities(agent.getEntity(), radius)) {
-			boolean hasClass = false;
-			for (Class clazz : classes) {
-				if (entity.get(clazz) != null) {
-					hasClass = true;
-					break;
+		Entity owner = agent.getEntity();
+		Point position = owner.getScene().getPosition();
+		EntityGrid grid = EntityGrid.get(owner.getWorld());
+		long radiusSquared = (long) radius * radius;
+		entities.clear();
+		for (int i = 0; i < classes.size(); i++) {
+			List<Entity> candidates = grid.getCandidates(classes.get(i), position, radius);
+			for (int j = 0; j < candidates.size(); j++) {
+				Entity entity = candidates.get(j);
+				if (entity == owner || entity.getScene().getPosition().distanceSquared(position) > radiusSquared) {
+					continue;
 				}
+				if (i > 0 && entities.contains(entity)) {
+					continue;
+				}
+				entities.add(entity);
 			}
-			if (!hasClass) {
-				continue;
-			}
-			entities.add(entity);
 		}
 		boolean found = entities.size() > 0;
 		state.put("hasNearbyEntities", found);
-		state.put("entities", found ? entities : Collections.emptyList());
+		// the state keeps a copy, as the list is refilled on the next cycle
+		state.put("entities", found ? Collections.unmodifiableList(new ArrayList<Entity>(entities)) : Collections.<Entity>emptyList());
 		return state;
 	}
 
@@ -33,7 +33,9 @@ import java.util.List;
 import org.spout.api.ai.Sensor;
 import org.spout.api.ai.goap.PlannerAgent;
 import org.spout.api.ai.goap.WorldState;
+import org.spout.api.entity.Entity;
 import org.spout.api.entity.Player;
+import org.spout.api.geo.discrete.Point;
 import org.spout.api.inventory.ItemStack;
 import org.spout.vanilla.inventory.entity.QuickbarInventory;
 import org.spout.vanilla.material.VanillaMaterial;
@@ -49,6 +51,7 @@ public class NearbyMaterialHolderSensor implements Sensor {
 	private VanillaMaterial material;
 	private WorldState state;
 	private int sensorRadius;
+	private final List<Player> players = new ArrayList<Player>();
 
 	public NearbyMaterialHolderSensor(PlannerAgent agent, VanillaMaterial material) {
 		this.agent = agent;
@@ -58,8 +61,16 @@ public class NearbyMaterialHolderSensor implements Sensor {
 
 	@Override
 	public WorldState generateState() {
-		List<Player> players = new ArrayList<Player>();
-		for (Player player : agent.getEntity().getWorld().getNearbyPlayers(agent.getEntity(), sensorRadius)) {
+		Entity owner = agent.getEntity();
+		Point position = owner.getScene().getPosition();
+		List<Entity> candidates = EntityGrid.get(owner.getWorld()).getPlayerCandidates(position, sensorRadius);
+		long radiusSquared = (long) sensorRadius * sensorRadius;
+		players.clear();
+		for (int i = 0; i < candidates.size(); i++) {
+			Player player = (Player) candidates.get(i);
+			if (player == owner || player.getScene().getPosition().distanceSquared(position) > radiusSquared) {
+				continue;
+			}
 			QuickbarInventory quickbar = PlayerUtil.getQuickbar(player);
 			if (quickbar == null) {
 				continue;
@@ -71,7 +82,8 @@ public class NearbyMaterialHolderSensor implements Sensor {
 		}
 		boolean found = players.size() > 0;
 		state.put("hasNearbyMaterialHolders", found);
-		state.put("players", found ? players : Collections.emptyList());
+		// the state keeps a copy, as the list is refilled on the next cycle
+		state.put("players", found ? Collections.unmodifiableList(new ArrayList<Player>(players)) : Collections.<Player>emptyList());
 		return state;
 	}
 
@@ -62,6 +62,7 @@ import org.spout.api.protocol.event.ProtocolEvent;
 import org.spout.api.util.BlockIterator;
 import org.spout.api.util.OutwardIterator;
 import org.spout.vanilla.VanillaPlugin;
+import org.spout.vanilla.component.block.VanillaBlockComponent;
 import org.spout.vanilla.component.block.material.chest.Chest;
 import org.spout.vanilla.component.entity.VanillaEntityComponent;
 import org.spout.vanilla.component.entity.inventory.PlayerInventory;
@@ -97,8 +98,14 @@ import org.spout.vanilla.material.VanillaMaterials;
 import org.spout.vanilla.material.item.VanillaItemMaterial;
 import org.spout.vanilla.material.map.Map;
 import org.spout.vanilla.protocol.VanillaNetworkSynchronizer;
+import org.spout.vanilla.protocol.VanillaProtocol;
 import org.spout.vanilla.protocol.entity.creature.CreatureType;
 import org.spout.vanilla.protocol.entity.object.ObjectType;
+import org.spout.vanilla.protocol.codec.world.chunk.ChunkBulkCodec;
+import org.spout.vanilla.protocol.netcache.ChunkNetCache;
+import org.spout.vanilla.protocol.netcache.ColumnPayloadCache;
+import org.spout.vanilla.protocol.sync.BlockUpdateBuffer;
+import org.spout.vanilla.protocol.sync.ChunkStreamer;
 import org.spout.vanilla.render.LightRenderEffect;
 import org.spout.vanilla.render.SkyRenderEffect;
 import org.spout.vanilla.util.explosion.ExplosionModels;
@@ -539,6 +546,31 @@ public class TestCommands {
 		}
 	}
 
+	@Command(aliases = "netstats", desc = "Prints network synchronization statistics", max = 0)
+	@CommandPermissions("vanilla.command.debug")
+	public void netstats(CommandContext args, CommandSource source) throws CommandException {
+		source.sendMessage("Block changes: ", BlockUpdateBuffer.getBlocksChanged(), ", packets sent: ", BlockUpdateBuffer.getPacketsSent(), ", packets saved: ", BlockUpdateBuffer.getPacketsSaved());
+		long columns = ChunkBulkCodec.getColumnsEncoded();
+		source.sendMessage("Columns streamed: ", ChunkStreamer.getColumnsStreamed(), " in ", ChunkStreamer.getBulksSent(), " bulks, bytes per column: ", columns == 0 ? 0 : ChunkBulkCodec.getBytesEncoded() / columns);
+		source.sendMessage("Time to first playable: ", ChunkStreamer.getLastTimeToFirstPlayable(), " ms (average ", ChunkStreamer.getAverageTimeToFirstPlayable(), " ms)");
+		ColumnPayloadCache cache = ColumnPayloadCache.INSTANCE;
+		source.sendMessage("Column cache: ", cache.getSize() >> 10, " KB, hits: ", cache.getHits(), ", misses: ", cache.getMisses(), ", evictions: ", cache.getEvictions(), ", invalidations: ", cache.getInvalidations());
+		if (source instanceof Player) {
+			ChunkNetCache netCache = ((Player) source).getSession().getDataMap().get(VanillaProtocol.CHUNK_NET_CACHE);
+			if (netCache != null && netCache.isCacheEnabled()) {
+				source.sendMessage("Chunk net cache: ", netCache.getBytesSaved() >> 10, " KB saved of ", netCache.getBytesHandled() >> 10, " KB, hashing time: ", netCache.getHashTime() / 1000000L, " ms");
+			}
+		}
+	}
+
+	@Command(aliases = "tickstats", desc = "Prints the amount of active and dormant block components and of item merges", max = 0)
+	@CommandPermissions("vanilla.command.debug")
+	public void tickstats(CommandContext args, CommandSource source) throws CommandException {
+		int attached = VanillaBlockComponent.getAttachedCount(), dormant = VanillaBlockComponent.getDormantCount();
+		source.sendMessage("Block components: ", attached, ", active: ", attached - dormant, ", dormant: ", dormant);
+		source.sendMessage("Item merges: ", Item.getMergeCount());
+	}
+
 	@Command(aliases = "spawn", desc = "Spawns a living entity at your location", min = 1, max = 2)
 	public void spawn(CommandContext args, CommandSource source) throws CommandException {
 		final Player player;
@@ -26,14 +26,67 @@
  */
 package org.spout.vanilla.component.block;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.spout.api.component.ChunkComponentOwner;
 import org.spout.api.component.type.BlockComponent;
 import org.spout.api.entity.Entity;
 import org.spout.api.event.player.PlayerInteractEvent.Action;
 import org.spout.api.geo.cuboid.Block;
+import org.spout.api.inventory.Inventory;
+import org.spout.api.inventory.InventoryViewer;
+import org.spout.api.inventory.ItemStack;
 import org.spout.api.material.block.BlockFace;
 
+/**
+ * Base class for the block components of Vanilla.<br>
+ * A component can put itself to sleep when it has nothing to do; it then
+ * stops ticking until it is woken by {@link #wake()}, an inventory change,
+ * a neighbouring block update or the wake time passed to {@link #sleep(long)}.
+ * A wake-up that arrives while a tick is still deciding to sleep is not lost:
+ * the component then stays awake for the next tick.
+ */
 public abstract class VanillaBlockComponent extends BlockComponent {
+	private static final AtomicInteger attachedCount = new AtomicInteger();
+	private static final AtomicInteger dormantCount = new AtomicInteger();
+	private final AtomicBoolean dormant = new AtomicBoolean();
+	private volatile long wakeAge = -1;
+	private volatile long sleepAge;
+	private final AtomicLong dormantTime = new AtomicLong();
+	private final AtomicInteger wakeCount = new AtomicInteger();
+	private int tickWakeCount;
+
+	@Override
+	public void onAttached() {
+		super.onAttached();
+		attachedCount.incrementAndGet();
+	}
+
+	@Override
+	public void onDetached() {
+		super.onDetached();
+		attachedCount.decrementAndGet();
+		if (dormant.getAndSet(false)) {
+			dormantCount.decrementAndGet();
+		}
+	}
+
+	@Override
+	public boolean canTick() {
+		if (dormant.get()) {
+			long wake = wakeAge;
+			if (wake < 0 || getWorldAge() < wake) {
+				return false;
+			}
+			wake();
+		}
+		// Wake-ups after this point cancel a sleep requested by this tick
+		tickWakeCount = wakeCount.get();
+		return true;
+	}
+
 	public void onInteractBy(Entity entity, Action action, BlockFace face) {
 	}
 
@@ -41,4 +94,106 @@ public abstract class VanillaBlockComponent extends BlockComponent {
 		ChunkComponentOwner owner = getOwner();
 		return owner.getChunk().getBlock(owner.getX(), owner.getY(), owner.getZ());
 	}
+
+	/**
+	 * Stops ticking this component until it is woken up.
+	 */
+	public void sleep() {
+		sleepUntil(-1);
+	}
+
+	/**
+	 * Stops ticking this component for the given amount of time, or until
+	 * it is woken up earlier.
+	 * @param delay in milliseconds
+	 */
+	public void sleep(long delay) {
+		sleepUntil(getWorldAge() + Math.max(0, delay));
+	}
+
+	private void sleepUntil(long age) {
+		wakeAge = age;
+		sleepAge = getWorldAge();
+		if (dormant.compareAndSet(false, true)) {
+			dormantCount.incrementAndGet();
+			// Woken up since the tick started, the inventory may have changed
+			if (wakeCount.get() != tickWakeCount) {
+				wake();
+			}
+		}
+	}
+
+	/**
+	 * Resumes ticking this component if it was dormant.
+	 */
+	public void wake() {
+		wakeCount.incrementAndGet();
+		if (dormant.compareAndSet(true, false)) {
+			dormantCount.decrementAndGet();
+			dormantTime.addAndGet(getWorldAge() - sleepAge);
+		}
+	}
+
+	/**
+	 * Gets whether this component is currently dormant.
+	 * @return True if dormant
+	 */
+	public boolean isDormant() {
+		return dormant.get();
+	}
+
+	/**
+	 * Returns the time this component has spent dormant since the last call,
+	 * so that timers can be advanced by it after waking up.
+	 * @return dormant time in seconds
+	 */
+	protected float pollDormantTime() {
+		return dormantTime.getAndSet(0) / 1000f;
+	}
+
+	/**
+	 * Wakes this component up whenever a slot of the given inventory changes.
+	 * @param inventory to watch
+	 */
+	protected void wakeOnChange(Inventory inventory) {
+		for (InventoryViewer viewer : inventory.getViewers()) {
+			if (viewer instanceof WakeViewer && ((WakeViewer) viewer).component == this) {
+				return;
+			}
+		}
+		inventory.addViewer(new WakeViewer(this));
+	}
+
+	private long getWorldAge() {
+		return getOwner().getChunk().getWorld().getAge();
+	}
+
+	/**
+	 * Gets the amount of Vanilla block components that are currently loaded.
+	 * @return loaded components
+	 */
+	public static int getAttachedCount() {
+		return attachedCount.get();
+	}
+
+	/**
+	 * Gets the amount of Vanilla block components that are currently dormant.
+	 * @return dormant components
+	 */
+	public static int getDormantCount() {
+		return dormantCount.get();
+	}
+
+	private static class WakeViewer implements InventoryViewer {
+		private final VanillaBlockComponent component;
+
+		public WakeViewer(VanillaBlockComponent component) {
+			this.component = component;
+		}
+
+		@Override
+		public void onSlotSet(Inventory inventory, int slot, ItemStack item, ItemStack previous) {
+			component.wake();
+		}
+	}
 }
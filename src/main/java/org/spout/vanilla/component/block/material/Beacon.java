@@ -216,7 +216,6 @@ public class Beacon extends ViewedBlockComponent {
 		}
 
 		for (Player player : pos.getWorld().getNearbyPlayers(pos, (int) getEffectRange())) {
-			System.out.println("For: " + player.getName());
 			Effects effects = player.add(Effects.class);
 			effects.addEffect(new EntityEffect(primary, getEffectDuration(), getPrimaryAmplifier()));
 			if (secondary != null && secondary != EntityEffectType.NONE && getLevels() == 4 && primary != secondary) {
@@ -240,10 +239,11 @@ public class Beacon extends ViewedBlockComponent {
 
 	@Override
 	public void onTick(float dt) {
-		if (pulseUpdateDelay(dt) <= 0) {
-			System.out.println("Performing update...");
+		if (pulseUpdateDelay(dt + pollDormantTime()) <= 0) {
 			doUpdate();
 		}
+		// Nothing happens until the next update
+		sleep((long) (getUpdateDelay() * 1000));
 	}
 
 	@Override
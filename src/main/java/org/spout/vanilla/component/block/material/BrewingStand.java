@@ -54,6 +54,12 @@ public class BrewingStand extends ViewedBlockComponent implements Container {
 		return getData().get(VanillaData.BREWING_STAND_INVENTORY);
 	}
 
+	@Override
+	public void onAttached() {
+		super.onAttached();
+		wakeOnChange(getInventory());
+	}
+
 	@Override
 	public void onTick(float dt) {
 		BrewingStandInventory inventory = getInventory();
@@ -81,14 +87,18 @@ public class BrewingStand extends ViewedBlockComponent implements Container {
 						}
 
 						if (((PotionReagent) inventory.getInput().getMaterial()).getResult((PotionItem) output.getMaterial()) == null) {
+							sleep();
 							return;
 						}
 					}
 					input = inventory.getInput(); // Store input just in case it is later removed during the brewing process
 					setBrewTime(1);
 					inventory.addAmount(BrewingStandInventory.INPUT_SLOT, -1);
+					return;
 				}
 			}
+			// Nothing to brew, wait for the inventory to change
+			sleep();
 		} else {
 			// Continue brewing
 			float newBrewTime = getBrewTime() + dt;
@@ -27,9 +27,8 @@
 package org.spout.vanilla.component.block.material;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
@@ -69,7 +68,10 @@ public class CommandBlock extends VanillaBlockComponent implements CommandSource
 	public static final String NEAREST_PLAYER = "" + TARGET_CHAR + NEAREST_PLAYER_CHAR;
 	public static final String RANDOM_PLAYER = "" + TARGET_CHAR + RANDOM_PLAYER_CHAR;
 	public static final String ALL_PLAYERS = "" + TARGET_CHAR + ALL_PLAYERS_CHAR;
+	private static final String TARGET_MARKER = "\0";
 	private String name = "" + TARGET_CHAR;
+	private final Random random = new Random();
+	private volatile CompiledCommand compiled;
 
 	public void setName(String name) {
 		this.name = name;
@@ -94,6 +96,7 @@ public class CommandBlock extends VanillaBlockComponent implements CommandSource
 		}
 
 		getData().put(VanillaData.COMMAND, cmd);
+		compiled = new CompiledCommand(cmd);
 	}
 
 	public void setCommand(String cmd) {
@@ -122,88 +125,69 @@ public class CommandBlock extends VanillaBlockComponent implements CommandSource
 			throw new IllegalStateException("CommandBlocks are run from the server.");
 		}
 
-		String cmd = getCommand();
-		if (cmd == null) {
+		CompiledCommand compiled = getCompiledCommand();
+		if (compiled == null) {
 			return;
 		}
 
-		char[] chars = cmd.toCharArray();
-		int targetIndex = -1;
-		for (int i = 0; i < chars.length; i++) {
-			if (chars[i] == TARGET_CHAR && i + 1 < chars.length && isTarget(chars[i + 1])) {
-				// string contains an identifier
-				targetIndex = i;
-				break;
-			}
+		PlayerFilter filter = compiled.filter;
+		if (filter == null) {
+			compiled.process(null);
+			return;
 		}
 
-		List<String> cmds = new ArrayList<String>();
-		if (targetIndex != -1) {
-
-			// if we found a target, format the command
-			final String statement = getStatement(cmd, targetIndex);
-			final PlayerFilter filter = new PlayerFilter(statement);
-			try {
-				filter.init();
-			} catch (IllegalArgumentException e) {
-				Spout.getLogger().log(java.util.logging.Level.WARNING, "Could not execute CommandBlock at "
-						+ getBlock().getPosition().toString() + " because of illegal syntax.", e);
-			}
-
-			final Point center = new Point(getBlock().getWorld(), filter.x, filter.y, filter.z);
-			final char target = statement.charAt(1);
-			final List<Player> allPlayers = Arrays.asList(((Server) VanillaPlugin.getInstance().getEngine()).getOnlinePlayers());
+		switch (filter.target) {
+			case NEAREST_PLAYER_CHAR:
+				// find the closest suitable player
+				Player nearbyPlayer = filter.findNearest();
+				if (nearbyPlayer != null) {
+					compiled.process(nearbyPlayer.getName());
+				}
+				break;
 
-			switch (target) {
+			case RANDOM_PLAYER_CHAR:
+				// find a random but suitable player in any location
+				Player player = filter.findRandom(getOnlinePlayers());
+				if (player != null) {
+					compiled.process(player.getName());
+				}
+				break;
 
-				case NEAREST_PLAYER_CHAR:
-					// find the closest suitable player
-					List<Player> nearbyPlayers = center.getWorld().getNearbyPlayers(center, filter.maxRadius);
-					Player nearbyPlayer = filter.findPlayer(nearbyPlayers);
-					if (nearbyPlayer == null) {
-						return;
+			case ALL_PLAYERS_CHAR:
+				// use all players, but filter out any players that are not suitable
+				Player[] players = getOnlinePlayers();
+				int entries = 0;
+				for (int i = 0; i < players.length && (filter.playerListSize == 0 || entries < filter.playerListSize); i++) {
+					Player p = players[filter.reversedList ? players.length - 1 - i : i];
+					if (filter.accept(p, true)) {
+						entries++;
+						compiled.process(p.getName());
 					}
-					cmds.add(cmd.replace(statement, nearbyPlayer.getName()));
-					break;
+				}
+				break;
+		}
+	}
 
-				case RANDOM_PLAYER_CHAR:
-					// find a random but suitable player in any location
-					Collections.shuffle(allPlayers);
-					Player player = filter.findPlayer(allPlayers, true);
-					if (player == null) {
-						return;
-					}
-					cmds.add(cmd.replace(statement, player.getName()));
-					break;
+	private Player[] getOnlinePlayers() {
+		return ((Server) VanillaPlugin.getInstance().getEngine()).getOnlinePlayers();
+	}
 
-				case ALL_PLAYERS_CHAR:
-					// use all players, but filter out any players that are not suitable
-					for (Player p : filter.filter(allPlayers, true)) {
-						cmds.add(cmd.replace(statement, p.getName()));
-					}
-					break;
-			}
-		} else {
-			cmds.add(cmd);
+	/**
+	 * Gets the compiled form of the current command, compiling it again if
+	 * the command was changed since.
+	 * @return compiled command, or null if no command is set
+	 */
+	private CompiledCommand getCompiledCommand() {
+		String cmd = getCommand();
+		if (cmd == null) {
+			return null;
 		}
-
-		for (String c : cmds) {
-			// send commands
-			String[] args = c.split(" ");
-			String root = args[0];
-			ChatArguments arguments = new ChatArguments();
-			if (args.length > 1) {
-				for (int i = 1; i < args.length; i++) {
-					arguments.append(args[i]);
-					if (i != args.length - 1) {
-						arguments.append(" ");
-					}
-				}
-			}
-			// TODO: Argument handling doesn't seem to be working... am I doing it wrong?
-			sendMessage("Processing command: " + c);
-			processCommand(root, new ChatArguments(arguments));
+		CompiledCommand c = compiled;
+		if (c == null || !c.source.equals(cmd)) {
+			c = new CompiledCommand(cmd);
+			compiled = c;
 		}
+		return c;
 	}
 
 	private boolean isTarget(char c) {
@@ -218,12 +202,104 @@ public class CommandBlock extends VanillaBlockComponent implements CommandSource
 		return cmd.substring(0, 2);
 	}
 
+	/**
+	 * A command split into its words once, with the target statement cut out
+	 * so that player names can be filled in without parsing it again.
+	 */
+	private class CompiledCommand {
+		private final String source;
+		private final PlayerFilter filter;
+		/**
+		 * The words of the command, each split around the target statement
+		 */
+		private final String[][] words;
+
+		public CompiledCommand(String cmd) {
+			source = cmd;
+
+			char[] chars = cmd.toCharArray();
+			int targetIndex = -1;
+			for (int i = 0; i < chars.length; i++) {
+				if (chars[i] == TARGET_CHAR && i + 1 < chars.length && isTarget(chars[i + 1])) {
+					// string contains an identifier
+					targetIndex = i;
+					break;
+				}
+			}
+
+			String statement = null;
+			if (targetIndex != -1) {
+				statement = getStatement(cmd, targetIndex);
+				filter = new PlayerFilter(statement);
+				try {
+					filter.init();
+				} catch (IllegalArgumentException e) {
+					Spout.getLogger().log(java.util.logging.Level.WARNING, "CommandBlock at "
+							+ getBlock().getPosition().toString() + " has illegal target syntax.", e);
+				}
+			} else {
+				filter = null;
+			}
+
+			// the statement may contain spaces, so mark it before splitting
+			String[] args = (statement == null ? cmd : cmd.replace(statement, TARGET_MARKER)).split(" ");
+			words = new String[args.length][];
+			for (int i = 0; i < args.length; i++) {
+				words[i] = statement == null ? new String[] {args[i]} : cut(args[i]);
+			}
+		}
+
+		private String[] cut(String word) {
+			List<String> pieces = new ArrayList<String>(2);
+			int from = 0, index;
+			while ((index = word.indexOf(TARGET_MARKER, from)) != -1) {
+				pieces.add(word.substring(from, index));
+				from = index + TARGET_MARKER.length();
+			}
+			pieces.add(word.substring(from));
+			return pieces.toArray(new String[pieces.size()]);
+		}
+
+		private String fill(String[] pieces, String target) {
+			if (pieces.length == 1) {
+				return pieces[0];
+			}
+			StringBuilder builder = new StringBuilder(pieces[0]);
+			for (int i = 1; i < pieces.length; i++) {
+				builder.append(target).append(pieces[i]);
+			}
+			return builder.toString();
+		}
+
+		/**
+		 * Sends the command with the target statement replaced by the given name.
+		 * @param target name of the player, or null if there is no statement
+		 */
+		public void process(String target) {
+			String root = fill(words[0], target);
+			ChatArguments arguments = new ChatArguments();
+			for (int i = 1; i < words.length; i++) {
+				arguments.append(fill(words[i], target));
+				if (i != words.length - 1) {
+					arguments.append(" ");
+				}
+			}
+			// TODO: Argument handling doesn't seem to be working... am I doing it wrong?
+			if (VanillaConfiguration.COMMAND_BLOCK_VERBOSE.getBoolean()) {
+				sendMessage("Processing command: ", root, " ", arguments.getPlainString());
+			}
+			processCommand(root, arguments);
+		}
+	}
+
 	private class PlayerFilter {
 		private final Block block = getBlock();
 		private final String statement;
+		private final char target;
 		private int x = block.getX();
 		private int y = block.getY();
 		private int z = block.getZ();
+		private Point center;
 		private int maxRadius = 40;
 		private int minRadius = 0;
 		private GameMode mode = null;
@@ -237,6 +313,8 @@ public class CommandBlock extends VanillaBlockComponent implements CommandSource
 
 		public PlayerFilter(String statement) {
 			this.statement = statement;
+			this.target = statement.charAt(1);
+			this.center = new Point(block.getWorld(), x, y, z);
 		}
 
 		public void init() throws IllegalArgumentException {
@@ -267,7 +345,7 @@ public class CommandBlock extends VanillaBlockComponent implements CommandSource
 				// has arguments
 				String[] args = statement.substring(startArgs + 1, endArgs).split(",");
 				// check first 4 args for the shortcut syntax
-				for (int i = 0; i < 4; i++) {
+				for (int i = 0; i < 4 && i < args.length; i++) {
 					String arg = args[i];
 					if (arg == null || arg.contains("=")) {
 						// null arg or arg has a v break
@@ -322,6 +400,7 @@ public class CommandBlock extends VanillaBlockComponent implements CommandSource
 					}
 					// TODO: Implement scoring
 				}
+				center = new Point(block.getWorld(), x, y, z);
 			}
 		}
 
@@ -333,45 +412,53 @@ public class CommandBlock extends VanillaBlockComponent implements CommandSource
 			}
 		}
 
-		public Player findPlayer(List<Player> players, boolean ignoreDistance) {
-			for (Player p : players) {
-				if (accept(p)) {
-					return p;
+		/**
+		 * Finds the suitable player closest to the search center, only
+		 * looking at the players within the maximum radius.
+		 * @return nearest player, or null if none is suitable
+		 */
+		public Player findNearest() {
+			Player nearest = null;
+			double nearestDistance = Double.MAX_VALUE;
+			for (Player p : center.getWorld().getNearbyPlayers(center, maxRadius)) {
+				double distance = p.getScene().getPosition().distanceSquared(center);
+				if (distance < nearestDistance && accept(p)) {
+					nearest = p;
+					nearestDistance = distance;
 				}
 			}
-			return null;
+			return nearest;
 		}
 
-		public Player findPlayer(List<Player> players) {
-			return findPlayer(players, false);
-		}
-
-		public List<Player> filter(List<Player> players, boolean ignoreDistance) {
-			if (reversedList) {
-				Collections.reverse(players);
-			}
-			List<Player> filteredPlayers = new ArrayList<Player>();
-			int entries = 0;
-			for (Player player : players) {
-				if (accept(player, ignoreDistance) && (playerListSize == 0 || entries < playerListSize)) {
-					entries++;
-					filteredPlayers.add(player);
+		/**
+		 * Picks one of the suitable players at random, in a single pass over
+		 * the given players.
+		 * @param players to pick from
+		 * @return random player, or null if none is suitable
+		 */
+		public Player findRandom(Player[] players) {
+			Player picked = null;
+			int suitable = 0;
+			for (Player p : players) {
+				if (accept(p, true) && random.nextInt(++suitable) == 0) {
+					picked = p;
 				}
 			}
-			return filteredPlayers;
-		}
-
-		public List<Player> filter(List<Player> players) {
-			return filter(players, false);
+			return picked;
 		}
 
 		public boolean accept(Player p, boolean ignoreDistance) {
-			Point center = new Point(block.getWorld(), x, y, z);
+			if (!ignoreDistance) {
+				int distance = (int) p.getScene().getPosition().distance(center);
+				if (distance < minRadius || distance > maxRadius) {
+					return false;
+				}
+			}
+			if (mode != null && mode != p.add(Human.class).getGameMode()) {
+				return false;
+			}
 			int lvl = p.add(Level.class).getLevel();
-			int distance = (int) p.getScene().getPosition().distance(center);
-			return ((distance >= minRadius && distance <= maxRadius) || ignoreDistance)
-					&& (mode == null || mode == p.add(Human.class).getGameMode())
-					&& lvl >= minExpLevel && (maxExpLevel == 0 || lvl <= maxExpLevel);
+			return lvl >= minExpLevel && (maxExpLevel == 0 || lvl <= maxExpLevel);
 		}
 
 		public boolean accept(Player p) {
@@ -28,6 +28,7 @@ package org.spout.vanilla.component.block.material;
 
 import org.spout.api.entity.Player;
 import org.spout.api.event.cause.MaterialCause;
+import org.spout.api.geo.cuboid.Block;
 import org.spout.api.inventory.Container;
 import org.spout.api.inventory.ItemStack;
 
@@ -193,6 +194,12 @@ public class Furnace extends ViewedBlockComponent implements Container {
 		setSmeltTime(-1);
 	}
 
+	@Override
+	public void onAttached() {
+		super.onAttached();
+		wakeOnChange(getInventory());
+	}
+
 	@Override
 	public void onTick(float dt) {
 		final float fuel = getFuel();
@@ -222,7 +229,9 @@ public class Furnace extends ViewedBlockComponent implements Container {
 				return;
 			}
 
+			// Nothing to burn, wait for the inventory to change
 			setBurning(false);
+			sleep();
 		}
 		// Burning
 		else if (fuel > 0) {
@@ -263,7 +272,10 @@ public class Furnace extends ViewedBlockComponent implements Container {
 	}
 
 	private void setBurning(boolean burning) {
-		VanillaMaterials.FURNACE.setBurning(getBlock(), burning);
+		Block block = getBlock();
+		if (block.isMaterial(VanillaMaterials.FURNACE_BURNING) != burning) {
+			VanillaMaterials.FURNACE.setBurning(block, burning);
+		}
 	}
 
 	@Override
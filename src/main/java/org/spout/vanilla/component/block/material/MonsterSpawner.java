@@ -43,31 +43,35 @@ import org.spout.vanilla.protocol.entity.creature.CreatureType;
  * Component that represents a Monster Spawner in the world.
  */
 public class MonsterSpawner extends VanillaBlockComponent {
+	/**
+	 * Time, in milliseconds, an inactive spawner waits before looking for
+	 * nearby players again.
+	 */
+	private static final long IDLE_CHECK_DELAY = 1000;
 	private final Random random = new Random();
 
 	@Override
 	public void onAttached() {
+		super.onAttached();
 		resetSpawnDelay();
 		sendData();
 	}
 
 	@Override
 	public void onTick(float dt) {
+		dt += pollDormantTime();
 		if (isActive()) {
 			float spawnDelay = pulseSpawnDelay(dt);
 			if (spawnDelay <= 0) {
 				doSpawn();
 			}
+			sleep((long) (getSpawnDelay() * 1000));
 		} else {
 			resetSpawnDelay();
+			sleep(IDLE_CHECK_DELAY);
 		}
 	}
 
-	@Override
-	public boolean canTick() {
-		return true;
-	}
-
 	/**
 	 * Sets the minimum amount of seconds that the spawner can spawn within.
 	 * @param delay in seconds
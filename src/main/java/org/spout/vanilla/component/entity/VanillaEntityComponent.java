@@ -27,10 +27,14 @@
 package org.spout.vanilla.component.entity;
 
 import java.util.Arrays;
+import java.util.List;
 
 import org.spout.api.component.type.EntityComponent;
+import org.spout.api.entity.Entity;
+import org.spout.api.entity.Player;
 import org.spout.api.util.Parameter;
 
+import org.spout.vanilla.component.entity.misc.Metadata;
 import org.spout.vanilla.data.VanillaData;
 import org.spout.vanilla.event.entity.EntityMetaChangeEvent;
 
@@ -47,7 +51,19 @@ public class VanillaEntityComponent extends EntityComponent {
 	}
 
 	protected void setMetadata(Parameter<?>... p) {
-		getOwner().getNetwork().callProtocolEvent(new EntityMetaChangeEvent(getOwner(), Arrays.asList(p)));
+		setMetadata(Arrays.asList(p));
+	}
+
+	/**
+	 * Sets protocol metadata of the owner.<br>
+	 * Changed values are sent to viewers with the next entity update, and right away to the owner if it is a player.
+	 * @param parameters to set
+	 */
+	protected void setMetadata(List<Parameter<?>> parameters) {
+		Entity owner = getOwner();
+		if (owner.add(Metadata.class).set(parameters) && owner instanceof Player) {
+			((Player) owner).getNetworkSynchronizer().callProtocolEvent(new EntityMetaChangeEvent(owner, parameters));
+		}
 	}
 
 	/**
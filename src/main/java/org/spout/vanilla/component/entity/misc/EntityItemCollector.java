@@ -36,6 +36,7 @@ import org.spout.api.math.Vector3;
 
 import org.spout.vanilla.component.entity.inventory.EntityInventory;
 import org.spout.vanilla.component.entity.substance.Item;
+import org.spout.vanilla.component.entity.substance.ItemIndex;
 import org.spout.vanilla.data.configuration.VanillaConfiguration;
 import org.spout.vanilla.event.entity.EntityCollectItemEvent;
 import org.spout.vanilla.inventory.entity.ArmorInventory;
@@ -65,7 +66,8 @@ public class EntityItemCollector extends EntityComponent {
 				return false;
 			}
 		}
-		nearbyEntities = getOwner().getWorld().getNearbyEntities(getOwner(), DISTANCE);
+		// only the chunks around the owner which hold items are looked at
+		nearbyEntities = ItemIndex.get(getOwner().getWorld()).getNearby(getOwner().getScene().getPosition(), DISTANCE);
 		return !nearbyEntities.isEmpty();
 	}
 
@@ -125,6 +127,10 @@ public class EntityItemCollector extends EntityComponent {
 		}
 	}
 
+	/**
+	 * Gets the item entities within pickup range, as found on the last tick
+	 * @return the nearby item entities
+	 */
 	protected List<Entity> getNearbyEntities() {
 		return nearbyEntities;
 	}
@@ -64,7 +64,6 @@ import org.spout.vanilla.event.entity.EntityAnimationEvent;
 import org.spout.vanilla.event.entity.EntityDamageEvent;
 import org.spout.vanilla.event.entity.EntityHealEvent;
 import org.spout.vanilla.event.entity.EntityHealthChangeEvent;
-import org.spout.vanilla.event.entity.EntityMetaChangeEvent;
 import org.spout.vanilla.event.entity.EntityStatusEvent;
 import org.spout.vanilla.event.entity.VanillaEntityDeathEvent;
 import org.spout.vanilla.event.player.PlayerDeathEvent;
@@ -351,7 +350,7 @@ public class Health extends EntityComponent {
 		} else if (owner instanceof EnderDragon || owner instanceof Wither) {
 			java.util.List<Parameter<?>> params = new ArrayList<Parameter<?>>(1);
 			params.add(new Parameter<Short>(Parameter.TYPE_SHORT, 16, (short) health));
-			owner.getNetwork().callProtocolEvent(new EntityMetaChangeEvent(owner, params));
+			owner.add(Metadata.class).set(params);
 		}
 	}
 
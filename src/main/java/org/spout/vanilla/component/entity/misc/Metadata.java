@@ -0,0 +1,126 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.component.entity.misc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.spout.api.component.type.EntityComponent;
+import org.spout.api.inventory.ItemStack;
+import org.spout.api.util.Parameter;
+
+import org.spout.vanilla.protocol.msg.entity.EntityMetadataMessage;
+
+/**
+ * Component that holds the protocol metadata of an entity, and tracks which values changed since they were last sent.
+ */
+public class Metadata extends EntityComponent {
+	private static final int MAX_INDEX = 31;
+	private final Parameter<?>[] values = new Parameter<?>[MAX_INDEX + 1];
+	private int dirty = 0;
+	private long updateAge = -1;
+	private EntityMetadataMessage update = null;
+
+	@Override
+	public void onAttached() {
+
+	}
+
+	/**
+	 * Sets metadata values, marking the ones that changed as dirty
+	 * @param parameters to set
+	 * @return True if any of the values changed, False if not
+	 */
+	public synchronized boolean set(List<Parameter<?>> parameters) {
+		boolean changed = false;
+		for (Parameter<?> parameter : parameters) {
+			int index = parameter.getIndex();
+			if (index < 0 || index > MAX_INDEX) {
+				throw new IllegalArgumentException("Metadata index out of range: " + index);
+			}
+			if (!isEqual(values[index], parameter)) {
+				values[index] = parameter;
+				dirty |= 1 << index;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Gets the last value set at a metadata index
+	 * @param index of the value
+	 * @return the value, or null if none was set
+	 */
+	public synchronized Parameter<?> get(int index) {
+		return values[index];
+	}
+
+	/**
+	 * Checks whether any metadata value changed since the last update message was built
+	 * @return True if the metadata is dirty, False if not
+	 */
+	public synchronized boolean isDirty() {
+		return dirty != 0;
+	}
+
+	/**
+	 * Gets the message containing the values that changed since the last tick.<br>
+	 * The message is built once per world tick, and the same instance is shared by every viewer of the entity.
+	 * @return the update message, or null if nothing changed
+	 */
+	public synchronized EntityMetadataMessage getUpdateMessage() {
+		long age = getOwner().getWorld().getAge();
+		if (age != updateAge) {
+			updateAge = age;
+			update = null;
+			if (dirty != 0) {
+				List<Parameter<?>> changed = new ArrayList<Parameter<?>>(Integer.bitCount(dirty));
+				for (int i = 0; i <= MAX_INDEX; i++) {
+					if ((dirty & (1 << i)) != 0) {
+						changed.add(values[i]);
+					}
+				}
+				update = new EntityMetadataMessage(getOwner().getId(), changed);
+				dirty = 0;
+			}
+		}
+		return update;
+	}
+
+	private static boolean isEqual(Parameter<?> a, Parameter<?> b) {
+		if (a == null || a.getType() != b.getType()) {
+			return false;
+		}
+		Object va = a.getValue();
+		Object vb = b.getValue();
+		if (va instanceof ItemStack && vb instanceof ItemStack && ((ItemStack) va).getAmount() != ((ItemStack) vb).getAmount()) {
+			return false;
+		}
+		return va == null ? vb == null : va.equals(vb);
+	}
+}
@@ -26,15 +26,19 @@
  */
 package org.spout.vanilla.component.entity.substance;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import com.bulletphysics.collision.shapes.BoxShape;
 
 import org.spout.api.component.impl.SceneComponent;
 import org.spout.api.data.Data;
 import org.spout.api.entity.Entity;
 import org.spout.api.geo.LoadOption;
+import org.spout.api.geo.cuboid.Region;
 import org.spout.api.geo.discrete.Point;
 import org.spout.api.inventory.ItemStack;
 import org.spout.api.math.Vector3;
+import org.spout.api.util.Parameter;
 
 import org.spout.vanilla.VanillaPlugin;
 import org.spout.vanilla.component.entity.misc.Health;
@@ -48,7 +52,17 @@ public class Item extends Substance {
 	 * The default delay in ms before the item can be picked up for a dropped item
 	 */
 	public static final long DROP_PICKUP_DELAY = 495;
+	/**
+	 * The distance in blocks within which items of the same kind merge
+	 */
+	public static final float MERGE_RADIUS = 1.5f;
+	private static final float MERGE_INTERVAL = 1;
+	private static final AtomicLong merges = new AtomicLong();
 	private float timeLeft = VanillaConfiguration.ITEM_SPAWN_TIME.getFloat();
+	private float mergeTimer = MERGE_INTERVAL;
+	// bucket of this item in the ItemIndex, only changed from the tick of the item
+	volatile long indexKey = ItemIndex.NOT_INDEXED;
+	volatile ItemIndex.RegionItems indexRegion = null;
 
 	@Override
 	public void onAttached() {
@@ -60,6 +74,12 @@ public class Item extends Substance {
 		getOwner().add(Health.class).setMaxHealth(20);
 	}
 
+	@Override
+	public void onDetached() {
+		super.onDetached();
+		ItemIndex.get(getOwner().getWorld()).remove(this);
+	}
+
 	@Override
 	public boolean canTick() {
 		return true;
@@ -71,6 +91,8 @@ public class Item extends Substance {
 
 	public void setItemStack(ItemStack stack) {
 		getData().put(Data.HELD_ITEM, stack);
+		// a copy, as stacks are changed in place
+		setMetadata(new Parameter<ItemStack>(Parameter.TYPE_ITEM, 10, stack == null ? null : stack.clone()));
 	}
 
 	/**
@@ -134,11 +156,78 @@ public class Item extends Substance {
 		return item;
 	}
 
+	/**
+	 * Gets the number of times items merged into another since startup
+	 * @return the merge count
+	 */
+	public static long getMergeCount() {
+		return merges.get();
+	}
+
 	@Override
 	public void onTick(float dt) {
 		timeLeft -= dt;
 		if (timeLeft <= 0.05) {
+			ItemIndex.get(getOwner().getWorld()).remove(this);
 			getOwner().remove();
+			return;
 		}
+		final Point position = getOwner().getScene().getPosition();
+		ItemIndex.get(position.getWorld()).update(this, position);
+		mergeTimer -= dt;
+		if (mergeTimer <= 0) {
+			mergeTimer = MERGE_INTERVAL;
+			mergeNearby();
+		}
+	}
+
+	/**
+	 * Moves the stacks of the nearby items of the same kind into this one,
+	 * up to the max stack size. Items are found through the item index,
+	 * which buckets them per chunk.
+	 */
+	private void mergeNearby() {
+		final Entity owner = getOwner();
+		final ItemStack stack = getItemStack();
+		if (owner.isRemoved() || stack == null || stack.getAmount() >= stack.getMaxStackSize()) {
+			return;
+		}
+		final Point position = owner.getScene().getPosition();
+		final ItemIndex index = ItemIndex.get(owner.getWorld());
+		for (Entity entity : index.getNearby(position, MERGE_RADIUS)) {
+			// the item with the lowest id takes the others, and only within a
+			// region, as regions tick in parallel
+			if (entity.getId() <= owner.getId() || entity.isRemoved() || !isSameRegion(position, entity.getScene().getPosition())) {
+				continue;
+			}
+			final Item other = entity.get(Item.class);
+			final ItemStack otherStack = other == null ? null : other.getItemStack();
+			if (otherStack == null || !stack.equalsIgnoreSize(otherStack)) {
+				continue;
+			}
+			final int moved = Math.min(otherStack.getAmount(), stack.getMaxStackSize() - stack.getAmount());
+			if (moved <= 0) {
+				break;
+			}
+			stack.setAmount(stack.getAmount() + moved);
+			if (moved == otherStack.getAmount()) {
+				index.remove(other);
+				entity.remove();
+			} else {
+				otherStack.setAmount(otherStack.getAmount() - moved);
+				other.setItemStack(otherStack);
+			}
+			// the merged item can not be picked up earlier than any of its parts
+			setUncollectableTime(Math.max(getUncollectableTime(), other.getUncollectableTime()));
+			timeLeft = Math.max(timeLeft, other.timeLeft);
+			merges.incrementAndGet();
+		}
+		setItemStack(stack);
+	}
+
+	private static boolean isSameRegion(Point a, Point b) {
+		return a.getBlockX() >> Region.BLOCKS.BITS == b.getBlockX() >> Region.BLOCKS.BITS
+				&& a.getBlockY() >> Region.BLOCKS.BITS == b.getBlockY() >> Region.BLOCKS.BITS
+				&& a.getBlockZ() >> Region.BLOCKS.BITS == b.getBlockZ() >> Region.BLOCKS.BITS;
 	}
 }
@@ -39,7 +39,6 @@ import org.spout.api.material.block.BlockFace;
 import org.spout.api.util.Parameter;
 
 import org.spout.vanilla.VanillaPlugin;
-import org.spout.vanilla.event.entity.EntityMetaChangeEvent;
 import org.spout.vanilla.material.VanillaMaterials;
 import org.spout.vanilla.protocol.entity.object.ItemFrameProtocol;
 import org.spout.vanilla.util.PlayerUtil;
@@ -79,7 +78,7 @@ public class ItemFrame extends Substance {
 		this.material = material;
 		List<Parameter<?>> params = new ArrayList<Parameter<?>>();
 		params.add(new Parameter<ItemStack>(Parameter.TYPE_ITEM, 2, material == null ? null : new ItemStack(material, 1)));
-		getOwner().getNetwork().callProtocolEvent(new EntityMetaChangeEvent(getOwner(), params));
+		setMetadata(params);
 	}
 
 	public Material getMaterial() {
@@ -0,0 +1,295 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.component.entity.substance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import org.spout.api.entity.Entity;
+import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.geo.cuboid.Region;
+import org.spout.api.geo.discrete.Point;
+
+/**
+ * An index of the dropped items of a world, bucketed per chunk.<br>
+ * The chunk buckets are grouped per region, each region with its own lock, so
+ * that regions ticking in parallel do not wait on each other. Items keep their
+ * own entry up to date as they tick, and collectors only look at the chunks
+ * around them which contain items, doing nothing at all when the world has no
+ * items. Removed items are dropped from the buckets when found, and by a
+ * periodic sweep.
+ */
+public class ItemIndex {
+	static final long NOT_INDEXED = Long.MIN_VALUE;
+	private static final long SWEEP_INTERVAL = 5000;
+	private static final ConcurrentHashMap<World, ItemIndex> indexes = new ConcurrentHashMap<World, ItemIndex>();
+	// copied on write, regions are only added
+	private volatile TLongObjectHashMap<RegionItems> regions = new TLongObjectHashMap<RegionItems>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+
+	ItemIndex() {
+	}
+
+	/**
+	 * Gets the index of the given world.
+	 * @param world to get the index of
+	 * @return the index
+	 */
+	public static ItemIndex get(World world) {
+		ItemIndex index = indexes.get(world);
+		if (index == null) {
+			index = new ItemIndex();
+			ItemIndex previous = indexes.putIfAbsent(world, index);
+			if (previous != null) {
+				index = previous;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Removes the index of a world which is unloaded.
+	 * @param world which is unloaded
+	 */
+	public static void unload(World world) {
+		indexes.remove(world);
+	}
+
+	/**
+	 * Gets the number of items in the index, including removed items which
+	 * were not swept yet.
+	 * @return the number of items
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * Moves the item to the bucket of its position, adding it if needed.<br>
+	 * Called from the tick of the item only.
+	 * @param item to update
+	 * @param position of the item
+	 */
+	void update(Item item, Point position) {
+		final int cx = position.getBlockX() >> Chunk.BLOCKS.BITS;
+		final int cy = position.getBlockY() >> Chunk.BLOCKS.BITS;
+		final int cz = position.getBlockZ() >> Chunk.BLOCKS.BITS;
+		final long key = key(cx, cy, cz);
+		if (item.indexKey == key && item.indexRegion != null && item.indexRegion.getIndex() == this) {
+			return;
+		}
+		remove(item);
+		final RegionItems region = getRegion(cx >> Region.CHUNKS.BITS, cy >> Region.CHUNKS.BITS, cz >> Region.CHUNKS.BITS, true);
+		region.add(key, item);
+		item.indexRegion = region;
+		item.indexKey = key;
+	}
+
+	/**
+	 * Removes the item from the index.<br>
+	 * Called from the tick of the item, or of the region the item is in.
+	 * @param item to remove
+	 */
+	void remove(Item item) {
+		final RegionItems region = item.indexRegion;
+		if (region != null) {
+			region.remove(item.indexKey, item);
+		}
+		item.indexRegion = null;
+		item.indexKey = NOT_INDEXED;
+	}
+
+	/**
+	 * Gets the item entities within the radius of the given position.
+	 * @param position to search around
+	 * @param radius to search within
+	 * @return the item entities, which is an empty list if there are none
+	 */
+	public List<Entity> getNearby(Point position, float radius) {
+		if (size.get() == 0) {
+			return Collections.emptyList();
+		}
+		sweepIfDue();
+		final int minX = (int) Math.floor(position.getX() - radius) >> Chunk.BLOCKS.BITS;
+		final int minY = (int) Math.floor(position.getY() - radius) >> Chunk.BLOCKS.BITS;
+		final int minZ = (int) Math.floor(position.getZ() - radius) >> Chunk.BLOCKS.BITS;
+		final int maxX = (int) Math.floor(position.getX() + radius) >> Chunk.BLOCKS.BITS;
+		final int maxY = (int) Math.floor(position.getY() + radius) >> Chunk.BLOCKS.BITS;
+		final int maxZ = (int) Math.floor(position.getZ() + radius) >> Chunk.BLOCKS.BITS;
+		List<Entity> result = null;
+		for (int x = minX; x <= maxX; x++) {
+			for (int y = minY; y <= maxY; y++) {
+				for (int z = minZ; z <= maxZ; z++) {
+					final RegionItems region = getRegion(x >> Region.CHUNKS.BITS, y >> Region.CHUNKS.BITS, z >> Region.CHUNKS.BITS, false);
+					if (region == null || region.isEmpty()) {
+						continue;
+					}
+					result = region.collect(key(x, y, z), position, radius * radius, result);
+				}
+			}
+		}
+		return result == null ? Collections.<Entity>emptyList() : result;
+	}
+
+	/**
+	 * Drops the removed items from all buckets, at most once per sweep interval.
+	 */
+	private void sweepIfDue() {
+		final long now = System.currentTimeMillis();
+		final long last = lastSweep.get();
+		if (now - last < SWEEP_INTERVAL || !lastSweep.compareAndSet(last, now)) {
+			return;
+		}
+		for (RegionItems region : regions.valueCollection()) {
+			region.sweep();
+		}
+	}
+
+	private RegionItems getRegion(int rx, int ry, int rz, boolean create) {
+		final long key = key(rx, ry, rz);
+		RegionItems region = regions.get(key);
+		if (region == null && create) {
+			synchronized (this) {
+				region = regions.get(key);
+				if (region == null) {
+					final TLongObjectHashMap<RegionItems> copy = new TLongObjectHashMap<RegionItems>(regions);
+					region = new RegionItems();
+					copy.put(key, region);
+					regions = copy;
+				}
+			}
+		}
+		return region;
+	}
+
+	private static long key(int x, int y, int z) {
+		return ((long) (x & 0x1FFFFF) << 42) | ((long) (y & 0x1FFFFF) << 21) | (z & 0x1FFFFF);
+	}
+
+	/**
+	 * The chunk buckets of a region
+	 */
+	final class RegionItems {
+		private final TLongObjectHashMap<List<Item>> chunks = new TLongObjectHashMap<List<Item>>();
+		private volatile int count = 0;
+
+		private ItemIndex getIndex() {
+			return ItemIndex.this;
+		}
+
+		private boolean isEmpty() {
+			return count == 0;
+		}
+
+		private synchronized void add(long key, Item item) {
+			List<Item> chunk = chunks.get(key);
+			if (chunk == null) {
+				chunk = new ArrayList<Item>(4);
+				chunks.put(key, chunk);
+			}
+			chunk.add(item);
+			changeCount(1);
+		}
+
+		private synchronized void remove(long key, Item item) {
+			final List<Item> chunk = chunks.get(key);
+			if (chunk == null || !chunk.remove(item)) {
+				return;
+			}
+			if (chunk.isEmpty()) {
+				chunks.remove(key);
+			}
+			changeCount(-1);
+		}
+
+		/**
+		 * Adds the item entities of the chunk bucket within the radius to the result
+		 * @return the result, created if needed
+		 */
+		private synchronized List<Entity> collect(long key, Point position, float radiusSquared, List<Entity> result) {
+			final List<Item> chunk = chunks.get(key);
+			if (chunk == null) {
+				return result;
+			}
+			int removed = 0;
+			for (Iterator<Item> i = chunk.iterator(); i.hasNext(); ) {
+				final Entity entity = i.next().getOwner();
+				// removed items do not tick anymore, drop them here
+				if (entity.isRemoved()) {
+					i.remove();
+					removed++;
+					continue;
+				}
+				if (entity.getScene().getPosition().distanceSquared(position) <= radiusSquared) {
+					if (result == null) {
+						result = new ArrayList<Entity>(2);
+					}
+					result.add(entity);
+				}
+			}
+			if (chunk.isEmpty()) {
+				chunks.remove(key);
+			}
+			changeCount(-removed);
+			return result;
+		}
+
+		private void changeCount(int change) {
+			count += change;
+			size.addAndGet(change);
+		}
+
+		private synchronized void sweep() {
+			int removed = 0;
+			for (List<Item> chunk : chunks.valueCollection()) {
+				for (Iterator<Item> i = chunk.iterator(); i.hasNext(); ) {
+					if (i.next().getOwner().isRemoved()) {
+						i.remove();
+						removed++;
+					}
+				}
+			}
+			if (removed > 0) {
+				for (long key : chunks.keys()) {
+					if (chunks.get(key).isEmpty()) {
+						chunks.remove(key);
+					}
+				}
+				changeCount(-removed);
+			}
+		}
+	}
+}
@@ -38,7 +38,6 @@ import org.spout.api.util.Parameter;
 import org.spout.vanilla.VanillaPlugin;
 import org.spout.vanilla.component.entity.substance.Item;
 import org.spout.vanilla.component.entity.substance.Substance;
-import org.spout.vanilla.event.entity.EntityMetaChangeEvent;
 import org.spout.vanilla.material.VanillaMaterials;
 import org.spout.vanilla.protocol.ChannelBufferUtils;
 import org.spout.vanilla.protocol.entity.object.vehicle.BoatObjectEntityProtocol;
@@ -76,7 +75,7 @@ public class Boat extends Substance {
 		this.damageTaken = damageTaken;
 		List<Parameter<?>> params = new ArrayList<Parameter<?>>();
 		params.add(new Parameter<Integer>(Parameter.TYPE_INT, 19, damageTaken));
-		getOwner().getNetwork().callProtocolEvent(new EntityMetaChangeEvent(getOwner(), params));
+		setMetadata(params);
 	}
 
 	public int getDamageTaken() {
@@ -99,6 +98,6 @@ public class Boat extends Substance {
 		this.direction = direction;
 		List<Parameter<?>> params = new ArrayList<Parameter<?>>();
 		params.add(new Parameter<Integer>(Parameter.TYPE_INT, 18, (int) ChannelBufferUtils.getNativeDirection(direction)));
-		getOwner().getNetwork().callProtocolEvent(new EntityMetaChangeEvent(getOwner(), params));
+		setMetadata(params);
 	}
 }
@@ -40,7 +40,6 @@ import org.spout.api.util.Parameter;
 import org.spout.vanilla.component.entity.misc.DeathDrops;
 import org.spout.vanilla.component.entity.substance.Item;
 import org.spout.vanilla.component.entity.substance.Substance;
-import org.spout.vanilla.event.entity.EntityMetaChangeEvent;
 import org.spout.vanilla.event.entity.EntityStatusEvent;
 import org.spout.vanilla.material.VanillaBlockMaterial;
 import org.spout.vanilla.material.VanillaMaterials;
@@ -72,7 +71,7 @@ public abstract class MinecartBase extends Substance {
 			List<Parameter<?>> parameters = new ArrayList<Parameter<?>>();
 			parameters.add(new Parameter<Integer>(Parameter.TYPE_INT, 17, wobble / 5)); // Unknown flag; initialized to 0. (Probably time since last collision)
 			parameters.add(new Parameter<Integer>(Parameter.TYPE_INT, 19, wobble));
-			getOwner().getNetwork().callProtocolEvent(new EntityMetaChangeEvent(getOwner(), parameters));
+			setMetadata(parameters);
 			getOwner().getNetwork().callProtocolEvent(new EntityStatusEvent(getOwner(), EntityStatusMessage.ENTITY_HURT));
 
 			if (wobble > 40) {
@@ -111,7 +110,7 @@ public abstract class MinecartBase extends Substance {
 		parameters.add(new Parameter<Integer>(Parameter.TYPE_INT, 20, id));
 		parameters.add(new Parameter<Integer>(Parameter.TYPE_INT, 21, 6));
 		parameters.add(new Parameter<Integer>(Parameter.TYPE_BYTE, 22, 1));
-		getOwner().getNetwork().callProtocolEvent(new EntityMetaChangeEvent(getOwner(), parameters));
+		setMetadata(parameters);
 	}
 
 	/**
@@ -122,6 +121,6 @@ public abstract class MinecartBase extends Substance {
 		parameters.add(new Parameter<Integer>(Parameter.TYPE_INT, 20, getMinecraftBlockID()));
 		parameters.add(new Parameter<Integer>(Parameter.TYPE_INT, 21, 6));
 		parameters.add(new Parameter<Integer>(Parameter.TYPE_BYTE, 22, getMinecraftBlockID() != 0 ? 1 : 0));
-		getOwner().getNetwork().callProtocolEvent(new EntityMetaChangeEvent(getOwner(), parameters));
+		setMetadata(parameters);
 	}
 }
@@ -38,7 +38,6 @@ import org.spout.api.util.Parameter;
 
 import org.spout.vanilla.VanillaPlugin;
 import org.spout.vanilla.component.entity.misc.DeathDrops;
-import org.spout.vanilla.event.entity.EntityMetaChangeEvent;
 import org.spout.vanilla.material.Fuel;
 import org.spout.vanilla.material.VanillaMaterials;
 import org.spout.vanilla.protocol.entity.object.ObjectType;
@@ -106,7 +105,7 @@ public class PoweredMinecart extends MinecartBase {
 	private void updateMetadata() {
 		List<Parameter<?>> parameters = new ArrayList<Parameter<?>>();
 		parameters.add(new Parameter<Byte>(Parameter.TYPE_BYTE, 16, (byte) (this.fuel > 0f ? 1 : 0))); // Powered flag
-		getOwner().getNetwork().callProtocolEvent(new EntityMetaChangeEvent(getOwner(), parameters));
+		setMetadata(parameters);
 	}
 
 	@Override
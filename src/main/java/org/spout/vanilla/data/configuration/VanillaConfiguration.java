@@ -62,6 +62,7 @@ public class VanillaConfiguration extends ConfigurationHolderConfiguration {
 	public static final ConfigurationHolder LAVA_DELAY = new ConfigurationHolder(1500, "physics", "lava", "delay");
 	public static final ConfigurationHolder WATER_PHYSICS = new ConfigurationHolder(true, "physics", "water", "enabled");
 	public static final ConfigurationHolder WATER_DELAY = new ConfigurationHolder(250, "physics", "water", "delay");
+	public static final ConfigurationHolder LIQUID_BATCHING = new ConfigurationHolder(true, "physics", "liquid-batching");
 	// Player
 	public static final ConfigurationHolder PLAYER_PVP_ENABLED = new ConfigurationHolder(true, "player", "pvp-enabled");
 	public static final ConfigurationHolder PLAYER_SURVIVAL_ENABLE_HEALTH = new ConfigurationHolder(true, "player", "survival", "enable-health");
@@ -83,8 +84,20 @@ public class VanillaConfiguration extends ConfigurationHolderConfiguration {
 	public static final ConfigurationHolder ENCRYPT_KEY_PADDING = new ConfigurationHolder("PKCS1", "encrypt", "key-padding");
 	public static final ConfigurationHolder ENCRYPT_STREAM_ALGORITHM = new ConfigurationHolder("AES", "encrypt", "stream-algorithm");
 	public static final ConfigurationHolder ENCRYPT_STREAM_WRAPPER = new ConfigurationHolder("CFB8", "encrypt", "stream-wrapper");
+	// Network
+	public static final ConfigurationHolder BLOCK_UPDATE_BULK_THRESHOLD = new ConfigurationHolder(1, "network", "block-updates", "bulk-threshold");
+	public static final ConfigurationHolder BLOCK_UPDATE_RESEND_THRESHOLD = new ConfigurationHolder(64, "network", "block-updates", "resend-threshold");
+	public static final ConfigurationHolder CHUNK_STREAMING = new ConfigurationHolder(true, "network", "chunk-streaming", "enabled");
+	public static final ConfigurationHolder CHUNK_STREAMING_COLUMNS_PER_TICK = new ConfigurationHolder(24, "network", "chunk-streaming", "columns-per-tick");
+	public static final ConfigurationHolder CHUNK_STREAMING_BYTES_PER_TICK = new ConfigurationHolder(1048576, "network", "chunk-streaming", "bytes-per-tick");
+	public static final ConfigurationHolder CHUNK_STREAMING_COLUMNS_PER_BULK = new ConfigurationHolder(8, "network", "chunk-streaming", "columns-per-bulk");
+	public static final ConfigurationHolder COLUMN_CACHE = new ConfigurationHolder(true, "network", "column-cache", "enabled");
+	public static final ConfigurationHolder COLUMN_CACHE_SIZE = new ConfigurationHolder(64, "network", "column-cache", "max-size-mb");
+	public static final ConfigurationHolder COLUMN_CACHE_TTL = new ConfigurationHolder(30000, "network", "column-cache", "time-to-live");
+	public static final ConfigurationHolder WINDOW_FULL_RESEND_PERCENT = new ConfigurationHolder(50, "network", "window-updates", "full-resend-percent");
 	// Chunk Cache
 	public static final ConfigurationHolder USE_CHUNK_CACHE = new ConfigurationHolder(true, "cache", "chunks");
+	public static final ConfigurationHolder CHUNK_CACHE_CAPACITY = new ConfigurationHolder(32768, "cache", "chunk-hashes");
 	// sub-configs
 	public static final OpConfiguration OPS = new OpConfiguration(VanillaPlugin.getInstance().getDataFolder());
 	public static final WorldConfiguration WORLDS = new WorldConfiguration(VanillaPlugin.getInstance().getDataFolder());
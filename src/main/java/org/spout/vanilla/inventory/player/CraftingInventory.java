@@ -26,21 +26,16 @@
  */
 package org.spout.vanilla.inventory.player;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
 import org.spout.api.inventory.Inventory;
 import org.spout.api.inventory.InventoryViewer;
 import org.spout.api.inventory.ItemStack;
 import org.spout.api.inventory.recipe.Recipe;
-import org.spout.api.inventory.recipe.RecipeManager;
 import org.spout.api.inventory.shape.Grid;
 import org.spout.api.inventory.util.GridIterator;
 import org.spout.api.material.Material;
 
-import org.spout.vanilla.VanillaPlugin;
 import org.spout.vanilla.component.entity.inventory.PlayerInventory;
+import org.spout.vanilla.inventory.recipe.VanillaRecipes;
 
 /**
  * Represents an inventory that contains a crafting matrix.
@@ -147,40 +142,14 @@ public abstract class CraftingInventory extends Inventory {
 	 * be crafted to the {@link #outputSlot};
 	 */
 	public void updateOutput() {
+		Material[] materials = new Material[grid.getSize()];
 		GridIterator iterator = grid.iterator();
-		int rowSize = getGrid().getLength();
-		List<List<Material>> materials = new ArrayList<List<Material>>();
-		List<Material> current = new ArrayList<Material>();
-		List<Material> shapeless = new ArrayList<Material>();
-		int cntr = 0;
-		while (iterator.hasNext()) {
+		for (int i = 0; iterator.hasNext(); i++) {
 			ItemStack item = get(iterator.next());
-			cntr++;
-			Material mat = null;
-			if (item != null) {
-				mat = item.getMaterial();
-			}
-			current.add(mat);
-			if (mat != null) {
-				shapeless.add(mat);
-			}
-			if (cntr >= rowSize) {
-				materials.add(current);
-				current = new ArrayList<Material>();
-				cntr = 0;
-			}
-		}
-		RecipeManager recipeManager = VanillaPlugin.getInstance().getEngine().getRecipeManager();
-		Collections.reverse(materials);
-		Recipe recipe = recipeManager.matchShapedRecipe(materials);
-		if (recipe == null) {
-			recipe = recipeManager.matchShapelessRecipe(shapeless);
-		}
-		if (recipe != null) {
-			updateCraftingSlot(recipe.getResult());
-			return;
+			materials[i] = item == null ? null : item.getMaterial();
 		}
-		updateCraftingSlot(null);
+		Recipe recipe = VanillaRecipes.CRAFTING.match(materials, grid.getLength());
+		updateCraftingSlot(recipe == null ? null : recipe.getResult());
 	}
 
 	private void updateCraftingSlot(ItemStack item) {
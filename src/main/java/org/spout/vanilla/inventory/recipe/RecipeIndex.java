@@ -0,0 +1,237 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.inventory.recipe;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import org.spout.api.inventory.recipe.Recipe;
+import org.spout.api.inventory.recipe.ShapedRecipe;
+import org.spout.api.inventory.recipe.ShapelessRecipe;
+import org.spout.api.material.Material;
+
+/**
+ * An index of crafting recipes, built from their definitions when they are
+ * registered.<br>
+ * Shaped recipes are keyed by their shape trimmed to the used cells and the
+ * materials of those cells, shapeless recipes by the sorted materials of
+ * their ingredients. Matching a grid builds the same keys from its cells,
+ * so that both a match and a miss are a few map lookups instead of a probe
+ * over all recipes. Recipes which ignore the data of their materials are
+ * keyed with {@link #ANY_DATA}, so every grid is looked up with and without
+ * the data of its cells.
+ */
+public class RecipeIndex {
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final int EMPTY = -1;
+	private static final int ANY_DATA = 0xFFFF;
+	private final TLongObjectHashMap<Entry> shaped = new TLongObjectHashMap<Entry>();
+	private final TLongObjectHashMap<Entry> shapeless = new TLongObjectHashMap<Entry>();
+
+	/**
+	 * Adds a recipe to the index. Recipes which are neither shaped nor
+	 * shapeless are ignored.
+	 * @param recipe to add
+	 */
+	public synchronized void add(Recipe recipe) {
+		final boolean includeData = recipe.getIncludeData();
+		if (recipe instanceof ShapedRecipe) {
+			final List<List<Character>> rows = ((ShapedRecipe) recipe).getRows();
+			final Map<Character, Material> ingredients = ((ShapedRecipe) recipe).getIngredientsMap();
+			int width = 0;
+			for (List<Character> row : rows) {
+				width = Math.max(width, row.size());
+			}
+			final int[] cells = new int[rows.size() * width];
+			for (int r = 0; r < rows.size(); r++) {
+				final List<Character> row = rows.get(r);
+				for (int c = 0; c < width; c++) {
+					final Material material = c < row.size() ? ingredients.get(row.get(c)) : null;
+					cells[r * width + c] = getCell(material, includeData);
+				}
+			}
+			final int[] signature = getShapedSignature(cells, width);
+			if (signature != null) {
+				put(shaped, signature, recipe);
+			}
+		} else if (recipe instanceof ShapelessRecipe) {
+			final List<Material> ingredients = recipe.getIngredients();
+			final int[] cells = new int[ingredients.size()];
+			for (int i = 0; i < cells.length; i++) {
+				cells[i] = getCell(ingredients.get(i), includeData);
+			}
+			put(shapeless, getShapelessSignature(cells, cells.length), recipe);
+		}
+	}
+
+	/**
+	 * Finds the recipe matching the given crafting grid. Shaped recipes are
+	 * preferred over shapeless ones, and recipes including the data of their
+	 * materials over those which do not.
+	 * @param grid materials of the grid, row by row from the bottom, null for empty cells
+	 * @param rowSize amount of cells in a row
+	 * @return matching recipe, or null if there is none
+	 */
+	public Recipe match(Material[] grid, int rowSize) {
+		final int rows = grid.length / rowSize;
+		final int[] withData = new int[rows * rowSize];
+		final int[] anyData = new int[rows * rowSize];
+		int used = 0;
+		for (int i = 0; i < rows * rowSize; i++) {
+			// the grid starts with the bottom row, recipes with the top row
+			final int cell = (rows - 1 - i / rowSize) * rowSize + i % rowSize;
+			withData[cell] = getCell(grid[i], true);
+			anyData[cell] = getCell(grid[i], false);
+			if (grid[i] != null) {
+				used++;
+			}
+		}
+		if (used == 0) {
+			return null;
+		}
+		synchronized (this) {
+			Recipe recipe = get(shaped, getShapedSignature(withData, rowSize));
+			if (recipe == null) {
+				recipe = get(shaped, getShapedSignature(anyData, rowSize));
+			}
+			if (recipe == null) {
+				recipe = get(shapeless, getShapelessSignature(withData, used));
+			}
+			if (recipe == null) {
+				recipe = get(shapeless, getShapelessSignature(anyData, used));
+			}
+			return recipe;
+		}
+	}
+
+	/**
+	 * Removes all the recipes from the index
+	 */
+	public synchronized void clear() {
+		shaped.clear();
+		shapeless.clear();
+	}
+
+	private static int getCell(Material material, boolean includeData) {
+		if (material == null) {
+			return EMPTY;
+		}
+		return (material.getId() & 0xFFFF) << 16 | (includeData ? material.getData() & 0xFFFF : ANY_DATA);
+	}
+
+	/**
+	 * Trims the empty rows and columns around a shape
+	 * @return the width, the height and the cells of the trimmed shape, or null if all cells are empty
+	 */
+	private static int[] getShapedSignature(int[] cells, int width) {
+		final int height = cells.length / width;
+		int minRow = height, maxRow = -1, minColumn = width, maxColumn = -1;
+		for (int r = 0; r < height; r++) {
+			for (int c = 0; c < width; c++) {
+				if (cells[r * width + c] != EMPTY) {
+					minRow = Math.min(minRow, r);
+					maxRow = Math.max(maxRow, r);
+					minColumn = Math.min(minColumn, c);
+					maxColumn = Math.max(maxColumn, c);
+				}
+			}
+		}
+		if (maxRow == -1) {
+			return null;
+		}
+		final int trimmedWidth = maxColumn - minColumn + 1;
+		final int trimmedHeight = maxRow - minRow + 1;
+		final int[] signature = new int[2 + trimmedWidth * trimmedHeight];
+		signature[0] = trimmedWidth;
+		signature[1] = trimmedHeight;
+		for (int r = 0; r < trimmedHeight; r++) {
+			System.arraycopy(cells, (minRow + r) * width + minColumn, signature, 2 + r * trimmedWidth, trimmedWidth);
+		}
+		return signature;
+	}
+
+	/**
+	 * Sorts the used cells of a grid
+	 * @return the count and the sorted used cells
+	 */
+	private static int[] getShapelessSignature(int[] cells, int used) {
+		final int[] signature = new int[1 + used];
+		signature[0] = used;
+		int i = 1;
+		for (int cell : cells) {
+			if (cell != EMPTY) {
+				signature[i++] = cell;
+			}
+		}
+		Arrays.sort(signature, 1, signature.length);
+		return signature;
+	}
+
+	private static long hash(int[] signature) {
+		long hash = FNV_OFFSET;
+		for (int value : signature) {
+			hash = (hash ^ value) * FNV_PRIME;
+		}
+		return hash;
+	}
+
+	private static void put(TLongObjectHashMap<Entry> map, int[] signature, Recipe recipe) {
+		final long key = hash(signature);
+		// the first recipe registered for a signature keeps matching it
+		if (get(map, signature) == null) {
+			map.put(key, new Entry(signature, recipe, map.get(key)));
+		}
+	}
+
+	private static Recipe get(TLongObjectHashMap<Entry> map, int[] signature) {
+		if (signature == null) {
+			return null;
+		}
+		for (Entry entry = map.get(hash(signature)); entry != null; entry = entry.next) {
+			if (Arrays.equals(entry.signature, signature)) {
+				return entry.recipe;
+			}
+		}
+		return null;
+	}
+
+	private static class Entry {
+		private final int[] signature;
+		private final Recipe recipe;
+		private final Entry next;
+
+		public Entry(int[] signature, Recipe recipe, Entry next) {
+			this.signature = signature;
+			this.recipe = recipe;
+			this.next = next;
+		}
+	}
+}
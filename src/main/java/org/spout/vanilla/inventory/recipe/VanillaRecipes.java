@@ -37,16 +37,30 @@ import org.spout.vanilla.data.resources.RecipeYaml;
 
 public class VanillaRecipes {
 	private static final Map<String, Recipe> yamlRecipes = new ConcurrentHashMap<String, Recipe>();
+	/**
+	 * Matches crafting grids against the recipes registered through {@link #register}
+	 */
+	public static final RecipeIndex CRAFTING = new RecipeIndex();
 
 	public static void initialize() {
 		yamlRecipes.clear();
+		CRAFTING.clear();
 		for (String key : RecipeYaml.DEFAULT.getRecipes().keySet()) {
-			Recipe recipe = RecipeYaml.DEFAULT.getRecipes().get(key);
-			VanillaPlugin.getInstance().getEngine().getRecipeManager().register(recipe);
-			yamlRecipes.put(key, recipe);
+			register(key, RecipeYaml.DEFAULT.getRecipes().get(key));
 		}
 	}
 
+	/**
+	 * Registers a recipe with the recipe manager, and adds it to the crafting index
+	 * @param name of the recipe
+	 * @param recipe to register
+	 */
+	public static void register(String name, Recipe recipe) {
+		VanillaPlugin.getInstance().getEngine().getRecipeManager().register(recipe);
+		yamlRecipes.put(name, recipe);
+		CRAFTING.add(recipe);
+	}
+
 	public static Recipe get(String name) {
 		return yamlRecipes.get(name);
 	}
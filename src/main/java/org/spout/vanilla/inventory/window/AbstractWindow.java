@@ -43,9 +43,11 @@ import org.spout.api.inventory.Slot;
 import org.spout.api.protocol.event.ProtocolEvent;
 
 import org.spout.vanilla.component.entity.inventory.PlayerInventory;
+import org.spout.vanilla.data.configuration.VanillaConfiguration;
 import org.spout.vanilla.event.inventory.InventoryCanSetEvent;
 import org.spout.vanilla.event.window.WindowItemsEvent;
 import org.spout.vanilla.event.window.WindowPropertyEvent;
+import org.spout.vanilla.event.window.WindowSlotEvent;
 import org.spout.vanilla.inventory.window.prop.WindowProperty;
 
 public abstract class AbstractWindow implements InventoryViewer {
@@ -57,6 +59,9 @@ public abstract class AbstractWindow implements InventoryViewer {
 	private static int windowId = 0;
 	protected int id = -1;
 	protected ItemStack cursorItem;
+	// The items the client last received, and whether slots changed since
+	private ItemStack[] shadow;
+	private volatile boolean dirty = false;
 	// Client only
 	protected boolean shiftDown;
 
@@ -110,16 +115,81 @@ public abstract class AbstractWindow implements InventoryViewer {
 	/**
 	 * Reloads the window's items
 	 */
-	public final void reload() {
+	public final synchronized void reload() {
 		ItemStack[] items = new ItemStack[getSize()];
+		ItemStack[] sent = new ItemStack[items.length];
 		for (int i = 0; i < items.length; i++) {
 			Slot entry = getSlot(i);
 			if (entry != null) {
 				items[i] = entry.get();
+				sent[i] = copy(items[i]);
 			}
 		}
 
 		callProtocolEvent(new WindowItemsEvent(this, items));
+		shadow = sent;
+		dirty = false;
+	}
+
+	/**
+	 * Marks the items of this window as changed, to be sent with the next {@link #flush()}
+	 */
+	public void markDirty() {
+		dirty = true;
+	}
+
+	/**
+	 * Sends the slots that changed since the client last received them.<br>
+	 * If too many slots changed, all items are reloaded at once.
+	 */
+	public final synchronized void flush() {
+		if (!dirty) {
+			return;
+		}
+		dirty = false;
+		final int size = getSize();
+		if (shadow == null || shadow.length != size) {
+			reload();
+			return;
+		}
+		int changed = 0;
+		final ItemStack[] items = new ItemStack[size];
+		final Slot[] entries = new Slot[size];
+		for (int i = 0; i < size; i++) {
+			Slot entry = getSlot(i);
+			entries[i] = entry;
+			items[i] = entry == null ? null : copy(entry.get());
+			if (!isSame(items[i], shadow[i])) {
+				changed++;
+			}
+		}
+		if (changed == 0) {
+			return;
+		}
+		if (changed * 100 > size * VanillaConfiguration.WINDOW_FULL_RESEND_PERCENT.getInt()) {
+			reload();
+			return;
+		}
+		for (int i = 0; i < size; i++) {
+			if (!isSame(items[i], shadow[i])) {
+				// slots without an inventory have nothing to send
+				if (entries[i] != null) {
+					callProtocolEvent(new WindowSlotEvent(this, entries[i].getInventory(), i, items[i]));
+				}
+				shadow[i] = items[i];
+			}
+		}
+	}
+
+	private static ItemStack copy(ItemStack item) {
+		return item == null || item.isEmpty() ? null : item.clone();
+	}
+
+	private static boolean isSame(ItemStack a, ItemStack b) {
+		if (a == null || b == null) {
+			return a == b;
+		}
+		return a.getAmount() == b.getAmount() && a.equals(b);
 	}
 
 	/**
@@ -534,8 +534,8 @@ public abstract class Window extends AbstractWindow {
 			case SERVER:
 				QuickbarInventory quickbar = getPlayerInventory().getQuickbar();
 				debug("[Window] Slot changed: " + slot + " = " + item);
-				//callProtocolEvent(new WindowSlotEvent(this, inventory, slots.revert(slot), item));
-				reload();
+				// The changed slots are sent at the end of the tick
+				markDirty();
 				// Update the held item
 				if (inventory instanceof QuickbarInventory && slot == quickbar.getSelectedSlot().getIndex()) {
 					((QuickbarInventory) inventory).updateHeldItem(getPlayer());
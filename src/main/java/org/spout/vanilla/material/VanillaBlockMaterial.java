@@ -71,6 +71,7 @@ import org.spout.vanilla.data.tool.ToolType;
 import org.spout.vanilla.event.block.BlockActionEvent;
 import org.spout.vanilla.material.block.redstone.IndirectRedstoneSource;
 import org.spout.vanilla.material.block.redstone.RedstoneSource;
+import org.spout.vanilla.protocol.netcache.ColumnPayloadCache;
 import org.spout.vanilla.render.VanillaEffects;
 
 public abstract class VanillaBlockMaterial extends BlockMaterial implements VanillaMaterial, IndirectRedstoneSource {
@@ -179,6 +180,9 @@ public abstract class VanillaBlockMaterial extends BlockMaterial implements Vani
 	@Override
 	public void onUpdate(BlockMaterial oldMaterial, Block block) {
 		super.onUpdate(oldMaterial, block);
+		// every change updates the block and its neighbours, with or without a
+		// cause and whether or not a player views the column
+		ColumnPayloadCache.INSTANCE.invalidate(block.getWorld(), block.getX() >> Chunk.BLOCKS.BITS, block.getZ() >> Chunk.BLOCKS.BITS);
 	}
 
 	@Override
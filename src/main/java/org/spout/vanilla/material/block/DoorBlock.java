@@ -156,7 +156,26 @@ public abstract class DoorBlock extends GroundAttachable implements Directional,
 	}
 
 	public void create(Block bottomHalf, Block topHalf, BlockFace facing, boolean hingeLeft, boolean opened) {
+		createTop(topHalf, hingeLeft);
+		createBottom(bottomHalf, facing, opened);
+	}
+
+	/**
+	 * Sets the top half of a door, without touching the bottom half
+	 * @param topHalf of the door
+	 * @param hingeLeft whether the hinge is on the left
+	 */
+	public void createTop(Block topHalf, boolean hingeLeft) {
 		topHalf.setMaterial(this, hingeLeft ? (short) 9 : (short) 8);
+	}
+
+	/**
+	 * Sets the bottom half of a door, without touching the top half
+	 * @param bottomHalf of the door
+	 * @param facing of the door
+	 * @param opened whether the door is open
+	 */
+	public void createBottom(Block bottomHalf, BlockFace facing, boolean opened) {
 		int bottomData = opened ? 0x4 : 0x0;
 		bottomData += BlockFaces.NESW.indexOf(facing, 0);
 		bottomHalf.setMaterial(this, bottomData);
@@ -26,12 +26,12 @@
  */
 package org.spout.vanilla.material.block;
 
-import com.google.common.collect.Lists;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
 
 import org.spout.api.collision.CollisionStrategy;
+import org.spout.api.geo.World;
 import org.spout.api.geo.cuboid.Block;
 import org.spout.api.material.BlockMaterial;
 import org.spout.api.material.DynamicMaterial;
@@ -44,7 +44,9 @@ import org.spout.api.util.set.TInt21TripleHashSet;
 import org.spout.vanilla.material.VanillaBlockMaterial;
 import org.spout.vanilla.material.block.solid.Ice;
 import org.spout.vanilla.material.item.VanillaItemMaterial;
+import org.spout.vanilla.util.flowing.LiquidBuffer;
 import org.spout.vanilla.util.flowing.LiquidModel;
+import org.spout.vanilla.util.flowing.LiquidSimulator;
 
 public abstract class Liquid extends VanillaBlockMaterial implements DynamicMaterial {
 	private final boolean flowing;
@@ -84,8 +86,11 @@ public abstract class Liquid extends VanillaBlockMaterial implements DynamicMate
 			return true;
 		} else {
 			boolean flowed = false;
-			for (BlockFace direction : LiquidModel.INSTANCE.getHoleDirections(block)) {
-				flowed |= this.onFlow(block, direction);
+			int directions = LiquidModel.INSTANCE.getHoleMask(block);
+			for (int i = 0; i < 4; i++) {
+				if ((directions & (1 << i)) != 0) {
+					flowed |= this.onFlow(block, BlockFaces.NESW.get(i));
+				}
 			}
 			return flowed;
 		}
@@ -163,6 +168,82 @@ public abstract class Liquid extends VanillaBlockMaterial implements DynamicMate
 		}
 	}
 
+	/**
+	 * Lets the liquid in a buffer flow in all possible directions
+	 * @param buffer of the blocks around the liquid
+	 * @return True if flowing was successful
+	 */
+	public boolean onFlow(LiquidBuffer buffer, int x, int y, int z) {
+		// Flow below, and if not possible, spread outwards
+		if (this.onFlow(buffer, x, y, z, BlockFace.BOTTOM)) {
+			return true;
+		} else {
+			boolean flowed = false;
+			int directions = LiquidModel.INSTANCE.getHoleMask(buffer, x, y, z);
+			for (int i = 0; i < 4; i++) {
+				if ((directions & (1 << i)) != 0) {
+					flowed |= this.onFlow(buffer, x, y, z, BlockFaces.NESW.get(i));
+				}
+			}
+			return flowed;
+		}
+	}
+
+	/**
+	 * Lets the liquid in a buffer flow to the direction given
+	 * @param buffer of the blocks around the liquid
+	 * @param to flow to
+	 * @return True if flowing was successful
+	 */
+	public boolean onFlow(LiquidBuffer buffer, int x, int y, int z, BlockFace to) {
+		int level;
+		if (to == BlockFace.BOTTOM) {
+			level = this.getMaxLevel();
+		} else {
+			level = this.getLevel(buffer, x, y, z) - 1;
+			if (level < 0) {
+				return false;
+			}
+		}
+		final int sx = x + (int) to.getOffset().getX();
+		final int sy = y + (int) to.getOffset().getY();
+		final int sz = z + (int) to.getOffset().getZ();
+		BlockMaterial spreadMat = buffer.getMaterial(sx, sy, sz);
+		if (this.isMaterial(spreadMat)) {
+			if (this.isMaximumLevel(buffer, sx, sy, sz)) {
+				return !this.isSource(buffer, x, y, z);
+			} else if (level > this.getLevel(buffer, sx, sy, sz)) {
+				if (spreadMat != this.getFlowingMaterial()) {
+					buffer.set(sx, sy, sz, this.getFlowingMaterial(), buffer.getData(sx, sy, sz));
+				}
+				this.setLevel(buffer, sx, sy, sz, level);
+				if (to == BlockFace.BOTTOM) {
+					this.setFlowingDown(buffer, sx, sy, sz, true);
+				}
+				return true;
+			}
+		} else if (!isLiquidObstacle(spreadMat)) {
+			this.onSpread(buffer, sx, sy, sz, level, to.getOpposite());
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Called when this liquid created a new liquid in a buffer because it spread
+	 * @param buffer of the blocks around the liquid
+	 * @param newLevel
+	 * @param from where it spread
+	 */
+	public void onSpread(LiquidBuffer buffer, int x, int y, int z, int newLevel, BlockFace from) {
+		buffer.destroy(x, y, z, this);
+		buffer.setMaterial(x, y, z, this.getFlowingMaterial());
+		this.setLevel(buffer, x, y, z, newLevel);
+		if (from == BlockFace.TOP) {
+			this.setFlowingDown(buffer, x, y, z, true);
+		}
+	}
+
 	/**
 	 * Gets the maximum possible liquid level
 	 * @return the max level
@@ -210,6 +291,21 @@ public abstract class Liquid extends VanillaBlockMaterial implements DynamicMate
 	 */
 	public abstract void setLevel(Block block, int level);
 
+	/**
+	 * Gets the level of a liquid in a buffer
+	 * @param buffer of the blocks
+	 * @return the level, or negative if it has no liquid
+	 */
+	public abstract int getLevel(LiquidBuffer buffer, int x, int y, int z);
+
+	/**
+	 * Sets the level of a liquid in a buffer<br>
+	 * A level lower than 0 converts the liquid into air
+	 * @param buffer of the blocks
+	 * @param level to set to
+	 */
+	public abstract void setLevel(LiquidBuffer buffer, int x, int y, int z, int level);
+
 	/**
 	 * Gets if this liquid can create sources by flowing
 	 * @return True if it can make sources when flowing, False if not
@@ -252,6 +348,14 @@ public abstract class Liquid extends VanillaBlockMaterial implements DynamicMate
 		return block.isDataBitSet(0x8);
 	}
 
+	public void setFlowingDown(LiquidBuffer buffer, int x, int y, int z, boolean flowing) {
+		buffer.setDataBits(x, y, z, 0x8, flowing);
+	}
+
+	public boolean isFlowingDown(LiquidBuffer buffer, int x, int y, int z) {
+		return buffer.isDataBitSet(x, y, z, 0x8);
+	}
+
 	/**
 	 * Gets whether this liquid is at it's maximum level
 	 * @param block of the liquid
@@ -261,6 +365,10 @@ public abstract class Liquid extends VanillaBlockMaterial implements DynamicMate
 		return block.getDataField(0x7) == 0x0;
 	}
 
+	public boolean isMaximumLevel(LiquidBuffer buffer, int x, int y, int z) {
+		return buffer.getDataField(x, y, z, 0x7) == 0x0;
+	}
+
 	/**
 	 * Gets whether this liquid is a source
 	 * @param block of the liquid
@@ -270,6 +378,10 @@ public abstract class Liquid extends VanillaBlockMaterial implements DynamicMate
 		return block.getData() == 0x0;
 	}
 
+	public boolean isSource(LiquidBuffer buffer, int x, int y, int z) {
+		return this.isSource(buffer.getData(x, y, z));
+	}
+
 	/**
 	 * Gets whether this liquid is a source
 	 * @param data of the block of the liquid
@@ -294,6 +406,18 @@ public abstract class Liquid extends VanillaBlockMaterial implements DynamicMate
 
 	@Override
 	public void onDynamicUpdate(Block block, long updateTime, int data) {
+		if (LiquidSimulator.isEnabled()) {
+			LiquidSimulator.queue(block);
+		} else {
+			this.onSimulate(block);
+		}
+	}
+
+	/**
+	 * Updates the level and flowing state of the liquid at the block, and lets it flow
+	 * @param block of the liquid
+	 */
+	public void onSimulate(Block block) {
 		// Update flowing down state
 		if (this.isMaterial(block.translate(BlockFace.TOP).getMaterial())) {
 			// Set non-source water blocks to flow down
@@ -340,6 +464,58 @@ public abstract class Liquid extends VanillaBlockMaterial implements DynamicMate
 		this.onFlow(block);
 	}
 
+	/**
+	 * Updates the level and flowing state of the liquid in a buffer, and lets it flow<br>
+	 * Does the same as {@link #onSimulate(Block)}, on the buffer instead of the world.
+	 * @param buffer of the blocks around the liquid
+	 */
+	public void onSimulate(LiquidBuffer buffer, int x, int y, int z) {
+		// Update flowing down state
+		if (this.isMaterial(buffer.getMaterial(x, y + 1, z))) {
+			// Set non-source water blocks to flow down
+			if (!this.isFlowingDown(buffer, x, y, z)) {
+				this.setFlowingDown(buffer, x, y, z, true);
+				this.setLevel(buffer, x, y, z, this.getMaxLevel());
+			}
+		} else {
+			// Undo state
+			if (this.isFlowingDown(buffer, x, y, z)) {
+				this.setFlowingDown(buffer, x, y, z, false);
+				this.setLevel(buffer, x, y, z, 0);
+			}
+		}
+		// Update liquid level for non-maxed blocks
+		if (!this.isMaximumLevel(buffer, x, y, z)) {
+			int counter = 0;
+			int oldlevel = this.getLevel(buffer, x, y, z);
+			int newlevel = -2;
+			for (BlockFace face : BlockFaces.NESW) {
+				final int nx = x + (int) face.getOffset().getX();
+				final int nz = z + (int) face.getOffset().getZ();
+				if (this.isMaterial(buffer.getMaterial(nx, y, nz))) {
+					newlevel = Math.max(newlevel, this.getLevel(buffer, nx, y, nz) - 1);
+					if (this.hasFlowSource() && this.isSource(buffer, nx, y, nz)) {
+						counter++;
+						if (counter >= 2) {
+							newlevel = this.getMaxLevel();
+							break;
+						}
+					}
+				}
+			}
+			// Compare old and new levels
+			if (newlevel != oldlevel) {
+				this.setLevel(buffer, x, y, z, newlevel);
+				if (newlevel < oldlevel) {
+					// Don't flow when level is reduced
+					return;
+				}
+			}
+		}
+		// Flow outwards
+		this.onFlow(buffer, x, y, z);
+	}
+
 	@Override
 	public EffectRange getDynamicRange() {
 		return EffectRange.THIS_AND_NEIGHBORS;
@@ -356,43 +532,67 @@ public abstract class Liquid extends VanillaBlockMaterial implements DynamicMate
 	 * @param liquid The liquid to flow as a block
 	 */
 	public static void performInstantFlow(Block liquid) {
-		performInstantFlow(Lists.newArrayList(liquid));
+		final TIntArrayList queue = new TIntArrayList(3);
+		queue.add(liquid.getX());
+		queue.add(liquid.getY());
+		queue.add(liquid.getZ());
+		performInstantFlow(liquid.getWorld(), queue);
 	}
 
 	/**
 	 * Instantly flows the liquids at the block positions.
 	 *
-	 * @param liquids The liquids to flow as a collection of blocks
+	 * @param liquids The liquids to flow as a collection of blocks, all in the same world
 	 */
 	public static void performInstantFlow(Collection<Block> liquids) {
-		// Perform instant physics
 		if (liquids.isEmpty()) {
 			return;
 		}
+		final TIntArrayList queue = new TIntArrayList(liquids.size() * 3);
+		World world = null;
+		for (Block liquid : liquids) {
+			world = liquid.getWorld();
+			queue.add(liquid.getX());
+			queue.add(liquid.getY());
+			queue.add(liquid.getZ());
+		}
+		liquids.clear();
+		performInstantFlow(world, queue);
+	}
+
+	/**
+	 * Instantly flows the liquids at the positions in the queue, breadth first.<br>
+	 * The queue holds x, y and z coordinate triples, and every position is only handled once.
+	 */
+	private static void performInstantFlow(World world, TIntArrayList queue) {
 		final TInt21TripleHashSet ignoredBlocks = new TInt21TripleHashSet();
-		final List<Block> tmpBlocks = new ArrayList<Block>();
-		BlockMaterial material;
-		while (!liquids.isEmpty()) {
-			for (Block liquid : liquids) {
-				material = liquid.getMaterial();
-				if (!ignoredBlocks.add(liquid.getX(), liquid.getY(), liquid.getZ())) {
-					continue;
-				}
-				if (!(material instanceof Liquid)) {
-					continue;
-				}
-				// First only flow down to generate a possible liquid below
-				// Then do a regular flow just in case flowing outwards is/was needed
-				if (((Liquid) material).onFlow(liquid, BlockFace.BOTTOM) | ((Liquid) material).onFlow(liquid)) {
-					for (BlockFace face : BlockFaces.NESWB) {
-						tmpBlocks.add(liquid.translate(face));
-					}
+		int index = 0;
+		while (index < queue.size()) {
+			final int x = queue.get(index++);
+			final int y = queue.get(index++);
+			final int z = queue.get(index++);
+			if (!ignoredBlocks.add(x, y, z)) {
+				continue;
+			}
+			Block liquid = world.getBlock(x, y, z);
+			BlockMaterial material = liquid.getMaterial();
+			if (!(material instanceof Liquid)) {
+				continue;
+			}
+			// First only flow down to generate a possible liquid below
+			// Then do a regular flow just in case flowing outwards is/was needed
+			if (((Liquid) material).onFlow(liquid, BlockFace.BOTTOM) | ((Liquid) material).onFlow(liquid)) {
+				for (BlockFace face : BlockFaces.NESWB) {
+					queue.add(x + (int) face.getOffset().getX());
+					queue.add(y + (int) face.getOffset().getY());
+					queue.add(z + (int) face.getOffset().getZ());
 				}
 			}
-			// reset liquids
-			liquids.clear();
-			liquids.addAll(tmpBlocks);
-			tmpBlocks.clear();
+			// Drop the handled part of the queue once it dominates
+			if (index > 3072 && index > (queue.size() >> 1)) {
+				queue.remove(0, index);
+				index = 0;
+			}
 		}
 	}
 }
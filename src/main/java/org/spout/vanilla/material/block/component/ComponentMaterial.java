@@ -33,6 +33,7 @@ import org.spout.api.event.player.PlayerInteractEvent.Action;
 import org.spout.api.geo.LoadOption;
 import org.spout.api.geo.cuboid.Block;
 import org.spout.api.geo.discrete.Point;
+import org.spout.api.material.BlockMaterial;
 import org.spout.api.material.ComplexMaterial;
 import org.spout.api.material.block.BlockFace;
 
@@ -88,6 +89,16 @@ public class ComponentMaterial extends VanillaBlockMaterial implements ComplexMa
 		spawn(block.getPosition());
 	}
 
+	@Override
+	public void onUpdate(BlockMaterial oldMaterial, Block block) {
+		super.onUpdate(oldMaterial, block);
+		// Neighbour and redstone changes may give a dormant component work to do
+		BlockComponent c = block.getComponent();
+		if (c instanceof VanillaBlockComponent) {
+			((VanillaBlockComponent) c).wake();
+		}
+	}
+
 	@Override
 	public BlockComponent createBlockComponent() {
 		try {
@@ -42,6 +42,7 @@ import org.spout.vanilla.material.block.Liquid;
 import org.spout.vanilla.material.block.solid.Ice;
 import org.spout.vanilla.material.item.VanillaItemMaterial;
 import org.spout.vanilla.render.VanillaEffects;
+import org.spout.vanilla.util.flowing.LiquidBuffer;
 
 public class Lava extends Liquid implements InitializableMaterial {
 	public Lava(String name, int id, boolean flowing) {
@@ -94,6 +95,19 @@ public class Lava extends Liquid implements InitializableMaterial {
 		super.onSpread(block, newLevel, from);
 	}
 
+	@Override
+	public void onSpread(LiquidBuffer buffer, int x, int y, int z, int newLevel, BlockFace from) {
+		// Check if this block was actually water
+		if (buffer.getMaterial(x, y, z) instanceof Water) {
+			if (from == BlockFace.TOP) {
+				buffer.setMaterial(x, y, z, VanillaMaterials.STONE);
+				GeneralEffects.LAVA_FIZZ.playGlobal(buffer.getPosition(x, y, z));
+				return;
+			}
+		}
+		super.onSpread(buffer, x, y, z, newLevel, from);
+	}
+
 	@Override
 	public byte getLightLevel(short data) {
 		return 15;
@@ -135,6 +149,27 @@ public class Lava extends Liquid implements InitializableMaterial {
 		}
 	}
 
+	@Override
+	public int getLevel(LiquidBuffer buffer, int x, int y, int z) {
+		if (this.isMaterial(buffer.getMaterial(x, y, z))) {
+			return (6 - (buffer.getData(x, y, z) & 0x6)) >> 1;
+		} else {
+			return -1;
+		}
+	}
+
+	@Override
+	public void setLevel(LiquidBuffer buffer, int x, int y, int z, int level) {
+		if (level < 0) {
+			buffer.setMaterial(x, y, z, VanillaMaterials.AIR);
+		} else {
+			if (level > 3) {
+				level = 3;
+			}
+			buffer.setDataField(x, y, z, 0x7, (3 - level) << 1);
+		}
+	}
+
 	@Override
 	public boolean hasFlowSource() {
 		return false;
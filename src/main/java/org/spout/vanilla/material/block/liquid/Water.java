@@ -45,6 +45,7 @@ import org.spout.vanilla.material.VanillaMaterials;
 import org.spout.vanilla.material.block.Liquid;
 import org.spout.vanilla.material.item.VanillaItemMaterial;
 import org.spout.vanilla.render.VanillaEffects;
+import org.spout.vanilla.util.flowing.LiquidBuffer;
 
 public class Water extends Liquid implements DynamicMaterial, InitializableMaterial {
 	public Water(String name, int id, boolean flowing) {
@@ -96,6 +97,27 @@ public class Water extends Liquid implements DynamicMaterial, InitializableMater
 		}
 	}
 
+	@Override
+	public int getLevel(LiquidBuffer buffer, int x, int y, int z) {
+		if (this.isMaterial(buffer.getMaterial(x, y, z))) {
+			return 7 - (buffer.getData(x, y, z) & 0x7);
+		} else {
+			return -1;
+		}
+	}
+
+	@Override
+	public void setLevel(LiquidBuffer buffer, int x, int y, int z, int level) {
+		if (level < 0) {
+			buffer.setMaterial(x, y, z, VanillaMaterials.AIR);
+		} else {
+			if (level > 7) {
+				level = 7;
+			}
+			buffer.setDataField(x, y, z, 0x7, 7 - level);
+		}
+	}
+
 	@Override
 	public boolean isMaterial(Material... materials) {
 		for (Material material : materials) {
@@ -68,6 +68,7 @@ import org.spout.api.util.set.concurrent.TSyncIntPairHashSet;
 import org.spout.vanilla.VanillaPlugin;
 import org.spout.vanilla.component.block.material.Sign;
 import org.spout.vanilla.component.entity.inventory.PlayerInventory;
+import org.spout.vanilla.component.entity.inventory.WindowHolder;
 import org.spout.vanilla.component.entity.living.Human;
 import org.spout.vanilla.component.entity.misc.Hunger;
 import org.spout.vanilla.component.entity.misc.Level;
@@ -114,6 +115,7 @@ import org.spout.vanilla.event.world.PlaySoundEffectEvent;
 import org.spout.vanilla.event.world.TimeUpdateEvent;
 import org.spout.vanilla.event.world.WeatherChangeEvent;
 import org.spout.vanilla.inventory.window.DefaultWindow;
+import org.spout.vanilla.inventory.window.Window;
 import org.spout.vanilla.material.VanillaMaterials;
 import org.spout.vanilla.material.block.component.VanillaComplexMaterial;
 import org.spout.vanilla.protocol.container.VanillaContainer;
@@ -151,10 +153,18 @@ import org.spout.vanilla.protocol.msg.world.ExplosionMessage;
 import org.spout.vanilla.protocol.msg.world.SoundEffectMessage;
 import org.spout.vanilla.protocol.msg.world.block.BlockActionMessage;
 import org.spout.vanilla.protocol.msg.world.block.BlockBreakAnimationMessage;
+import org.spout.vanilla.protocol.msg.world.block.BlockBulkMessage;
 import org.spout.vanilla.protocol.msg.world.block.BlockChangeMessage;
 import org.spout.vanilla.protocol.msg.world.block.SignMessage;
+import org.spout.vanilla.protocol.msg.world.chunk.ChunkBulkMessage;
 import org.spout.vanilla.protocol.msg.world.chunk.ChunkDataMessage;
+import org.spout.vanilla.protocol.netcache.ChunkNetCache;
+import org.spout.vanilla.protocol.netcache.ColumnPayload;
+import org.spout.vanilla.protocol.netcache.ColumnPayloadCache;
 import org.spout.vanilla.protocol.reposition.VanillaRepositionManager;
+import org.spout.vanilla.protocol.sync.BlockUpdateBuffer;
+import org.spout.vanilla.protocol.sync.BlockUpdateBuffer.ChunkUpdates;
+import org.spout.vanilla.protocol.sync.ChunkStreamer;
 import org.spout.vanilla.world.generator.biome.VanillaBiome;
 
 import static org.spout.vanilla.material.VanillaMaterials.getMinecraftData;
@@ -179,6 +189,8 @@ public class VanillaNetworkSynchronizer extends NetworkSynchronizer implements P
 	private int stepY = 160;
 	private int offsetY = 0;
 	private final VanillaRepositionManager vpm = new VanillaRepositionManager();
+	private final BlockUpdateBuffer blockUpdates = new BlockUpdateBuffer();
+	private final ChunkStreamer chunkStreamer = new ChunkStreamer();
 
 	static {
 		int i = 0;
@@ -363,43 +375,21 @@ public class VanillaNetworkSynchronizer extends NetworkSynchronizer implements P
 		List<ProtocolEvent> events = new ArrayList<ProtocolEvent>();
 
 		if (activeChunks.add(x, z)) {
-			Point p = c.getBase();
-			int[][] heights = getColumnHeights(p);
-			BlockMaterial[][] materials = getColumnTopmostMaterials(p);
-
-			byte[][] packetChunkData = new byte[16][];
-
-			for (int cube = 0; cube < 16; cube++) {
-				int serverCube = rm.getInverse().convertChunkY(cube);
-				Point pp = new Point(c.getWorld(), x << Chunk.BLOCKS.BITS, serverCube << Chunk.BLOCKS.BITS, z << Chunk.BLOCKS.BITS);
-				packetChunkData[cube] = chunkInit.getChunkData(heights, materials, pp, events);
-			}
-
-			Chunk chunk = p.getWorld().getChunkFromBlock(p);
-			byte[] biomeData = new byte[Chunk.BLOCKS.AREA];
-			for (int dx = x; dx < x + Chunk.BLOCKS.SIZE; ++dx) {
-				for (int dz = z; dz < z + Chunk.BLOCKS.SIZE; ++dz) {
-					Biome biome = chunk.getBiome(dx & Chunk.BLOCKS.MASK, 0, dz & Chunk.BLOCKS.MASK);
-					if (biome instanceof VanillaBiome) {
-						biomeData[(dz & Chunk.BLOCKS.MASK) << 4 | (dx & Chunk.BLOCKS.MASK)] = (byte) ((VanillaBiome) biome).getBiomeId();
-					}
-				}
+			if (isStreaming()) {
+				chunkStreamer.queue(c);
+			} else {
+				ColumnPayload payload = getColumnPayload(c);
+				ChunkDataMessage CCMsg = new ChunkDataMessage(x, z, payload, player.getSession(), getRepositionManager());
+				player.getSession().send(false, CCMsg);
+				events.addAll(payload.getEvents());
 			}
 
-			ChunkDataMessage CCMsg = new ChunkDataMessage(x, z, true, new boolean[16], packetChunkData, biomeData, player.getSession(), getRepositionManager());
-			player.getSession().send(false, CCMsg);
-
 			chunks = chunkInit.getChunks(c);
 		}
 
 		if (chunks == null || !chunks.contains(c)) {
 
-			byte[] fullChunkData = ChunkInit.getChunkFullData(c, events);
-
-			byte[][] packetChunkData = new byte[16][];
-			packetChunkData[cY] = fullChunkData;
-			ChunkDataMessage CCMsg = new ChunkDataMessage(x, z, false, new boolean[16], packetChunkData, null, player.getSession(), getRepositionManager());
-			player.getSession().send(false, CCMsg);
+			sendChunkSection(c, cY, events);
 
 			if (chunks == null) {
 				chunks = new ArrayList<Chunk>(1);
@@ -414,6 +404,164 @@ public class VanillaNetworkSynchronizer extends NetworkSynchronizer implements P
 		return chunks;
 	}
 
+	private byte[][] getColumnData(Chunk c, List<ProtocolEvent> events) {
+		RepositionManager rm = getRepositionManager();
+		Point p = c.getBase();
+		int[][] heights = getColumnHeights(p);
+		BlockMaterial[][] materials = getColumnTopmostMaterials(p);
+
+		byte[][] packetChunkData = new byte[16][];
+
+		for (int cube = 0; cube < 16; cube++) {
+			int serverCube = rm.getInverse().convertChunkY(cube);
+			Point pp = new Point(c.getWorld(), c.getX() << Chunk.BLOCKS.BITS, serverCube << Chunk.BLOCKS.BITS, c.getZ() << Chunk.BLOCKS.BITS);
+			packetChunkData[cube] = chunkInit.getChunkData(heights, materials, pp, events);
+		}
+		return packetChunkData;
+	}
+
+	private static byte[] getBiomeData(Chunk c) {
+		int x = c.getX();
+		int z = c.getZ();
+		Point p = c.getBase();
+		Chunk chunk = p.getWorld().getChunkFromBlock(p);
+		byte[] biomeData = new byte[Chunk.BLOCKS.AREA];
+		for (int dx = x; dx < x + Chunk.BLOCKS.SIZE; ++dx) {
+			for (int dz = z; dz < z + Chunk.BLOCKS.SIZE; ++dz) {
+				Biome biome = chunk.getBiome(dx & Chunk.BLOCKS.MASK, 0, dz & Chunk.BLOCKS.MASK);
+				if (biome instanceof VanillaBiome) {
+					biomeData[(dz & Chunk.BLOCKS.MASK) << 4 | (dx & Chunk.BLOCKS.MASK)] = (byte) ((VanillaBiome) biome).getBiomeId();
+				}
+			}
+		}
+		return biomeData;
+	}
+
+	/**
+	 * Gets the payload of a column, from the shared column cache if possible.<br>
+	 * The cache is bypassed when the chunk net cache is active, or when not sending full columns.
+	 */
+	private ColumnPayload getColumnPayload(Chunk c) {
+		ColumnPayloadCache cache = ColumnPayloadCache.INSTANCE;
+		if (!cache.isEnabled() || !chunkInit.sendColumn() || isNetCacheEnabled()) {
+			List<ProtocolEvent> events = new ArrayList<ProtocolEvent>();
+			return new ColumnPayload(getColumnData(c, events), getBiomeData(c), events);
+		}
+		World world = c.getWorld();
+		int offset = getRepositionManager().getInverse().convertChunkY(0);
+		ColumnPayload payload = cache.get(world, c.getX(), c.getZ(), offset);
+		if (payload == null) {
+			long stamp = cache.getStamp();
+			List<ProtocolEvent> events = new ArrayList<ProtocolEvent>();
+			payload = new ColumnPayload(getColumnData(c, events), getBiomeData(c), events);
+			cache.put(world, c.getX(), c.getZ(), offset, stamp, payload);
+		}
+		return payload;
+	}
+
+	private boolean isNetCacheEnabled() {
+		ChunkNetCache cache = session.getDataMap().get(VanillaProtocol.CHUNK_NET_CACHE);
+		return cache != null && cache.isCacheEnabled();
+	}
+
+	/**
+	 * Gets if new columns should be queued and streamed in bulk, instead of being sent right away.<br>
+	 * Streaming is only used for full columns, and not when the chunk net cache is active, as it only handles single chunk data messages.
+	 */
+	private boolean isStreaming() {
+		return ChunkStreamer.isEnabled() && chunkInit.sendColumn() && !isNetCacheEnabled();
+	}
+
+	/**
+	 * Sends the pending columns nearest to the player as bulk messages, within the per tick budget
+	 */
+	private void flushChunkStream() {
+		Point position = player.getScene().getPosition();
+		int centerX = position.getChunkX();
+		int centerZ = position.getChunkZ();
+
+		List<Chunk> columns = chunkStreamer.poll(centerX, centerZ, ChunkStreamer.getColumnsPerTick());
+		if (columns.isEmpty()) {
+			return;
+		}
+
+		int budget = ChunkStreamer.getBytesPerTick();
+		int bytes = 0;
+		int count = 0;
+		List<ProtocolEvent> events = new ArrayList<ProtocolEvent>();
+		byte[][][] columnData = new byte[columns.size()][][];
+		byte[][] biomeData = new byte[columns.size()][];
+
+		for (Chunk column : columns) {
+			if (count > 0 && bytes >= budget) {
+				chunkStreamer.queue(column);
+				continue;
+			}
+			ColumnPayload payload = getColumnPayload(column);
+			columnData[count] = payload.getData();
+			biomeData[count] = payload.getBiomeData();
+			events.addAll(payload.getEvents());
+			for (byte[] sectionData : columnData[count]) {
+				if (sectionData != null) {
+					bytes += sectionData.length;
+				}
+			}
+			bytes += biomeData[count].length;
+			count++;
+		}
+
+		int perBulk = Math.max(1, ChunkStreamer.getColumnsPerBulk());
+		for (int start = 0; start < count; start += perBulk) {
+			int length = Math.min(perBulk, count - start);
+			int[] x = new int[length];
+			int[] z = new int[length];
+			boolean[][] hasAdditionalData = new boolean[length][];
+			byte[][][] data = new byte[length][][];
+			byte[][] biomes = new byte[length][];
+			for (int i = 0; i < length; i++) {
+				Chunk column = columns.get(start + i);
+				x[i] = column.getX();
+				z[i] = column.getZ();
+				hasAdditionalData[i] = new boolean[16];
+				data[i] = columnData[start + i];
+				biomes[i] = biomeData[start + i];
+			}
+			session.send(false, new ChunkBulkMessage(x, z, hasAdditionalData, data, biomes, getRepositionManager()));
+			ChunkStreamer.onBulkSent(length);
+		}
+
+		for (ProtocolEvent e : events) {
+			this.callProtocolEvent(e);
+		}
+
+		if (chunkStreamer.isMeasuring() && isPlayable(centerX, centerZ)) {
+			chunkStreamer.onPlayable();
+		}
+	}
+
+	/**
+	 * Gets if the column the player is in and the columns around it have been sent
+	 */
+	private boolean isPlayable(int x, int z) {
+		for (int dx = -1; dx <= 1; dx++) {
+			for (int dz = -1; dz <= 1; dz++) {
+				if (!activeChunks.contains(x + dx, z + dz) || chunkStreamer.isPending(x + dx, z + dz)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private void sendChunkSection(Chunk c, int cY, List<ProtocolEvent> events) {
+		byte[] fullChunkData = ChunkInit.getChunkFullData(c, events);
+
+		byte[][] packetChunkData = new byte[16][];
+		packetChunkData[cY] = fullChunkData;
+		ChunkDataMessage CCMsg = new ChunkDataMessage(c.getX(), c.getZ(), false, new boolean[16], packetChunkData, null, player.getSession(), getRepositionManager());
+		player.getSession().send(false, CCMsg);
+	}
+
 	public void sendPosition() {
 		sendPosition(player.getScene().getPosition(), player.getScene().getRotation());
 	}
@@ -504,6 +652,8 @@ public class VanillaNetworkSynchronizer extends NetworkSynchronizer implements P
 		this.emptyColumns.clear();
 		this.activeChunks.clear();
 		this.initializedChunks.clear();
+		this.blockUpdates.clear();
+		this.chunkStreamer.clear();
 	}
 
 	private int lastY = Integer.MIN_VALUE;
@@ -552,19 +702,90 @@ public class VanillaNetworkSynchronizer extends NetworkSynchronizer implements P
 			if (column != null && column.isEmpty()) {
 				column = initializedChunks.remove(x, z);
 				activeChunks.remove(x, z);
-				session.send(false, new ChunkDataMessage(x, z, true, null, null, null, true, player.getSession(), getRepositionManager()));
+				if (!chunkStreamer.remove(x, z)) {
+					session.send(false, new ChunkDataMessage(x, z, true, null, null, null, true, player.getSession(), getRepositionManager()));
+				}
 			}
 		}
+
+		flushChunkStream();
+		flushBlockUpdates();
+		flushWindows();
+	}
+
+	/**
+	 * Sends the slots of the open windows which changed during this tick
+	 */
+	private void flushWindows() {
+		WindowHolder holder = player.get(WindowHolder.class);
+		if (holder == null) {
+			return;
+		}
+		Window active = holder.getActiveWindow();
+		if (active != null) {
+			active.flush();
+		}
+		Window inventory = holder.getDefaultWindow();
+		if (inventory != null && inventory != active) {
+			inventory.flush();
+		}
 	}
 
 	@Override
 	public void updateBlock(Chunk chunk, int x, int y, int z, BlockMaterial material, short data) {
-		short id = getMinecraftId(material);
-		x += chunk.getBlockX();
-		y += chunk.getBlockY();
-		z += chunk.getBlockZ();
-		BlockChangeMessage BCM = new BlockChangeMessage(x, y, z, id, getMinecraftData(material, data), getRepositionManager());
-		session.send(false, BCM);
+		blockUpdates.add(chunk, x, y, z, getMinecraftId(material), getMinecraftData(material, data));
+	}
+
+	/**
+	 * Sends the block changes buffered this tick.<br>
+	 * Each chunk is synced using a single block change, a bulk block change or a full resend of the chunk, depending on the number of changes.
+	 */
+	private void flushBlockUpdates() {
+		RepositionManager rm = getRepositionManager();
+		for (ChunkUpdates updates : blockUpdates.drain()) {
+			Chunk c = updates.getChunk();
+			int cY = rm.convertChunkY(c.getY());
+			if (cY < 0 || cY >= WORLD_HEIGHT >> Chunk.BLOCKS.BITS) {
+				continue;
+			}
+
+			if (updates.isResend()) {
+				if (activeChunks.contains(c.getX(), c.getZ()) && !chunkStreamer.isPending(c.getX(), c.getZ())) {
+					List<ProtocolEvent> events = new ArrayList<ProtocolEvent>();
+					sendChunkSection(c, cY, events);
+					BlockUpdateBuffer.onPacketSent();
+					for (ProtocolEvent e : events) {
+						this.callProtocolEvent(e);
+					}
+				}
+				continue;
+			}
+
+			int count = updates.getCount();
+			if (count > BlockUpdateBuffer.getBulkThreshold()) {
+				short[] coordinates = new short[count * 3];
+				short[] types = new short[count];
+				byte[] metadata = new byte[count];
+				int coordinateIndex = 0;
+				for (int i = 0; i < count; i++) {
+					coordinates[coordinateIndex++] = (short) updates.getX(i);
+					coordinates[coordinateIndex++] = (short) rm.convertY(c.getBlockY() + updates.getY(i));
+					coordinates[coordinateIndex++] = (short) updates.getZ(i);
+					types[i] = updates.getType(i);
+					metadata[i] = updates.getData(i);
+				}
+				session.send(false, new BlockBulkMessage(c.getX(), c.getZ(), coordinates, types, metadata, rm));
+				BlockUpdateBuffer.onPacketSent();
+			} else {
+				for (int i = 0; i < count; i++) {
+					int x = c.getBlockX() + updates.getX(i);
+					int y = c.getBlockY() + updates.getY(i);
+					int z = c.getBlockZ() + updates.getZ(i);
+					session.send(false, new BlockChangeMessage(x, y, z, updates.getType(i), updates.getData(i), rm));
+					BlockUpdateBuffer.onPacketSent();
+				}
+			}
+		}
 	}
 
 	@Override
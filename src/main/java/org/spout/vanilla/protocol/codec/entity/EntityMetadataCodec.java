@@ -52,9 +52,15 @@ public final class EntityMetadataCodec extends MessageCodec<EntityMetadataMessag
 
 	@Override
 	public ChannelBuffer encode(EntityMetadataMessage message) throws IOException {
-		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
-		buffer.writeInt(message.getEntityId());
-		ChannelBufferUtils.writeParameters(buffer, message.getParameters());
-		return buffer;
+		byte[] encoded = message.getEncoded();
+		if (encoded == null) {
+			ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+			buffer.writeInt(message.getEntityId());
+			ChannelBufferUtils.writeParameters(buffer, message.getParameters());
+			encoded = new byte[buffer.readableBytes()];
+			buffer.readBytes(encoded);
+			message.setEncoded(encoded);
+		}
+		return ChannelBuffers.wrappedBuffer(encoded);
 	}
 }
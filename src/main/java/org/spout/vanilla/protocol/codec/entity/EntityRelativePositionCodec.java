@@ -51,11 +51,16 @@ public final class EntityRelativePositionCodec extends MessageCodec<EntityRelati
 
 	@Override
 	public ChannelBuffer encode(EntityRelativePositionMessage message) throws IOException {
-		ChannelBuffer buffer = ChannelBuffers.buffer(7);
-		buffer.writeInt(message.getEntityId());
-		buffer.writeByte(message.getDeltaX());
-		buffer.writeByte(message.getDeltaY());
-		buffer.writeByte(message.getDeltaZ());
-		return buffer;
+		byte[] encoded = message.getEncoded();
+		if (encoded == null) {
+			ChannelBuffer buffer = ChannelBuffers.buffer(7);
+			buffer.writeInt(message.getEntityId());
+			buffer.writeByte(message.getDeltaX());
+			buffer.writeByte(message.getDeltaY());
+			buffer.writeByte(message.getDeltaZ());
+			encoded = buffer.array();
+			message.setEncoded(encoded);
+		}
+		return ChannelBuffers.wrappedBuffer(encoded);
 	}
 }
@@ -49,9 +49,14 @@ public class EntityHeadYawCodec extends MessageCodec<EntityHeadYawMessage> {
 
 	@Override
 	public ChannelBuffer encode(EntityHeadYawMessage message) throws IOException {
-		ChannelBuffer buffer = ChannelBuffers.buffer(5);
-		buffer.writeInt(message.getEntityId());
-		buffer.writeByte(message.getHeadYaw());
-		return buffer;
+		byte[] encoded = message.getEncoded();
+		if (encoded == null) {
+			ChannelBuffer buffer = ChannelBuffers.buffer(5);
+			buffer.writeInt(message.getEntityId());
+			buffer.writeByte(message.getHeadYaw());
+			encoded = buffer.array();
+			message.setEncoded(encoded);
+		}
+		return ChannelBuffers.wrappedBuffer(encoded);
 	}
 }
@@ -53,13 +53,18 @@ public final class EntityRelativePositionYawCodec extends MessageCodec<EntityRel
 
 	@Override
 	public ChannelBuffer encode(EntityRelativePositionYawMessage message) throws IOException {
-		ChannelBuffer buffer = ChannelBuffers.buffer(9);
-		buffer.writeInt(message.getEntityId());
-		buffer.writeByte(message.getDeltaX());
-		buffer.writeByte(message.getDeltaY());
-		buffer.writeByte(message.getDeltaZ());
-		buffer.writeByte(message.getRotation());
-		buffer.writeByte(message.getPitch());
-		return buffer;
+		byte[] encoded = message.getEncoded();
+		if (encoded == null) {
+			ChannelBuffer buffer = ChannelBuffers.buffer(9);
+			buffer.writeInt(message.getEntityId());
+			buffer.writeByte(message.getDeltaX());
+			buffer.writeByte(message.getDeltaY());
+			buffer.writeByte(message.getDeltaZ());
+			buffer.writeByte(message.getRotation());
+			buffer.writeByte(message.getPitch());
+			encoded = buffer.array();
+			message.setEncoded(encoded);
+		}
+		return ChannelBuffers.wrappedBuffer(encoded);
 	}
 }
@@ -53,13 +53,18 @@ public final class EntityTeleportCodec extends MessageCodec<EntityTeleportMessag
 
 	@Override
 	public ChannelBuffer encode(EntityTeleportMessage message) throws IOException {
-		ChannelBuffer buffer = ChannelBuffers.buffer(18);
-		buffer.writeInt(message.getEntityId());
-		buffer.writeInt(message.getX());
-		buffer.writeInt(message.getY());
-		buffer.writeInt(message.getZ());
-		buffer.writeByte(message.getRotation());
-		buffer.writeByte(message.getPitch());
-		return buffer;
+		byte[] encoded = message.getEncoded();
+		if (encoded == null) {
+			ChannelBuffer buffer = ChannelBuffers.buffer(18);
+			buffer.writeInt(message.getEntityId());
+			buffer.writeInt(message.getX());
+			buffer.writeInt(message.getY());
+			buffer.writeInt(message.getZ());
+			buffer.writeByte(message.getRotation());
+			buffer.writeByte(message.getPitch());
+			encoded = buffer.array();
+			message.setEncoded(encoded);
+		}
+		return ChannelBuffers.wrappedBuffer(encoded);
 	}
 }
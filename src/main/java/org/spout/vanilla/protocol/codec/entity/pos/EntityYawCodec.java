@@ -50,10 +50,15 @@ public final class EntityYawCodec extends MessageCodec<EntityYawMessage> {
 
 	@Override
 	public ChannelBuffer encode(EntityYawMessage message) throws IOException {
-		ChannelBuffer buffer = ChannelBuffers.buffer(6);
-		buffer.writeInt(message.getEntityId());
-		buffer.writeByte(message.getRotation());
-		buffer.writeByte(message.getPitch());
-		return buffer;
+		byte[] encoded = message.getEncoded();
+		if (encoded == null) {
+			ChannelBuffer buffer = ChannelBuffers.buffer(6);
+			buffer.writeInt(message.getEntityId());
+			buffer.writeByte(message.getRotation());
+			buffer.writeByte(message.getPitch());
+			encoded = buffer.array();
+			message.setEncoded(encoded);
+		}
+		return ChannelBuffers.wrappedBuffer(encoded);
 	}
 }
@@ -27,9 +27,7 @@
 package org.spout.vanilla.protocol.codec.world.chunk;
 
 import java.io.IOException;
-import java.util.zip.DataFormatException;
-import java.util.zip.Deflater;
-import java.util.zip.Inflater;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
@@ -41,7 +39,8 @@ import org.spout.api.protocol.reposition.NullRepositionManager;
 import org.spout.vanilla.protocol.msg.world.chunk.ChunkBulkMessage;
 
 public final class ChunkBulkCodec extends MessageCodec<ChunkBulkMessage> {
-	private static final int COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+	private static final AtomicLong columnsEncoded = new AtomicLong();
+	private static final AtomicLong bytesEncoded = new AtomicLong();
 
 	public ChunkBulkCodec() {
 		super(ChunkBulkMessage.class, 0x38);
@@ -53,9 +52,10 @@ public final class ChunkBulkCodec extends MessageCodec<ChunkBulkMessage> {
 
 		int compressed = buffer.readInt();
 
-		byte[] compressedDataFlat = new byte[compressed];
+		boolean skyLight = buffer.readByte() != 0;
 
-		buffer.readBytes(compressedDataFlat);
+		int compressedIndex = buffer.readerIndex();
+		buffer.skipBytes(compressed);
 
 		int[] x = new int[length];
 		int[] z = new int[length];
@@ -75,40 +75,17 @@ public final class ChunkBulkCodec extends MessageCodec<ChunkBulkMessage> {
 		int flatLength = 0;
 
 		for (int i = 0; i < length; i++) {
-			byte[][] columnData = data[i];
-			for (int j = 0; j < columnData.length; j++) {
-				flatLength += columnData[j].length;
-			}
+			flatLength += getColumnLength(data[i], hasAdd[i], skyLight);
 			flatLength += biomeData[i].length;
 		}
 
-		byte[] uncompressedDataFlat = new byte[flatLength];
-
-		Inflater inflater = new Inflater();
-		inflater.setInput(compressedDataFlat);
-		inflater.getRemaining();
-		try {
-			int uncompressed = inflater.inflate(uncompressedDataFlat);
-			if (uncompressed == 0) {
-				throw new IOException("Not all bytes uncompressed.");
-			} else if (uncompressed != uncompressedDataFlat.length) {
-				throw new IOException("Wrong length for compressed data");
-			}
-		} catch (DataFormatException e) {
-			e.printStackTrace();
-			throw new IOException("Bad compressed data.");
-		} finally {
-			inflater.end();
-		}
+		ChunkCompressor compressor = ChunkCompressor.get();
+		byte[] uncompressedDataFlat = compressor.getUncompressedBuffer(flatLength);
+		compressor.inflate(buffer.slice(compressedIndex, compressed), compressed, uncompressedDataFlat, 0, flatLength);
 
 		int pos = 0;
 		for (int i = 0; i < length; i++) {
-			byte[][] columnData = data[i];
-			for (int j = 0; j < columnData.length; j++) {
-				int l = columnData[j].length;
-				System.arraycopy(uncompressedDataFlat, pos, columnData[j], 0, l);
-				pos += l;
-			}
+			pos = readColumnData(uncompressedDataFlat, pos, data[i], hasAdd[i], skyLight);
 			int l = biomeData[i].length;
 			System.arraycopy(uncompressedDataFlat, pos, biomeData[i], 0, l);
 			pos += l;
@@ -123,37 +100,21 @@ public final class ChunkBulkCodec extends MessageCodec<ChunkBulkMessage> {
 
 	@Override
 	public ChannelBuffer encode(ChunkBulkMessage message) throws IOException {
-		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
-
 		int length = message.getX().length;
-		buffer.writeShort(length);
 
 		int dataLength = 0;
 		byte[][][] uncompressedData = message.getData();
 		byte[][] biomeData = message.getBiomeData();
 		for (int i = 0; i < length; i++) {
-			byte[][] uncompressedColumnData = uncompressedData[i];
-			for (int j = 0; j < uncompressedColumnData.length; j++) {
-				byte[] uncompressedChunkData = uncompressedColumnData[j];
-				if (uncompressedChunkData != null) {
-					dataLength += uncompressedChunkData.length;
-				}
-			}
+			dataLength += getColumnLength(uncompressedData[i], message.hasAdditionalData()[i], true);
 			dataLength += biomeData[i].length;
 		}
 
-		byte[] uncompressedDataFlat = new byte[dataLength];
+		ChunkCompressor compressor = ChunkCompressor.get();
+		byte[] uncompressedDataFlat = compressor.getUncompressedBuffer(dataLength);
 		int pos = 0;
 		for (int i = 0; i < length; i++) {
-			byte[][] uncompressedColumnData = uncompressedData[i];
-			for (int j = 0; j < uncompressedColumnData.length; j++) {
-				byte[] uncompressedChunkData = uncompressedColumnData[j];
-				if (uncompressedChunkData != null) {
-					int copyLength = uncompressedChunkData.length;
-					System.arraycopy(uncompressedChunkData, 0, uncompressedDataFlat, pos, copyLength);
-					pos += copyLength;
-				}
-			}
+			pos = writeColumnData(uncompressedData[i], message.hasAdditionalData()[i], uncompressedDataFlat, pos);
 			System.arraycopy(biomeData[i], 0, uncompressedDataFlat, pos, biomeData[i].length);
 			pos += biomeData[i].length;
 		}
@@ -162,23 +123,13 @@ public final class ChunkBulkCodec extends MessageCodec<ChunkBulkMessage> {
 			throw new IllegalStateException("Flat data length miscalculated");
 		}
 
-		Deflater deflater = new Deflater(COMPRESSION_LEVEL);
-		deflater.setInput(uncompressedDataFlat);
-		deflater.finish();
-
-		byte[] compressedDataFlat = new byte[uncompressedDataFlat.length + 1024];
-
-		int compressed = deflater.deflate(compressedDataFlat);
-		try {
-			if (compressed == 0) {
-				throw new IOException("Not all bytes compressed.");
-			}
-		} finally {
-			deflater.end();
-		}
-
-		buffer.writeInt(compressed);
-		buffer.writeBytes(compressedDataFlat, 0, compressed);
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(7 + (dataLength >> 2) + 64 + length * 12);
+		buffer.writeShort(length);
+		int sizeIndex = buffer.writerIndex();
+		buffer.writeInt(0);
+		buffer.writeByte(1); // Sky light is always sent
+		int compressed = compressor.deflate(uncompressedDataFlat, 0, dataLength, buffer);
+		buffer.setInt(sizeIndex, compressed);
 
 		for (int i = 0; i < length; i++) {
 			buffer.writeInt(message.getX()[i]);
@@ -187,9 +138,90 @@ public final class ChunkBulkCodec extends MessageCodec<ChunkBulkMessage> {
 			buffer.writeShort(booleanArrayToShort(message.hasAdditionalData()[i]));
 		}
 
+		columnsEncoded.addAndGet(length);
+		bytesEncoded.addAndGet(buffer.readableBytes());
+
 		return buffer;
 	}
 
+	/**
+	 * Gets the total number of chunk columns encoded into bulk messages
+	 * @return the number of columns
+	 */
+	public static long getColumnsEncoded() {
+		return columnsEncoded.get();
+	}
+
+	/**
+	 * Gets the total number of bytes of encoded bulk messages
+	 * @return the number of bytes
+	 */
+	public static long getBytesEncoded() {
+		return bytesEncoded.get();
+	}
+
+	/**
+	 * Gets the length of the section data of a column, which is split by type in the same way as for a single chunk data message
+	 */
+	private static int getColumnLength(byte[][] columnData, boolean[] hasAdd, boolean skyLight) {
+		int columnLength = 0;
+		for (int j = 0; j < columnData.length; j++) {
+			if (columnData[j] != null) {
+				columnLength += (skyLight ? 5 : 4) * Chunk.BLOCKS.HALF_VOLUME;
+				if (hasAdd[j]) {
+					columnLength += Chunk.BLOCKS.HALF_VOLUME;
+				}
+			}
+		}
+		return columnLength;
+	}
+
+	private static int writeColumnData(byte[][] columnData, boolean[] hasAdd, byte[] target, int pos) {
+		pos = copySectionData(columnData, null, 0, target, pos, Chunk.BLOCKS.VOLUME, true);
+		pos = copySectionData(columnData, null, Chunk.BLOCKS.VOLUME, target, pos, Chunk.BLOCKS.HALF_VOLUME, true);
+		pos = copySectionData(columnData, null, Chunk.BLOCKS.VOLUME + Chunk.BLOCKS.HALF_VOLUME, target, pos, Chunk.BLOCKS.HALF_VOLUME, true);
+		pos = copySectionData(columnData, null, Chunk.BLOCKS.DOUBLE_VOLUME, target, pos, Chunk.BLOCKS.HALF_VOLUME, true);
+		pos = copySectionData(columnData, hasAdd, Chunk.BLOCKS.DOUBLE_VOLUME + Chunk.BLOCKS.HALF_VOLUME, target, pos, Chunk.BLOCKS.HALF_VOLUME, true);
+		return pos;
+	}
+
+	private static int readColumnData(byte[] source, int pos, byte[][] columnData, boolean[] hasAdd, boolean skyLight) {
+		pos = copySectionData(columnData, null, 0, source, pos, Chunk.BLOCKS.VOLUME, false);
+		pos = copySectionData(columnData, null, Chunk.BLOCKS.VOLUME, source, pos, Chunk.BLOCKS.HALF_VOLUME, false);
+		pos = copySectionData(columnData, null, Chunk.BLOCKS.VOLUME + Chunk.BLOCKS.HALF_VOLUME, source, pos, Chunk.BLOCKS.HALF_VOLUME, false);
+		if (skyLight) {
+			pos = copySectionData(columnData, null, Chunk.BLOCKS.DOUBLE_VOLUME, source, pos, Chunk.BLOCKS.HALF_VOLUME, false);
+		}
+		pos = copySectionData(columnData, hasAdd, Chunk.BLOCKS.DOUBLE_VOLUME + Chunk.BLOCKS.HALF_VOLUME, source, pos, Chunk.BLOCKS.HALF_VOLUME, false);
+		return pos;
+	}
+
+	/**
+	 * Copies one data type of every section in a column between the sections and the flat column data
+	 * @param columnData the sections of the column
+	 * @param filter which sections contain the data type, or null if every section contains it
+	 * @param sectionOffset offset of the data type in the section data
+	 * @param flat the flat column data
+	 * @param pos in the flat column data
+	 * @param length of the data type
+	 * @param toFlat true to copy from the sections to the flat data, false to copy from the flat data to the sections
+	 * @return the new position in the flat column data
+	 */
+	private static int copySectionData(byte[][] columnData, boolean[] filter, int sectionOffset, byte[] flat, int pos, int length, boolean toFlat) {
+		for (int j = 0; j < columnData.length; j++) {
+			if (columnData[j] == null || (filter != null && !filter[j])) {
+				continue;
+			}
+			if (toFlat) {
+				System.arraycopy(columnData[j], sectionOffset, flat, pos, length);
+			} else {
+				System.arraycopy(flat, pos, columnData[j], sectionOffset, length);
+			}
+			pos += length;
+		}
+		return pos;
+	}
+
 	private static short booleanArrayToShort(boolean[] array) {
 		short s = 0;
 		for (int i = 0; i < array.length; i++) {
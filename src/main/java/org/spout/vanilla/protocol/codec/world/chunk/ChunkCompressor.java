@@ -0,0 +1,166 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.protocol.codec.world.chunk;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+
+/**
+ * A per-thread compression context for the chunk codecs.<br>
+ * The Deflater, Inflater and the scratch arrays are reused for every chunk encoded or decoded on the same thread.
+ */
+public final class ChunkCompressor {
+	private static final int COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+	private static final int INITIAL_BUFFER_SIZE = 16 * 10240 + 256;
+	private static final ThreadLocal<ChunkCompressor> COMPRESSOR = new ThreadLocal<ChunkCompressor>() {
+		@Override
+		protected ChunkCompressor initialValue() {
+			return new ChunkCompressor();
+		}
+	};
+	private final Deflater deflater = new Deflater(COMPRESSION_LEVEL);
+	private final Inflater inflater = new Inflater();
+	private byte[] uncompressed = new byte[INITIAL_BUFFER_SIZE];
+	private byte[] compressed = new byte[4096];
+	private byte[] handled = new byte[0];
+
+	private ChunkCompressor() {
+	}
+
+	/**
+	 * Gets the compression context of the current thread
+	 * @return the compressor
+	 */
+	public static ChunkCompressor get() {
+		return COMPRESSOR.get();
+	}
+
+	/**
+	 * Gets a scratch array to assemble uncompressed chunk data in.<br>
+	 * The array is reused by the next call on this thread, and may be longer than the requested size.
+	 * @param size the minimum size of the array
+	 * @return the array
+	 */
+	public byte[] getUncompressedBuffer(int size) {
+		if (uncompressed.length < size) {
+			uncompressed = new byte[size + (size >> 3)];
+		}
+		return uncompressed;
+	}
+
+	/**
+	 * Gets a second scratch array, for chunk data rewritten by the chunk net cache
+	 * @param size the minimum size of the array
+	 * @return the array
+	 */
+	public byte[] getHandledBuffer(int size) {
+		if (handled.length < size) {
+			handled = new byte[size + (size >> 3)];
+		}
+		return handled;
+	}
+
+	/**
+	 * Compresses data and writes it straight into a buffer, growing the buffer as needed
+	 * @param data to compress
+	 * @param off offset of the data
+	 * @param len length of the data
+	 * @param target buffer to write to, starting at its writer index
+	 * @return the number of compressed bytes written
+	 * @throws IOException if no compressed data was produced
+	 */
+	public int deflate(byte[] data, int off, int len, ChannelBuffer target) throws IOException {
+		deflater.reset();
+		deflater.setInput(data, off, len);
+		deflater.finish();
+
+		int start = target.writerIndex();
+		target.ensureWritableBytes((len >> 2) + 64);
+		while (!deflater.finished()) {
+			if (target.writableBytes() == 0) {
+				target.ensureWritableBytes(1 + ((target.writerIndex() - start) >> 1));
+			}
+			if (target.hasArray()) {
+				int writerIndex = target.writerIndex();
+				int deflated = deflater.deflate(target.array(), target.arrayOffset() + writerIndex, target.writableBytes());
+				target.writerIndex(writerIndex + deflated);
+			} else {
+				int deflated = deflater.deflate(compressed, 0, Math.min(compressed.length, target.writableBytes()));
+				target.writeBytes(compressed, 0, deflated);
+			}
+		}
+
+		int written = target.writerIndex() - start;
+		if (written == 0) {
+			throw new IOException("No compressed data found");
+		}
+		return written;
+	}
+
+	/**
+	 * Decompresses data read straight from a buffer
+	 * @param source buffer to read the compressed data from, starting at its reader index
+	 * @param compressedSize number of compressed bytes to read
+	 * @param target array to decompress into
+	 * @param off offset in the target array
+	 * @param len expected length of the decompressed data
+	 * @throws IOException if the data could not be decompressed, or was not of the expected length
+	 */
+	public void inflate(ChannelBuffer source, int compressedSize, byte[] target, int off, int len) throws IOException {
+		inflater.reset();
+		if (source.hasArray()) {
+			inflater.setInput(source.array(), source.arrayOffset() + source.readerIndex(), compressedSize);
+			source.skipBytes(compressedSize);
+		} else {
+			if (compressed.length < compressedSize) {
+				compressed = new byte[compressedSize];
+			}
+			source.readBytes(compressed, 0, compressedSize);
+			inflater.setInput(compressed, 0, compressedSize);
+		}
+
+		int index = 0;
+		try {
+			while (index < len) {
+				int inflated = inflater.inflate(target, off + index, len - index);
+				index += inflated;
+				if (inflated == 0) {
+					break;
+				}
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Bad compressed data.", e);
+		}
+		if (index != len) {
+			throw new IOException("Not all bytes uncompressed.");
+		}
+	}
+}
@@ -27,9 +27,6 @@
 package org.spout.vanilla.protocol.codec.world.chunk;
 
 import java.io.IOException;
-import java.util.zip.DataFormatException;
-import java.util.zip.Deflater;
-import java.util.zip.Inflater;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
@@ -41,9 +38,10 @@ import org.spout.api.protocol.reposition.NullRepositionManager;
 
 import org.spout.vanilla.protocol.VanillaProtocol;
 import org.spout.vanilla.protocol.msg.world.chunk.ChunkDataMessage;
+import org.spout.vanilla.protocol.netcache.ChunkNetCache;
+import org.spout.vanilla.protocol.netcache.ColumnPayload;
 
 public final class ChunkDataCodec extends MessageCodec<ChunkDataMessage> {
-	private static final int COMPRESSION_LEVEL = Deflater.BEST_SPEED;
 	private static final int MAX_SECTIONS = 16;
 	private final byte[] UNLOAD_COMPRESSED = {0x78, (byte) 0x9C, 0x63, 0x64, 0x1C, (byte) 0xD9, 0x00, 0x00, (byte) 0x81, (byte) 0x80, 0x01, 0x01}; //Fake compressed data, client expects this when unloading
 
@@ -60,8 +58,6 @@ public final class ChunkDataCodec extends MessageCodec<ChunkDataMessage> {
 		short primaryBitMap = buffer.readShort();
 		short addBitMap = buffer.readShort();
 		int compressedSize = buffer.readInt();
-		byte[] compressedData = new byte[compressedSize];
-		buffer.readBytes(compressedData);
 
 		boolean[] hasAdditionalData = new boolean[MAX_SECTIONS];
 		byte[][] data = new byte[MAX_SECTIONS][];
@@ -84,29 +80,9 @@ public final class ChunkDataCodec extends MessageCodec<ChunkDataMessage> {
 			size += Chunk.BLOCKS.AREA;
 		}
 
-		byte[] uncompressedData = new byte[size];
-
-		Inflater inflater = new Inflater();
-		inflater.setInput(compressedData);
-		inflater.getRemaining();
-		int index = 0;
-		try {
-			while (index < uncompressedData.length) {
-				int uncompressed = inflater.inflate(uncompressedData, index, uncompressedData.length - index);
-				index += uncompressed;
-				if (uncompressed == 0) {
-					break;
-				}
-			}
-			if (index != uncompressedData.length) {
-				throw new IOException("Not all bytes uncompressed.");
-			}
-		} catch (DataFormatException e) {
-			e.printStackTrace();
-			throw new IOException("Bad compressed data.");
-		} finally {
-			inflater.end();
-		}
+		ChunkCompressor compressor = ChunkCompressor.get();
+		byte[] uncompressedData = compressor.getUncompressedBuffer(size);
+		compressor.inflate(buffer, compressedSize, uncompressedData, 0, size);
 
 		size = 0;
 		// TODO - fix this total hack
@@ -115,13 +91,6 @@ public final class ChunkDataCodec extends MessageCodec<ChunkDataMessage> {
 		size = readSectionData(uncompressedData, size, data, 3 * 2048, 2048);
 		size = readSectionData(uncompressedData, size, data, 4 * 2048, 2048);
 
-		/*size = 0;
-		for (byte[] sectionData : data) {
-			if (sectionData != null && sectionData.length + size < uncompressedData.length) {
-				System.arraycopy(uncompressedData, size, sectionData, 0, sectionData.length);
-				size += sectionData.length;
-			}
-		}*/
 		byte[] biomeData = new byte[Chunk.BLOCKS.AREA];
 
 		if (contiguous) {
@@ -134,12 +103,11 @@ public final class ChunkDataCodec extends MessageCodec<ChunkDataMessage> {
 
 	@Override
 	public ChannelBuffer encode(ChunkDataMessage message) throws IOException {
-		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
-
-		buffer.writeInt(message.getX());
-		buffer.writeInt(message.getZ());
-		buffer.writeByte(message.isContiguous() ? 1 : 0);
 		if (message.shouldUnload()) {
+			ChannelBuffer buffer = ChannelBuffers.buffer(17 + UNLOAD_COMPRESSED.length);
+			buffer.writeInt(message.getX());
+			buffer.writeInt(message.getZ());
+			buffer.writeByte(message.isContiguous() ? 1 : 0);
 			buffer.writeShort(0);
 			buffer.writeShort(0);
 			buffer.writeInt(UNLOAD_COMPRESSED.length);
@@ -151,6 +119,10 @@ public final class ChunkDataCodec extends MessageCodec<ChunkDataMessage> {
 
 		byte[][] data = message.getData();
 
+		Session session = message.getSession();
+		ChunkNetCache netCache = session == null ? null : session.getDataMap().get(VanillaProtocol.CHUNK_NET_CACHE);
+		ColumnPayload payload = netCache != null && netCache.isCacheEnabled() ? null : message.getPayload();
+
 		int uncompressedSize = 0;
 		for (int i = 0; i < MAX_SECTIONS; ++i) {
 			if (data[i] != null) { // This chunk exists! Let's initialize the data for it.
@@ -166,9 +138,21 @@ public final class ChunkDataCodec extends MessageCodec<ChunkDataMessage> {
 			uncompressedSize += message.getBiomeData().length;
 		}
 
-		buffer.writeShort(sectionsSentBitmap);
-		buffer.writeShort(additionalDataBitMap);
-		byte[] uncompressedData = new byte[uncompressedSize];
+		if (payload != null && payload.getCompressed() != null) {
+			byte[] compressedData = payload.getCompressed();
+			ChannelBuffer buffer = ChannelBuffers.buffer(17 + compressedData.length);
+			buffer.writeInt(message.getX());
+			buffer.writeInt(message.getZ());
+			buffer.writeByte(message.isContiguous() ? 1 : 0);
+			buffer.writeShort(sectionsSentBitmap);
+			buffer.writeShort(additionalDataBitMap);
+			buffer.writeInt(compressedData.length);
+			buffer.writeBytes(compressedData);
+			return buffer;
+		}
+
+		ChunkCompressor compressor = ChunkCompressor.get();
+		byte[] uncompressedData = compressor.getUncompressedBuffer(uncompressedSize);
 		int index = 0;
 
 		// TODO - fix this total hack
@@ -182,38 +166,31 @@ public final class ChunkDataCodec extends MessageCodec<ChunkDataMessage> {
 			index += message.getBiomeData().length;
 		}
 
-		Session session = message.getSession();
-		if (session != null) {
-			uncompressedData = message.getSession().getDataMap().get(VanillaProtocol.CHUNK_NET_CACHE).handle(uncompressedData);
+		int uncompressedLength = index;
+		if (netCache != null && netCache.isCacheEnabled()) {
+			byte[] handled = compressor.getHandledBuffer(ChunkNetCache.getHandledLength(uncompressedLength));
+			uncompressedLength = netCache.handle(uncompressedData, uncompressedLength, handled);
+			uncompressedData = handled;
 		}
 
-		byte[] compressedData = new byte[uncompressedSize >> 2];
-
-		Deflater deflater = new Deflater(COMPRESSION_LEVEL);
-		deflater.setInput(uncompressedData);
-		deflater.finish();
-
-		int compressed;
-		try {
-			compressed = deflater.deflate(compressedData);
-			if (compressed == 0) {
-				throw new IOException("No compressed data found");
-			} else if (compressed == compressedData.length) {
-				boolean done = false;
-				while (!done) {
-					byte[] newCompressedData = new byte[1 + compressedData.length + (compressedData.length >> 1)];
-					System.arraycopy(compressedData, 0, newCompressedData, 0, compressedData.length);
-					compressedData = newCompressedData;
-					compressed += deflater.deflate(compressedData, compressed, compressedData.length - compressed);
-					done = compressed < compressedData.length;
-				}
-			}
-		} finally {
-			deflater.end();
-		}
+		ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(17 + (uncompressedLength >> 2) + 64);
+
+		buffer.writeInt(message.getX());
+		buffer.writeInt(message.getZ());
+		buffer.writeByte(message.isContiguous() ? 1 : 0);
+		buffer.writeShort(sectionsSentBitmap);
+		buffer.writeShort(additionalDataBitMap);
+
+		int sizeIndex = buffer.writerIndex();
+		buffer.writeInt(0);
+		int compressed = compressor.deflate(uncompressedData, 0, uncompressedLength, buffer);
+		buffer.setInt(sizeIndex, compressed);
 
-		buffer.writeInt(compressed);
-		buffer.writeBytes(compressedData, 0, compressed);
+		if (payload != null) {
+			byte[] compressedData = new byte[compressed];
+			buffer.getBytes(sizeIndex + 4, compressedData);
+			payload.setCompressed(compressedData);
+		}
 
 		return buffer;
 	}
@@ -221,8 +198,10 @@ public final class ChunkDataCodec extends MessageCodec<ChunkDataMessage> {
 	private int readSectionData(byte[] data, int off, byte[][] target, int targetOff, int len) {
 		for (byte[] sectionTarget : target) {
 			if (sectionTarget != null) {
-				for (int i = targetOff; i < targetOff + len && i < sectionTarget.length; ++i) {
-					sectionTarget[i] = data[off++];
+				int copy = Math.min(len, sectionTarget.length - targetOff);
+				if (copy > 0) {
+					System.arraycopy(data, off, sectionTarget, targetOff, copy);
+					off += copy;
 				}
 			}
 		}
@@ -232,10 +211,8 @@ public final class ChunkDataCodec extends MessageCodec<ChunkDataMessage> {
 	private int writeSectionData(byte[][] data, int off, byte[] target, int targetOff, int len) {
 		for (byte[] sectionData : data) {
 			if (sectionData != null) {
-				int j = off;
-				for (int i = 0; i < len; i++) {
-					target[targetOff++] = sectionData[j++];
-				}
+				System.arraycopy(sectionData, off, target, targetOff, len);
+				targetOff += len;
 			}
 		}
 		return targetOff;
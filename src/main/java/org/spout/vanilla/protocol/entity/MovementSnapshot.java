@@ -0,0 +1,75 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.protocol.entity;
+
+import java.util.List;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import org.spout.api.entity.Entity;
+import org.spout.api.protocol.Message;
+
+/**
+ * Holds the movement messages of an entity for the current tick.<br>
+ * The messages are built once per reposition offset, and shared by every viewer with that offset.
+ * It is kept by the entity protocol, so that viewers never change the components of the entity they sync.
+ */
+class MovementSnapshot {
+	private final TIntObjectHashMap<List<Message>> messages = new TIntObjectHashMap<List<Message>>();
+	private Entity entity;
+	private long age = -1;
+
+	/**
+	 * Gets the movement messages built this tick for a reposition offset
+	 * @param entity the messages are for
+	 * @param offset of the reposition manager of the viewer
+	 * @return the messages, or null if they were not built yet this tick
+	 */
+	public synchronized List<Message> get(Entity entity, int offset) {
+		long worldAge = entity.getWorld().getAge();
+		if (worldAge != age || entity != this.entity) {
+			this.age = worldAge;
+			this.entity = entity;
+			messages.clear();
+			return null;
+		}
+		return messages.get(offset);
+	}
+
+	/**
+	 * Sets the movement messages built this tick for a reposition offset
+	 * @param entity the messages are for
+	 * @param offset of the reposition manager of the viewer
+	 * @param movement messages, which should not be modified afterwards
+	 */
+	public synchronized void put(Entity entity, int offset, List<Message> movement) {
+		// Dropped if the snapshot moved on to another tick or entity meanwhile
+		if (entity == this.entity && entity.getWorld().getAge() == age) {
+			messages.put(offset, movement);
+		}
+	}
+}
@@ -28,7 +28,6 @@ package org.spout.vanilla.protocol.entity;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
 import org.spout.api.entity.Entity;
@@ -37,9 +36,9 @@ import org.spout.api.math.Vector3;
 import org.spout.api.protocol.EntityProtocol;
 import org.spout.api.protocol.Message;
 import org.spout.api.protocol.reposition.RepositionManager;
-import org.spout.api.util.Parameter;
 
 import org.spout.vanilla.component.entity.misc.Head;
+import org.spout.vanilla.component.entity.misc.Metadata;
 import org.spout.vanilla.protocol.ChannelBufferUtils;
 import org.spout.vanilla.protocol.msg.entity.EntityDestroyMessage;
 import org.spout.vanilla.protocol.msg.entity.EntityMetadataMessage;
@@ -54,11 +53,7 @@ import static org.spout.vanilla.protocol.ChannelBufferUtils.protocolifyPosition;
 import static org.spout.vanilla.protocol.ChannelBufferUtils.protocolifyYaw;
 
 public abstract class VanillaEntityProtocol implements EntityProtocol {
-	private List<Parameter<?>> lastMeta;
-
-	public List<Parameter<?>> getUpdateParameters(Entity entity) {
-		return Collections.emptyList();
-	}
+	private final MovementSnapshot snapshot = new MovementSnapshot();
 
 	@Override
 	public final List<Message> getDestroyMessages(Entity entity) {
@@ -67,6 +62,41 @@ public abstract class VanillaEntityProtocol implements EntityProtocol {
 
 	@Override
 	public List<Message> getUpdateMessages(Entity entity, Transform liveTransform, RepositionManager rm, boolean force) {
+		final List<Message> messages;
+		if (force) {
+			messages = getMovementMessages(entity, liveTransform, rm, true);
+		} else {
+			// Movement is the same for every viewer with the same reposition offset, so only build it once per tick
+			int offset = (int) rm.convertY(0);
+			List<Message> movement = snapshot.get(entity, offset);
+			if (movement == null) {
+				movement = getMovementMessages(entity, liveTransform, rm, false);
+				snapshot.put(entity, offset, movement);
+			}
+			messages = new ArrayList<Message>(movement);
+		}
+
+		// Extra metadata
+		Metadata metadata = entity.get(Metadata.class);
+		if (metadata != null) {
+			EntityMetadataMessage update = metadata.getUpdateMessage();
+			if (update != null) {
+				messages.add(update);
+			}
+		}
+
+		return messages;
+	}
+
+	/**
+	 * Builds the movement and head rotation messages of an entity
+	 * @param entity to build the messages for
+	 * @param liveTransform of the entity
+	 * @param rm the reposition manager of the viewer
+	 * @param force True to always send the absolute position
+	 * @return the messages
+	 */
+	protected List<Message> getMovementMessages(Entity entity, Transform liveTransform, RepositionManager rm, boolean force) {
 		// Movement
 		final Transform prevTransform = rm.convert(entity.getScene().getTransform());
 		final Transform newTransform = rm.convert(liveTransform);
@@ -124,13 +154,6 @@ public abstract class VanillaEntityProtocol implements EntityProtocol {
 			messages.add(new EntityVelocityMessage(entity.getId(), new Vector3(0, 0, 0)));
 		}*/
 
-		// Extra metadata
-		List<Parameter<?>> params = getUpdateParameters(entity);
-		if (lastMeta == null || !lastMeta.equals(params)) {
-			messages.add(new EntityMetadataMessage(entity.getId(), params));
-			lastMeta = params;
-		}
-
 		return messages;
 	}
 
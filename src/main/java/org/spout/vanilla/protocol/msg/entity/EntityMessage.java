@@ -39,6 +39,7 @@ import org.spout.vanilla.protocol.proxy.VanillaConnectionInfo;
  */
 public abstract class EntityMessage extends VanillaMainChannelMessage implements TransformableMessage {
 	protected int id;
+	private volatile byte[] encoded;
 
 	public EntityMessage() {
 	}
@@ -59,12 +60,31 @@ public abstract class EntityMessage extends VanillaMainChannelMessage implements
 		return this.id;
 	}
 
+	/**
+	 * Gets the encoded body of this message, if it was encoded before.<br>
+	 * This allows a message sent to several sessions to be encoded only once.
+	 * @return the encoded body, or null if not yet encoded
+	 */
+	public byte[] getEncoded() {
+		return encoded;
+	}
+
+	/**
+	 * Sets the encoded body of this message
+	 * @param encoded body
+	 */
+	public void setEncoded(byte[] encoded) {
+		this.encoded = encoded;
+	}
+
 	@Override
 	public Message transform(boolean upstream, int connects, ConnectionInfo info, ConnectionInfo auxChannelInfo) {
 		if (this.id == ((VanillaConnectionInfo) info).getEntityId()) {
 			this.id = ((VanillaConnectionInfo) auxChannelInfo).getEntityId();
+			this.encoded = null;
 		} else if (this.id == ((VanillaConnectionInfo) auxChannelInfo).getEntityId()) {
 			this.id = ((VanillaConnectionInfo) info).getEntityId();
+			this.encoded = null;
 		}
 		return this;
 	}
@@ -43,7 +43,7 @@ public final class BlockBulkMessage extends VanillaBlockDataChannelMessage {
 	 * Creates a BlockBulkMessage using the specified data
 	 * @param chunkX The x coordinate of the chunk containing these changes
 	 * @param chunkZ The z coordinate of the chunk containing these changes
-	 * @param coordinates An array of change coordinates. Length should be 3 * types.length, with coordinates in x y z format
+	 * @param coordinates An array of change coordinates. Length should be 3 * types.length, with coordinates in x y z format. The y coordinates should already be converted by the RepositionManager
 	 * @param types An array of block types
 	 * @param metadata An array of block metadata. No more than a nibble per entry
 	 */
@@ -51,7 +51,6 @@ public final class BlockBulkMessage extends VanillaBlockDataChannelMessage {
 		if (coordinates.length != (types.length * 3) || types.length != metadata.length) {
 			throw new IllegalArgumentException();
 		}
-		// TODO - this message is broken anyway? - need to add reposition support + fix
 		this.chunkX = rm.convertChunkX(chunkX);
 		this.chunkZ = rm.convertChunkZ(chunkZ);
 		this.coordinates = coordinates;
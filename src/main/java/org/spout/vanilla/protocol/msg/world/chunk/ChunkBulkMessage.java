@@ -50,8 +50,8 @@ public final class ChunkBulkMessage extends VanillaBlockDataChannelMessage {
 		this.x = Arrays.copyOf(x, x.length);
 		this.z = Arrays.copyOf(z, z.length);
 		for (int i = 0; i < x.length; i++) {
-			x[i] = rm.convertChunkX(x[i]);
-			z[i] = rm.convertChunkZ(z[i]);
+			this.x[i] = rm.convertChunkX(x[i]);
+			this.z[i] = rm.convertChunkZ(z[i]);
 		}
 		this.addData = hasAdditionalData;
 		this.data = data;
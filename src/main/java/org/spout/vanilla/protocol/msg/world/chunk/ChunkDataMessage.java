@@ -33,6 +33,7 @@ import org.spout.api.protocol.reposition.RepositionManager;
 import org.spout.api.util.SpoutToStringStyle;
 
 import org.spout.vanilla.protocol.msg.VanillaBlockDataChannelMessage;
+import org.spout.vanilla.protocol.netcache.ColumnPayload;
 
 public final class ChunkDataMessage extends VanillaBlockDataChannelMessage {
 	private final int x, z;
@@ -42,12 +43,24 @@ public final class ChunkDataMessage extends VanillaBlockDataChannelMessage {
 	private final byte[] biomeData;
 	private final boolean unload;
 	private final Session session;
+	private final ColumnPayload payload;
 
 	public ChunkDataMessage(int x, int z, boolean contiguous, boolean[] hasAdditionalData, byte[][] data, byte[] biomeData, Session session, RepositionManager rm) {
 		this(x, z, contiguous, hasAdditionalData, data, biomeData, false, session, rm);
 	}
 
+	/**
+	 * Creates a message for a full column, using a payload which may be shared with other sessions
+	 */
+	public ChunkDataMessage(int x, int z, ColumnPayload payload, Session session, RepositionManager rm) {
+		this(x, z, true, new boolean[16], payload.getData(), payload.getBiomeData(), false, session, rm, payload);
+	}
+
 	public ChunkDataMessage(int x, int z, boolean contiguous, boolean[] hasAdditionalData, byte[][] data, byte[] biomeData, boolean unload, Session session, RepositionManager rm) {
+		this(x, z, contiguous, hasAdditionalData, data, biomeData, unload, session, rm, null);
+	}
+
+	private ChunkDataMessage(int x, int z, boolean contiguous, boolean[] hasAdditionalData, byte[][] data, byte[] biomeData, boolean unload, Session session, RepositionManager rm, ColumnPayload payload) {
 		if (!unload && (hasAdditionalData.length != data.length || data.length != 16)) {
 			throw new IllegalArgumentException("Data and hasAdditionalData must have a length of 16");
 		}
@@ -59,6 +72,7 @@ public final class ChunkDataMessage extends VanillaBlockDataChannelMessage {
 		this.biomeData = biomeData;
 		this.unload = unload;
 		this.session = session;
+		this.payload = payload;
 	}
 
 	public int getX() {
@@ -93,6 +107,14 @@ public final class ChunkDataMessage extends VanillaBlockDataChannelMessage {
 		return session;
 	}
 
+	/**
+	 * Gets the shared payload this message was created from
+	 * @return the payload, or null if the data is not shared
+	 */
+	public ColumnPayload getPayload() {
+		return payload;
+	}
+
 	@Override
 	public String toString() {
 		return new ToStringBuilder(this, SpoutToStringStyle.INSTANCE)
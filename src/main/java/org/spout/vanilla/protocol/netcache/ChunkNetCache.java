@@ -30,26 +30,31 @@ import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
-
-import com.google.common.collect.Sets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.spout.vanilla.data.configuration.VanillaConfiguration;
 
 public class ChunkNetCache implements Serializable {
 	private static final long serialVersionUID = 1L;
-	private final AtomicReference<byte[]> partitionCache = new AtomicReference<byte[]>();
-	private final Set<Long> hashSet;
+	private static final int SEGMENT_BITS = 11;
+	private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+	private final LongLRUSet hashSet;
+	private final AtomicLong bytesHandled = new AtomicLong();
+	private final AtomicLong bytesSaved = new AtomicLong();
+	private final AtomicLong hashTime = new AtomicLong();
 	private volatile boolean cacheEnabled = false;
 
 	public ChunkNetCache() {
-		this(Sets.newSetFromMap(new ConcurrentHashMap<Long, Boolean>()));
+		this(VanillaConfiguration.CHUNK_CACHE_CAPACITY.getInt());
 	}
 
-	public ChunkNetCache(Set<Long> hashSet) {
-		this.hashSet = hashSet;
+	/**
+	 * Creates a new cache
+	 * @param capacity the number of segment hashes the client keeps cached
+	 */
+	public ChunkNetCache(int capacity) {
+		this.hashSet = new LongLRUSet(capacity);
 	}
 
 	public boolean isCacheEnabled() {
@@ -64,7 +69,9 @@ public class ChunkNetCache implements Serializable {
 				try {
 					while (true) {
 						long hash = din.readLong();
-						this.hashSet.add(hash);
+						synchronized (hashSet) {
+							this.hashSet.add(hash);
+						}
 					}
 				} catch (IOException ee) {
 				}
@@ -73,42 +80,94 @@ public class ChunkNetCache implements Serializable {
 	}
 
 	public byte[] handle(byte[] inflatedBuffer) {
-
-		byte[] partition = partitionCache.getAndSet(null);
-
-		if (partition == null) {
-			partition = new byte[2048];
-		}
-
 		if (!cacheEnabled) {
 			return inflatedBuffer;
 		}
+		byte[] newBuffer = new byte[getHandledLength(inflatedBuffer.length)];
+		handle(inflatedBuffer, inflatedBuffer.length, newBuffer);
+		return newBuffer;
+	}
 
-		int dataLength = inflatedBuffer.length;
-		int segments = dataLength >> 11;
-		if ((dataLength & 0x7FF) != 0) {
+	/**
+	 * Replaces the segments of the data which the client already has cached by their hash.<br>
+	 * The result is written into the target array, which may be reused between calls.
+	 * @param inflatedBuffer the uncompressed chunk data
+	 * @param dataLength the length of the data, which may be less than the length of the array
+	 * @param target the array to write to, at least {@link #getHandledLength(int)} long
+	 * @return the length of the data written to the target
+	 */
+	public int handle(byte[] inflatedBuffer, int dataLength, byte[] target) {
+		long start = System.nanoTime();
+
+		int segments = dataLength >> SEGMENT_BITS;
+		if ((dataLength & (SEGMENT_SIZE - 1)) != 0) {
 			segments++;
 		}
 
-		int newLength = dataLength + (segments << 3) + 8 + 4 + 1;
+		int newLength = getHandledLength(dataLength);
+		int saved = 0;
+
+		synchronized (hashSet) {
+			for (int i = 0; i < segments; i++) {
+				int offset = i << SEGMENT_BITS;
+				int length = Math.min(SEGMENT_SIZE, dataLength - offset);
+				long hash = PartitionChunk.hash(inflatedBuffer, offset, length, SEGMENT_SIZE);
+				if (hashSet.add(hash)) {
+					System.arraycopy(inflatedBuffer, offset, target, offset, length);
+					PartitionChunk.setHash(target, i, 0L, dataLength);
+				} else {
+					Arrays.fill(target, offset, offset + length, (byte) 0);
+					PartitionChunk.setHash(target, i, hash, dataLength);
+					saved += length;
+				}
+			}
+		}
+		long crc = PartitionChunk.hash(inflatedBuffer, 0, dataLength);
+		PartitionChunk.setHash(target, 0, crc, newLength - 13);
+		PartitionChunk.setInt(target, 0, dataLength, newLength - 5);
+		target[newLength - 1] = 0;
 
-		byte[] newBuffer = new byte[newLength];
+		bytesHandled.addAndGet(dataLength);
+		bytesSaved.addAndGet(saved);
+		hashTime.addAndGet(System.nanoTime() - start);
 
-		for (int i = 0; i < segments; i++) {
-			PartitionChunk.copyFromChunkData(inflatedBuffer, i, partition, inflatedBuffer.length);
-			long hash = PartitionChunk.hash(partition);
-			if (hashSet.add(hash)) {
-				PartitionChunk.copyToChunkData(newBuffer, i, partition, dataLength);
-			} else {
-				PartitionChunk.setHash(newBuffer, i, hash, dataLength);
-			}
+		return newLength;
+	}
+
+	/**
+	 * Gets the length of chunk data after it is handled, which adds a hash per segment and a trailer
+	 * @param dataLength the length of the uncompressed chunk data
+	 * @return the length of the handled data
+	 */
+	public static int getHandledLength(int dataLength) {
+		int segments = dataLength >> SEGMENT_BITS;
+		if ((dataLength & (SEGMENT_SIZE - 1)) != 0) {
+			segments++;
 		}
-		long crc = PartitionChunk.hash(inflatedBuffer);
-		PartitionChunk.setHash(newBuffer, 0, crc, newLength - 13);
-		PartitionChunk.setInt(newBuffer, 0, dataLength, newLength - 5);
+		return dataLength + (segments << 3) + 8 + 4 + 1;
+	}
 
-		partitionCache.set(partition);
+	/**
+	 * Gets the number of uncompressed bytes handled for this session
+	 * @return the number of bytes
+	 */
+	public long getBytesHandled() {
+		return bytesHandled.get();
+	}
 
-		return newBuffer;
+	/**
+	 * Gets the number of uncompressed bytes replaced by hashes for this session
+	 * @return the number of bytes
+	 */
+	public long getBytesSaved() {
+		return bytesSaved.get();
+	}
+
+	/**
+	 * Gets the time spent hashing and rewriting chunk data for this session
+	 * @return the time in nanoseconds
+	 */
+	public long getHashTime() {
+		return hashTime.get();
 	}
 }
@@ -0,0 +1,101 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.protocol.netcache;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.spout.api.protocol.event.ProtocolEvent;
+
+/**
+ * The data of a full chunk column, as sent in a chunk data message.<br>
+ * A payload is shared between all the sessions it is sent to, and must not be modified once created.
+ * The compressed form is filled in by the codec the first time the payload is encoded.
+ */
+public final class ColumnPayload {
+	private final byte[][] data;
+	private final byte[] biomeData;
+	private final List<ProtocolEvent> events;
+	private final long created = System.currentTimeMillis();
+	private volatile byte[] compressed;
+
+	public ColumnPayload(byte[][] data, byte[] biomeData, List<ProtocolEvent> events) {
+		this.data = data;
+		this.biomeData = biomeData;
+		this.events = Collections.unmodifiableList(events);
+	}
+
+	public byte[][] getData() {
+		return data;
+	}
+
+	public byte[] getBiomeData() {
+		return biomeData;
+	}
+
+	/**
+	 * Gets the events which have to be called after the column is sent, such as sign and tile entity updates
+	 * @return the events
+	 */
+	public List<ProtocolEvent> getEvents() {
+		return events;
+	}
+
+	/**
+	 * Gets the compressed section and biome data, as written by the chunk data codec
+	 * @return the compressed data, or null if the payload was not encoded yet
+	 */
+	public byte[] getCompressed() {
+		return compressed;
+	}
+
+	public void setCompressed(byte[] compressed) {
+		this.compressed = compressed;
+	}
+
+	/**
+	 * Gets the time this payload was created
+	 * @return the time in milliseconds
+	 */
+	public long getCreated() {
+		return created;
+	}
+
+	/**
+	 * Gets the approximate memory used by this payload, including a reserve for the compressed data
+	 * @return the size in bytes
+	 */
+	public int getSize() {
+		int size = biomeData.length;
+		for (byte[] section : data) {
+			if (section != null) {
+				size += section.length;
+			}
+		}
+		return size + (size >> 2);
+	}
+}
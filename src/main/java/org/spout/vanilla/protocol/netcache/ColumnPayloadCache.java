@@ -0,0 +1,264 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.protocol.netcache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import org.spout.api.geo.World;
+
+import org.spout.vanilla.data.configuration.VanillaConfiguration;
+
+/**
+ * A server wide cache of column payloads, shared by every session viewing the same columns.<br>
+ * Payloads are stored per reposition offset, as the offset decides which chunks make up the sections of the column.
+ * Each change of a column is stamped in a fixed table of stripes, so that payloads built while the column changed are not stored.
+ * Invalidating a column which is not cached only writes its stripe, without locking.
+ * The cache is bounded by memory, evicting the least recently used columns first.
+ */
+public final class ColumnPayloadCache {
+	public static final ColumnPayloadCache INSTANCE = new ColumnPayloadCache();
+	private static final int COLUMN_OVERHEAD = 128;
+	private static final int STRIPES = 4096;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+	private final LinkedHashMap<ColumnKey, CachedColumn> columns = new LinkedHashMap<ColumnKey, CachedColumn>(256, 0.75f, true);
+	private long size = 0;
+	private final AtomicLong clock = new AtomicLong();
+	// stamp of the last change, and the number of cached columns, per stripe
+	private final AtomicLongArray changes = new AtomicLongArray(STRIPES);
+	private final AtomicIntegerArray cached = new AtomicIntegerArray(STRIPES);
+
+	private ColumnPayloadCache() {
+	}
+
+	/**
+	 * Gets if the cache is enabled in the configuration
+	 * @return true if enabled
+	 */
+	public boolean isEnabled() {
+		return VanillaConfiguration.COLUMN_CACHE.getBoolean();
+	}
+
+	/**
+	 * Gets a cached payload
+	 * @param world of the column
+	 * @param x coordinate of the column
+	 * @param z coordinate of the column
+	 * @param offset the reposition offset, in chunks
+	 * @return the payload, or null if not cached
+	 */
+	public synchronized ColumnPayload get(World world, int x, int z, int offset) {
+		CachedColumn column = columns.get(new ColumnKey(world.getName(), x, z));
+		ColumnPayload payload = column == null ? null : column.payloads.get(offset);
+		if (payload != null && System.currentTimeMillis() - payload.getCreated() > VanillaConfiguration.COLUMN_CACHE_TTL.getInt()) {
+			column.payloads.remove(offset);
+			size -= payload.getSize();
+			payload = null;
+		}
+		if (payload == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return payload;
+	}
+
+	/**
+	 * Gets the current change stamp.<br>
+	 * The stamp has to be read before building a payload, and passed to {@link #put}.
+	 * @return the stamp
+	 */
+	public long getStamp() {
+		return clock.get();
+	}
+
+	/**
+	 * Stores a payload, unless the column changed since the given stamp was read
+	 * @param world of the column
+	 * @param x coordinate of the column
+	 * @param z coordinate of the column
+	 * @param offset the reposition offset, in chunks
+	 * @param stamp when building of the payload started
+	 * @param payload to store
+	 */
+	public synchronized void put(World world, int x, int z, int offset, long stamp, ColumnPayload payload) {
+		int stripe = getStripe(world, x, z);
+		ColumnKey key = new ColumnKey(world.getName(), x, z);
+		CachedColumn column = columns.get(key);
+		boolean created = column == null;
+		// counted before the stamp is checked, so that an invalidation after
+		// the check sees the column and waits for the lock
+		if (created) {
+			cached.incrementAndGet(stripe);
+		}
+		if (changes.get(stripe) > stamp) {
+			if (created) {
+				cached.decrementAndGet(stripe);
+			}
+			return;
+		}
+		if (created) {
+			column = new CachedColumn(stripe);
+			columns.put(key, column);
+			size += COLUMN_OVERHEAD;
+		}
+		ColumnPayload old = column.payloads.put(offset, payload);
+		if (old != null) {
+			size -= old.getSize();
+		}
+		size += payload.getSize();
+		evict();
+	}
+
+	/**
+	 * Stamps a change of a column, and removes its payloads
+	 * @param world of the column
+	 * @param x coordinate of the column
+	 * @param z coordinate of the column
+	 */
+	public void invalidate(World world, int x, int z) {
+		int stripe = getStripe(world, x, z);
+		long stamp = clock.incrementAndGet();
+		// stamps of one stripe may be written out of order, so only raise it
+		long current;
+		do {
+			current = changes.get(stripe);
+		} while (current < stamp && !changes.compareAndSet(stripe, current, stamp));
+		if (cached.get(stripe) == 0) {
+			return;
+		}
+		synchronized (this) {
+			CachedColumn column = columns.remove(new ColumnKey(world.getName(), x, z));
+			if (column != null) {
+				remove(column);
+				invalidations.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached payloads
+	 */
+	public synchronized void clear() {
+		columns.clear();
+		for (int i = 0; i < STRIPES; i++) {
+			cached.set(i, 0);
+		}
+		size = 0;
+	}
+
+	private static int getStripe(World world, int x, int z) {
+		int hash = (world.getName().hashCode() * 31 + x) * 31 + z;
+		return (hash ^ (hash >>> 12)) & (STRIPES - 1);
+	}
+
+	private void remove(CachedColumn column) {
+		for (ColumnPayload payload : column.payloads.valueCollection()) {
+			size -= payload.getSize();
+		}
+		size -= COLUMN_OVERHEAD;
+		cached.decrementAndGet(column.stripe);
+	}
+
+	private void evict() {
+		long maxSize = ((long) VanillaConfiguration.COLUMN_CACHE_SIZE.getInt()) << 20;
+		Iterator<Map.Entry<ColumnKey, CachedColumn>> i = columns.entrySet().iterator();
+		while (size > maxSize && i.hasNext()) {
+			CachedColumn column = i.next().getValue();
+			evictions.addAndGet(column.payloads.size());
+			remove(column);
+			i.remove();
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public long getInvalidations() {
+		return invalidations.get();
+	}
+
+	/**
+	 * Gets the approximate memory used by the cached payloads
+	 * @return the size in bytes
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	private static class CachedColumn {
+		private final TIntObjectHashMap<ColumnPayload> payloads = new TIntObjectHashMap<ColumnPayload>(2);
+		private final int stripe;
+
+		private CachedColumn(int stripe) {
+			this.stripe = stripe;
+		}
+	}
+
+	private static class ColumnKey {
+		private final String world;
+		private final int x, z;
+
+		private ColumnKey(String world, int x, int z) {
+			this.world = world;
+			this.x = x;
+			this.z = z;
+		}
+
+		@Override
+		public int hashCode() {
+			return (world.hashCode() * 31 + x) * 31 + z;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ColumnKey)) {
+				return false;
+			}
+			ColumnKey other = (ColumnKey) obj;
+			return x == other.x && z == other.z && world.equals(other.world);
+		}
+	}
+}
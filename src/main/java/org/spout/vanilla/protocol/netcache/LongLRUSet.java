@@ -0,0 +1,178 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.protocol.netcache;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A bounded set of primitive longs, which evicts the least recently used value when full.<br>
+ * Values are stored in flat arrays, linked in order of use, and indexed by an open addressing hash table.
+ * This class is not thread safe.
+ */
+public class LongLRUSet implements Serializable {
+	private static final long serialVersionUID = 1L;
+	private static final int NONE = -1;
+	private final int capacity;
+	private final long[] values;
+	private final int[] older;
+	private final int[] newer;
+	private final int[] table;
+	private final int mask;
+	private int oldest = NONE;
+	private int newest = NONE;
+	private int size = 0;
+
+	/**
+	 * Creates a new set
+	 * @param capacity the maximum number of values held
+	 */
+	public LongLRUSet(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		this.capacity = capacity;
+		this.values = new long[capacity];
+		this.older = new int[capacity];
+		this.newer = new int[capacity];
+		int tableSize = Integer.highestOneBit(capacity) << 2;
+		this.table = new int[tableSize];
+		this.mask = tableSize - 1;
+		Arrays.fill(table, NONE);
+	}
+
+	/**
+	 * Adds a value to the set, evicting the least recently used value if the set is full.<br>
+	 * If the value is already in the set, it is marked as most recently used.
+	 * @param value to add
+	 * @return true if the value was not in the set
+	 */
+	public boolean add(long value) {
+		int slot = find(value);
+		int entry = table[slot];
+		if (entry != NONE) {
+			unlink(entry);
+			link(entry);
+			return false;
+		}
+		if (size == capacity) {
+			entry = oldest;
+			unlink(entry);
+			remove(find(values[entry]));
+			slot = find(value);
+		} else {
+			entry = size++;
+		}
+		values[entry] = value;
+		table[slot] = entry;
+		link(entry);
+		return true;
+	}
+
+	/**
+	 * Gets if a value is in the set, without marking it as used
+	 * @param value to look for
+	 * @return true if the value is in the set
+	 */
+	public boolean contains(long value) {
+		return table[find(value)] != NONE;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public void clear() {
+		Arrays.fill(table, NONE);
+		oldest = NONE;
+		newest = NONE;
+		size = 0;
+	}
+
+	private int find(long value) {
+		int slot = hash(value) & mask;
+		while (table[slot] != NONE && values[table[slot]] != value) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Empties a slot of the hash table, shifting back the entries of the same probe sequence
+	 */
+	private void remove(int slot) {
+		table[slot] = NONE;
+		int next = slot;
+		while (true) {
+			next = (next + 1) & mask;
+			int entry = table[next];
+			if (entry == NONE) {
+				return;
+			}
+			int home = hash(values[entry]) & mask;
+			boolean move = next > slot ? (home <= slot || home > next) : (home <= slot && home > next);
+			if (move) {
+				table[slot] = entry;
+				table[next] = NONE;
+				slot = next;
+			}
+		}
+	}
+
+	private void link(int entry) {
+		older[entry] = newest;
+		newer[entry] = NONE;
+		if (newest != NONE) {
+			newer[newest] = entry;
+		} else {
+			oldest = entry;
+		}
+		newest = entry;
+	}
+
+	private void unlink(int entry) {
+		if (older[entry] != NONE) {
+			newer[older[entry]] = newer[entry];
+		} else {
+			oldest = newer[entry];
+		}
+		if (newer[entry] != NONE) {
+			older[newer[entry]] = older[entry];
+		} else {
+			newest = older[entry];
+		}
+	}
+
+	private static int hash(long value) {
+		long h = value * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
@@ -113,4 +113,15 @@ public class PartitionChunk {
 		}
 		return h;
 	}
+
+	/**
+	 * Hashes a range of an array as if it was padded with zeros to the given length
+	 */
+	public static long hash(final byte[] a, final int off, final int len, final int paddedLength) {
+		long h = hash(a, off, len);
+		for (int i = len; i < paddedLength; i++) {
+			h += (h << 5);
+		}
+		return h;
+	}
 }
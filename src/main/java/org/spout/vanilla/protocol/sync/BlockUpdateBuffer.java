@@ -0,0 +1,234 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.protocol.sync;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.spout.api.geo.cuboid.Chunk;
+
+import org.spout.vanilla.data.configuration.VanillaConfiguration;
+
+/**
+ * Collects the block changes sent to a single session during a tick, grouped by chunk.<br>
+ * The changes are drained once per tick, so that each chunk can be synced using a single message.
+ */
+public class BlockUpdateBuffer {
+	private static final AtomicLong blocksChanged = new AtomicLong();
+	private static final AtomicLong packetsSent = new AtomicLong();
+	private Map<Chunk, ChunkUpdates> updates = new HashMap<Chunk, ChunkUpdates>();
+
+	/**
+	 * Adds a block change to the buffer, replacing an earlier change to the same block
+	 * @param chunk the chunk containing the block
+	 * @param x coordinate of the block, relative to the chunk
+	 * @param y coordinate of the block, relative to the chunk
+	 * @param z coordinate of the block, relative to the chunk
+	 * @param type of the block, as Minecraft id
+	 * @param data of the block, as Minecraft data
+	 */
+	public synchronized void add(Chunk chunk, int x, int y, int z, short type, short data) {
+		ChunkUpdates chunkUpdates = updates.get(chunk);
+		if (chunkUpdates == null) {
+			chunkUpdates = new ChunkUpdates(chunk, getResendThreshold());
+			updates.put(chunk, chunkUpdates);
+		}
+		chunkUpdates.add(x, y, z, type, data);
+		blocksChanged.incrementAndGet();
+	}
+
+	/**
+	 * Removes and returns all the buffered changes
+	 * @return the changes, one entry per chunk
+	 */
+	public synchronized Collection<ChunkUpdates> drain() {
+		if (updates.isEmpty()) {
+			return Collections.emptyList();
+		}
+		Collection<ChunkUpdates> drained = new ArrayList<ChunkUpdates>(updates.values());
+		updates = new HashMap<Chunk, ChunkUpdates>();
+		return drained;
+	}
+
+	/**
+	 * Discards all the buffered changes
+	 */
+	public synchronized void clear() {
+		updates.clear();
+	}
+
+	/**
+	 * Records that a message was sent to sync buffered block changes
+	 */
+	public static void onPacketSent() {
+		packetsSent.incrementAndGet();
+	}
+
+	/**
+	 * Gets the number of changes which has to be exceeded for a chunk to be sent using a bulk message
+	 * @return the bulk threshold
+	 */
+	public static int getBulkThreshold() {
+		return VanillaConfiguration.BLOCK_UPDATE_BULK_THRESHOLD.getInt();
+	}
+
+	/**
+	 * Gets the number of changes above which the full chunk data is sent instead of the individual changes
+	 * @return the resend threshold
+	 */
+	public static int getResendThreshold() {
+		return VanillaConfiguration.BLOCK_UPDATE_RESEND_THRESHOLD.getInt();
+	}
+
+	/**
+	 * Gets the total number of block changes buffered, over all sessions
+	 * @return the number of block changes
+	 */
+	public static long getBlocksChanged() {
+		return blocksChanged.get();
+	}
+
+	/**
+	 * Gets the total number of messages sent to sync the buffered block changes, over all sessions
+	 * @return the number of messages
+	 */
+	public static long getPacketsSent() {
+		return packetsSent.get();
+	}
+
+	/**
+	 * Gets the number of messages saved by coalescing block changes, compared to one message per change
+	 * @return the number of messages saved
+	 */
+	public static long getPacketsSaved() {
+		return Math.max(0, blocksChanged.get() - packetsSent.get());
+	}
+
+	/**
+	 * The block changes of a single chunk.<br>
+	 * Once more changes are added than the resend threshold, the individual changes are dropped and the chunk is flagged for a full resend.
+	 */
+	public static class ChunkUpdates {
+		private final Chunk chunk;
+		private final int capacity;
+		private short[] positions;
+		private short[] types;
+		private byte[] data;
+		private int count = 0;
+		private boolean resend = false;
+
+		private ChunkUpdates(Chunk chunk, int capacity) {
+			this.chunk = chunk;
+			this.capacity = Math.max(1, capacity);
+			int initial = Math.min(this.capacity, 8);
+			this.positions = new short[initial];
+			this.types = new short[initial];
+			this.data = new byte[initial];
+		}
+
+		private void add(int x, int y, int z, short type, short blockData) {
+			if (resend) {
+				return;
+			}
+			short position = (short) ((x & Chunk.BLOCKS.MASK) << 8 | (y & Chunk.BLOCKS.MASK) << 4 | (z & Chunk.BLOCKS.MASK));
+			for (int i = 0; i < count; i++) {
+				if (positions[i] == position) {
+					types[i] = type;
+					data[i] = (byte) blockData;
+					return;
+				}
+			}
+			if (count >= capacity) {
+				resend = true;
+				positions = null;
+				types = null;
+				data = null;
+				return;
+			}
+			if (count == positions.length) {
+				int length = Math.min(capacity, count << 1);
+				short[] newPositions = new short[length];
+				short[] newTypes = new short[length];
+				byte[] newData = new byte[length];
+				System.arraycopy(positions, 0, newPositions, 0, count);
+				System.arraycopy(types, 0, newTypes, 0, count);
+				System.arraycopy(data, 0, newData, 0, count);
+				positions = newPositions;
+				types = newTypes;
+				data = newData;
+			}
+			positions[count] = position;
+			types[count] = type;
+			data[count] = (byte) blockData;
+			count++;
+		}
+
+		public Chunk getChunk() {
+			return chunk;
+		}
+
+		/**
+		 * Gets if too many blocks changed, and the full chunk data should be sent
+		 * @return true if the chunk should be resent
+		 */
+		public boolean isResend() {
+			return resend;
+		}
+
+		/**
+		 * Gets the number of distinct blocks changed, or 0 when the chunk is flagged for a resend
+		 * @return the number of changes
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		public int getX(int i) {
+			return (positions[i] >> 8) & Chunk.BLOCKS.MASK;
+		}
+
+		public int getY(int i) {
+			return (positions[i] >> 4) & Chunk.BLOCKS.MASK;
+		}
+
+		public int getZ(int i) {
+			return positions[i] & Chunk.BLOCKS.MASK;
+		}
+
+		public short getType(int i) {
+			return types[i];
+		}
+
+		public byte getData(int i) {
+			return data[i];
+		}
+	}
+}
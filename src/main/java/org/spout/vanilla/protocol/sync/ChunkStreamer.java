@@ -0,0 +1,210 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.protocol.sync;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.util.hashing.IntPairHashed;
+
+import org.spout.vanilla.data.configuration.VanillaConfiguration;
+
+/**
+ * Holds the chunk columns that are waiting to be streamed to a single session.<br>
+ * Columns are handed out nearest-first around the player, limited by a per tick budget, so that they can be sent in bulk.
+ */
+public class ChunkStreamer {
+	private static final AtomicLong columnsStreamed = new AtomicLong();
+	private static final AtomicLong bulksSent = new AtomicLong();
+	private static final AtomicLong firstPlayableCount = new AtomicLong();
+	private static final AtomicLong firstPlayableTotal = new AtomicLong();
+	private static final AtomicLong firstPlayableLast = new AtomicLong();
+	private final Map<Long, Chunk> pending = new LinkedHashMap<Long, Chunk>();
+	private boolean measure = true;
+	private long streamStart = 0;
+
+	/**
+	 * Queues a column to be streamed
+	 * @param column any chunk of the column
+	 */
+	public synchronized void queue(Chunk column) {
+		if (measure) {
+			measure = false;
+			streamStart = System.nanoTime();
+		}
+		pending.put(IntPairHashed.key(column.getX(), column.getZ()), column);
+	}
+
+	/**
+	 * Removes a column from the queue
+	 * @param x coordinate of the column
+	 * @param z coordinate of the column
+	 * @return true if the column was still waiting to be streamed
+	 */
+	public synchronized boolean remove(int x, int z) {
+		return pending.remove(IntPairHashed.key(x, z)) != null;
+	}
+
+	/**
+	 * Gets if a column is waiting to be streamed
+	 * @param x coordinate of the column
+	 * @param z coordinate of the column
+	 * @return true if the column is pending
+	 */
+	public synchronized boolean isPending(int x, int z) {
+		return pending.containsKey(IntPairHashed.key(x, z));
+	}
+
+	/**
+	 * Removes all pending columns. The time to first playable is measured again, starting from the next queued column
+	 */
+	public synchronized void clear() {
+		pending.clear();
+		measure = true;
+		streamStart = 0;
+	}
+
+	/**
+	 * Removes and returns the pending columns nearest to the given column
+	 * @param centerX coordinate of the column the player is in
+	 * @param centerZ coordinate of the column the player is in
+	 * @param max number of columns to return
+	 * @return the columns, nearest first
+	 */
+	public synchronized List<Chunk> poll(final int centerX, final int centerZ, int max) {
+		if (pending.isEmpty() || max <= 0) {
+			return Collections.emptyList();
+		}
+		List<Chunk> columns = new ArrayList<Chunk>(pending.values());
+		if (columns.size() > 1) {
+			Collections.sort(columns, new Comparator<Chunk>() {
+				@Override
+				public int compare(Chunk c1, Chunk c2) {
+					int d1 = distanceSquared(c1, centerX, centerZ);
+					int d2 = distanceSquared(c2, centerX, centerZ);
+					return d1 < d2 ? -1 : (d1 == d2 ? 0 : 1);
+				}
+			});
+		}
+		if (columns.size() > max) {
+			columns = new ArrayList<Chunk>(columns.subList(0, max));
+		}
+		for (Chunk column : columns) {
+			pending.remove(IntPairHashed.key(column.getX(), column.getZ()));
+		}
+		return columns;
+	}
+
+	/**
+	 * Records that the columns around the player have all been sent, which ends the current time to first playable measurement
+	 */
+	public synchronized void onPlayable() {
+		if (streamStart == 0) {
+			return;
+		}
+		long millis = (System.nanoTime() - streamStart) / 1000000L;
+		streamStart = 0;
+		firstPlayableCount.incrementAndGet();
+		firstPlayableTotal.addAndGet(millis);
+		firstPlayableLast.set(millis);
+	}
+
+	/**
+	 * Gets if a time to first playable measurement is running
+	 * @return true if waiting for the columns around the player
+	 */
+	public synchronized boolean isMeasuring() {
+		return streamStart != 0;
+	}
+
+	/**
+	 * Records that a bulk message was sent
+	 * @param columns in the bulk message
+	 */
+	public static void onBulkSent(int columns) {
+		bulksSent.incrementAndGet();
+		columnsStreamed.addAndGet(columns);
+	}
+
+	private static int distanceSquared(Chunk c, int centerX, int centerZ) {
+		int dx = c.getX() - centerX;
+		int dz = c.getZ() - centerZ;
+		return dx * dx + dz * dz;
+	}
+
+	public static boolean isEnabled() {
+		return VanillaConfiguration.CHUNK_STREAMING.getBoolean();
+	}
+
+	public static int getColumnsPerTick() {
+		return VanillaConfiguration.CHUNK_STREAMING_COLUMNS_PER_TICK.getInt();
+	}
+
+	/**
+	 * Gets the maximum amount of uncompressed column data to send per tick.<br>
+	 * At least one column is always sent, even if it is larger than the budget.
+	 * @return the budget in bytes
+	 */
+	public static int getBytesPerTick() {
+		return VanillaConfiguration.CHUNK_STREAMING_BYTES_PER_TICK.getInt();
+	}
+
+	public static int getColumnsPerBulk() {
+		return VanillaConfiguration.CHUNK_STREAMING_COLUMNS_PER_BULK.getInt();
+	}
+
+	public static long getColumnsStreamed() {
+		return columnsStreamed.get();
+	}
+
+	public static long getBulksSent() {
+		return bulksSent.get();
+	}
+
+	/**
+	 * Gets the time it took to send the columns around the player, for the last login, respawn or teleport
+	 * @return the time in milliseconds
+	 */
+	public static long getLastTimeToFirstPlayable() {
+		return firstPlayableLast.get();
+	}
+
+	/**
+	 * Gets the average time it took to send the columns around the player, after a login, respawn or teleport
+	 * @return the time in milliseconds
+	 */
+	public static long getAverageTimeToFirstPlayable() {
+		long count = firstPlayableCount.get();
+		return count == 0 ? 0 : firstPlayableTotal.get() / count;
+	}
+}
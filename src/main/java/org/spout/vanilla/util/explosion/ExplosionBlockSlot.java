@@ -26,51 +26,22 @@
  */
 package org.spout.vanilla.util.explosion;
 
-import java.util.Random;
-
-import org.spout.api.geo.World;
-import org.spout.api.material.BlockMaterial;
 import org.spout.api.math.Vector3;
 
-import org.spout.vanilla.material.VanillaBlockMaterial;
-import org.spout.vanilla.material.VanillaMaterials;
-
 /**
- * This is a permanent block slot whose information is loaded from a world dynamically
- * It is used to load block information all at once
+ * This is a permanent block slot, at a fixed offset from the middle of an explosion<br>
+ * The information loaded from the world is kept in the {@link ExplosionState} of an explosion, by the index of the slot
  */
 public class ExplosionBlockSlot {
-	public ExplosionBlockSlot(final Vector3 offset) {
+	public ExplosionBlockSlot(final Vector3 offset, final int index) {
 		this.offset = offset;
+		this.index = index;
+		this.offsetX = (int) offset.getX();
+		this.offsetY = (int) offset.getY();
+		this.offsetZ = (int) offset.getZ();
 	}
 
 	public final Vector3 offset;
-	public boolean isSet = false; //whether the information has been loaded
-	public boolean destroy = false; //whether the block got destroyed
-	public BlockMaterial material = VanillaMaterials.AIR; //the mat loaded from the world
-	public float damageFactor;
-	public int realx, realy, realz;
-
-	/**
-	 * Generates the material and initial damage factor for this block
-	 * @param world to use
-	 * @param x coordinate of the middle
-	 * @param y coordinate of the middle
-	 * @param z coordinate of the middle
-	 * @param random to use when generating the damage factor
-	 */
-	public void prepare(World world, int x, int y, int z, Random random) {
-		this.realx = (int) this.offset.getX() + x;
-		this.realy = (int) this.offset.getY() + y;
-		this.realz = (int) this.offset.getZ() + z;
-		this.material = world.getBlockMaterial(this.realx, this.realy, this.realz);
-		if (this.material != VanillaMaterials.AIR && this.material instanceof VanillaBlockMaterial) {
-			this.damageFactor = (((VanillaBlockMaterial) this.material).getResistance() + 0.3f) * 0.3f;
-			this.damageFactor *= (2.0f + random.nextFloat()) / 3.0f;
-		} else {
-			this.damageFactor = 0f;
-		}
-		this.isSet = true;
-		this.destroy = false;
-	}
+	public final int index;
+	public final int offsetX, offsetY, offsetZ;
 }
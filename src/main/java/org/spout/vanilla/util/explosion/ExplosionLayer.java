@@ -71,10 +71,18 @@ public class ExplosionLayer {
 	}
 
 	private final int index;
-	public ExplosionSlot[] slots;
+	private ExplosionSlot[] slots;
 	private final Map<Vector3, ExplosionSlot> tmpSlotMap = new HashMap<Vector3, ExplosionSlot>();
 	private final ExplosionModelSpherical model;
 
+	/**
+	 * Gets the slots of this layer
+	 * @return the slots
+	 */
+	public ExplosionSlot[] getSlots() {
+		return this.slots;
+	}
+
 	/**
 	 * Transfers all slots previously added to the 'slots' array
 	 */
@@ -96,7 +104,7 @@ public class ExplosionLayer {
 		Vector3 pos = new Vector3(x, y, z);
 		ExplosionSlot slot = this.tmpSlotMap.get(pos);
 		if (slot == null) {
-			slot = new ExplosionSlot(this.model.getBlock(pos));
+			slot = this.model.createSlot(pos);
 			this.tmpSlotMap.put(pos, slot);
 		}
 		return slot;
@@ -31,9 +31,16 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongByteHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
 import org.spout.api.entity.Entity;
 import org.spout.api.event.Cause;
+import org.spout.api.geo.World;
 import org.spout.api.geo.cuboid.Block;
+import org.spout.api.geo.cuboid.Chunk;
 import org.spout.api.geo.discrete.Point;
 import org.spout.api.material.BlockMaterial;
 import org.spout.api.material.block.BlockFace;
@@ -49,25 +56,72 @@ import org.spout.vanilla.data.effect.store.GeneralEffects;
 import org.spout.vanilla.material.VanillaBlockMaterial;
 import org.spout.vanilla.material.VanillaMaterials;
 
+/**
+ * A model of the blocks an explosion can reach<br>
+ * The model itself is shared, the state of each explosion is kept per thread, so explosions can execute in parallel.
+ */
 public abstract class ExplosionModel {
+	private static final byte NOT_SOLID = 1;
+	private static final byte SOLID = 2;
 	private final List<ExplosionBlockSlot> blockList = new ArrayList<ExplosionBlockSlot>();
 	private final Map<Vector3, ExplosionBlockSlot> blocks = new HashMap<Vector3, ExplosionBlockSlot>();
-	public final List<Block> blocksToDestroy = new ArrayList<Block>(100);
+	private volatile int blockCount = 0;
+	private volatile int slotCount = 0;
+	private final ThreadLocal<ExplosionState> states = new ThreadLocal<ExplosionState>() {
+		@Override
+		protected ExplosionState initialValue() {
+			return new ExplosionState();
+		}
+	};
 
 	public synchronized ExplosionBlockSlot getBlock(Vector3 position) {
 		ExplosionBlockSlot block = this.blocks.get(position);
 		if (block == null) {
-			block = new ExplosionBlockSlot(position);
+			block = new ExplosionBlockSlot(position, this.blockList.size());
 			this.blocks.put(position, block);
 			this.blockList.add(block);
+			this.blockCount = this.blockList.size();
 		}
 		return block;
 	}
 
 	public synchronized List<ExplosionBlockSlot> getBlocks() {
-		return this.blockList;
+		return new ArrayList<ExplosionBlockSlot>(this.blockList);
+	}
+
+	/**
+	 * Creates a new slot for the block at a position, with the next free slot index
+	 * @param position of the block
+	 * @return the new slot
+	 */
+	public synchronized ExplosionSlot createSlot(Vector3 position) {
+		return new ExplosionSlot(getBlock(position), this.slotCount++);
+	}
+
+	public int getBlockCount() {
+		return this.blockCount;
+	}
+
+	public int getSlotCount() {
+		return this.slotCount;
+	}
+
+	/**
+	 * Gets the state of the explosion executing in the current thread
+	 * @return the state
+	 */
+	protected ExplosionState getState() {
+		return this.states.get();
 	}
 
+	/**
+	 * Finds the blocks destroyed by an explosion
+	 * @param position of the explosion
+	 * @param size of the explosion
+	 * @return x, y and z coordinate triples of the destroyed blocks
+	 */
+	protected abstract TIntArrayList getDestroyedBlocks(Point position, float size);
+
 	/**
 	 * Calculated with the following:
 	 * <p/>
@@ -86,16 +140,23 @@ public abstract class ExplosionModel {
 	 * @param o
 	 * @param p
 	 * @param s
+	 * @param solidCache of the blocks already looked up for this explosion
 	 * @return
 	 */
-	private int getDamage(Point o, Point p, double s) {
+	private int getDamage(Point o, Point p, double s, TLongByteHashMap solidCache) {
 		double di = p.distance(o);
 		int amt = 0, solid = 0;
 		BlockIterator iterator = new BlockIterator(o, p);
 		while (iterator.hasNext()) {
 			amt++;
-			BlockMaterial next = iterator.next().getMaterial();
-			if (next.isSolid()) {
+			Block next = iterator.next();
+			long key = getKey(next.getX(), next.getY(), next.getZ());
+			byte state = solidCache.get(key);
+			if (state == 0) {
+				state = next.getMaterial().isSolid() ? SOLID : NOT_SOLID;
+				solidCache.put(key, state);
+			}
+			if (state == SOLID) {
 				solid++;
 			}
 		}
@@ -109,30 +170,40 @@ public abstract class ExplosionModel {
 		return (int) ((i * i + i) / 2 * 8 * s + 1);
 	}
 
-	public synchronized void execute(Point position, float size, boolean fire, boolean damage, boolean ignoreWater, Cause<?> cause) {
-		//reset all blocks for the next explosion
-		for (ExplosionBlockSlot block : this.blockList) {
-			block.isSet = false;
-		}
-
-		//TODO: Block Event?
+	private static long getKey(int x, int y, int z) {
+		return ((long) (x & 0x1FFFFF) << 42) | ((long) (y & 0x1FFFFF) << 21) | (long) (z & 0x1FFFFF);
+	}
 
-		// See if it's touching water
-		boolean breakBlocks = true;
-		if (!ignoreWater) {
-			Block block = position.getBlock();
-			for (BlockFace face : BlockFaces.NESWBT) {
-				if (block.translate(face).isMaterial(VanillaMaterials.WATER)) {
-					breakBlocks = false;
-					break;
-				}
+	/**
+	 * Destroys blocks, one chunk at a time
+	 * @param world of the blocks
+	 * @param destroyed x, y and z coordinate triples of the blocks
+	 * @param fire whether to set fire to the destroyed area
+	 * @param cause of the explosion
+	 */
+	private void destroyBlocks(World world, TIntArrayList destroyed, boolean fire, Cause<?> cause) {
+		TLongObjectHashMap<TIntArrayList> chunks = new TLongObjectHashMap<TIntArrayList>();
+		for (int i = 0; i < destroyed.size(); i += 3) {
+			int x = destroyed.get(i);
+			int y = destroyed.get(i + 1);
+			int z = destroyed.get(i + 2);
+			long key = getKey(x >> Chunk.BLOCKS.BITS, y >> Chunk.BLOCKS.BITS, z >> Chunk.BLOCKS.BITS);
+			TIntArrayList chunkBlocks = chunks.get(key);
+			if (chunkBlocks == null) {
+				chunkBlocks = new TIntArrayList();
+				chunks.put(key, chunkBlocks);
 			}
+			chunkBlocks.add(x);
+			chunkBlocks.add(y);
+			chunkBlocks.add(z);
 		}
-
-		// perform block changes
-		if (breakBlocks) {
-			BlockMaterial material;
-			for (Block block : this.blocksToDestroy) {
+		BlockMaterial material;
+		TLongObjectIterator<TIntArrayList> iter = chunks.iterator();
+		while (iter.hasNext()) {
+			iter.advance();
+			TIntArrayList chunkBlocks = iter.value();
+			for (int i = 0; i < chunkBlocks.size(); i += 3) {
+				Block block = world.getBlock(chunkBlocks.get(i), chunkBlocks.get(i + 1), chunkBlocks.get(i + 2));
 				material = block.getMaterial();
 
 				if (material == VanillaMaterials.AIR) {
@@ -153,10 +224,34 @@ public abstract class ExplosionModel {
 				}
 			}
 		}
+	}
+
+	public void execute(Point position, float size, boolean fire, boolean damage, boolean ignoreWater, Cause<?> cause) {
+		TIntArrayList destroyed = getDestroyedBlocks(position, size);
+
+		//TODO: Block Event?
+
+		// See if it's touching water
+		boolean breakBlocks = true;
+		if (!ignoreWater) {
+			Block block = position.getBlock();
+			for (BlockFace face : BlockFaces.NESWBT) {
+				if (block.translate(face).isMaterial(VanillaMaterials.WATER)) {
+					breakBlocks = false;
+					break;
+				}
+			}
+		}
+
+		// perform block changes
+		if (breakBlocks) {
+			destroyBlocks(position.getWorld(), destroyed, fire, cause);
+		}
 
 		// Damage entities within radius
 		if (damage) {
 			size *= 2;
+			TLongByteHashMap solidCache = new TLongByteHashMap();
 			for (Entity entity : position.getWorld().getNearbyEntities(position, (int) size)) {
 				if (entity.get(Item.class) != null) {
 					entity.remove();
@@ -172,7 +267,7 @@ public abstract class ExplosionModel {
 				if (human != null && human.isCreative()) {
 					continue;
 				}
-				health.damage(getDamage(position, entity.getScene().getPosition(), size));
+				health.damage(getDamage(position, entity.getScene().getPosition(), size, solidCache));
 			}
 		}
 
@@ -180,15 +275,15 @@ public abstract class ExplosionModel {
 		GeneralEffects.EXPLOSION.playGlobal(position, size);
 	}
 
-	public synchronized void execute(Point pos, float size, boolean fire, boolean damage, Cause<?> cause) {
+	public void execute(Point pos, float size, boolean fire, boolean damage, Cause<?> cause) {
 		execute(pos, size, fire, damage, false, cause);
 	}
 
-	public synchronized void execute(Point pos, float size, boolean fire, Cause<?> cause) {
+	public void execute(Point pos, float size, boolean fire, Cause<?> cause) {
 		execute(pos, size, fire, true, cause);
 	}
 
-	public synchronized void execute(Point pos, float size, Cause<?> cause) {
+	public void execute(Point pos, float size, Cause<?> cause) {
 		execute(pos, size, false, cause);
 	}
 }
@@ -26,80 +26,123 @@
  */
 package org.spout.vanilla.util.explosion;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Random;
+
+import gnu.trove.list.array.TIntArrayList;
 
-import org.spout.api.event.Cause;
 import org.spout.api.geo.World;
-import org.spout.api.geo.cuboid.Block;
 import org.spout.api.geo.discrete.Point;
+import org.spout.api.material.BlockMaterial;
 import org.spout.api.math.GenericMath;
 
+import org.spout.vanilla.material.VanillaBlockMaterial;
 import org.spout.vanilla.material.VanillaMaterials;
 
 public class ExplosionModelSpherical extends ExplosionModel {
 	public ExplosionModelSpherical() {
-		this.layers.add(new ExplosionLayer(this));
-		this.root = this.layers.get(0).slots[0];
+		ExplosionLayer first = new ExplosionLayer(this);
+		this.layers = new ExplosionLayer[]{first};
+		this.root = first.getSlots()[0];
 	}
 
-	private final List<ExplosionLayer> layers = new ArrayList<ExplosionLayer>();
+	private volatile ExplosionLayer[] layers;
 	private final ExplosionSlot root;
 
-	public synchronized ExplosionLayer getLastLayer() {
-		return this.layers.get(this.layers.size() - 1);
+	public ExplosionLayer getLastLayer() {
+		ExplosionLayer[] layers = this.layers;
+		return layers[layers.length - 1];
 	}
 
-	public synchronized ExplosionLayer getLayer(int index) {
-		return this.layers.get(index);
+	public ExplosionLayer getLayer(int index) {
+		return this.layers[index];
 	}
 
-	public synchronized void execute(Point position, float size) {
-		this.execute(position, size, VanillaMaterials.TNT.toCause(position));
+	/**
+	 * Creates the layer following the layer at the index, unless another explosion already did
+	 * @param index of the last layer known to the caller
+	 * @return all layers
+	 */
+	private synchronized ExplosionLayer[] createNextLayer(int index) {
+		ExplosionLayer[] current = this.layers;
+		if (index + 1 < current.length) {
+			return current;
+		}
+		ExplosionLayer layer = current[index];
+		ExplosionLayer nextLayer = new ExplosionLayer(layer);
+		//finalize the 'next' of the current layer to lead to the new layer
+		for (ExplosionSlot slot : layer.getSlots()) {
+			slot.finish();
+		}
+		ExplosionLayer[] grown = Arrays.copyOf(current, current.length + 1);
+		grown[current.length] = nextLayer;
+		this.layers = grown;
+		return grown;
 	}
 
-	public synchronized void execute(Point position, float size, Cause<?> cause) {
-		this.execute(position, size, false, cause);
+	public void execute(Point position, float size) {
+		this.execute(position, size, VanillaMaterials.TNT.toCause(position));
 	}
 
-	public synchronized void execute(Point position, boolean fire, float size) {
+	public void execute(Point position, boolean fire, float size) {
 		this.execute(position, size, fire, VanillaMaterials.TNT.toCause(position));
 	}
 
-	public synchronized void execute(Point position, float size, boolean fire, Cause<?> cause) {
-		int xoff = position.getBlockX();
-		int yoff = position.getBlockY();
-		int zoff = position.getBlockZ();
-		World world = position.getWorld();
+	/**
+	 * Generates the initial damage factor for a block
+	 * @param material of the block
+	 * @param random to use when generating the damage factor
+	 * @return the damage factor
+	 */
+	private static float getDamageFactor(BlockMaterial material, Random random) {
+		if (material != VanillaMaterials.AIR && material instanceof VanillaBlockMaterial) {
+			float damageFactor = (((VanillaBlockMaterial) material).getResistance() + 0.3f) * 0.3f;
+			return damageFactor * (2.0f + random.nextFloat()) / 3.0f;
+		} else {
+			return 0f;
+		}
+	}
 
-		this.blocksToDestroy.clear();
-		this.root.sourcedamage = size * (0.7F + (float) Math.random() * 0.6F);
+	@Override
+	protected TIntArrayList getDestroyedBlocks(Point position, float size) {
+		final int xoff = position.getBlockX();
+		final int yoff = position.getBlockY();
+		final int zoff = position.getBlockZ();
+		final World world = position.getWorld();
+		final Random random = GenericMath.getRandom();
+		final TIntArrayList destroyed = new TIntArrayList(300);
+
+		//read the layers before the counts, so the state covers all their slots
+		ExplosionLayer[] layers = this.layers;
+		final ExplosionState state = getState();
+		state.begin(getSlotCount(), getBlockCount());
+		state.setSourceDamage(this.root.index, size * (0.7F + (float) Math.random() * 0.6F));
 
 		//recursively operate on all blocks
 		float damageFactor;
 		boolean hasDamage = true;
-		ExplosionLayer layer;
-		for (int i = 0; i < this.layers.size() && hasDamage; i++) {
+		for (int i = 0; i < layers.length && hasDamage; i++) {
 			hasDamage = false;
-			layer = this.layers.get(i);
-			for (ExplosionSlot slot : layer.slots) {
+			for (ExplosionSlot slot : layers[i].getSlots()) {
+				final ExplosionBlockSlot block = slot.block;
 				//prepare the block information
-				if (!slot.block.isSet) {
-					slot.block.prepare(world, xoff, yoff, zoff, GenericMath.getRandom());
+				if (!state.isLoaded(block.index)) {
+					BlockMaterial material = world.getBlockMaterial(xoff + block.offsetX, yoff + block.offsetY, zoff + block.offsetZ);
+					state.load(block.index, getDamageFactor(material, random));
 				}
 
 				//subtract damage factor
-				damageFactor = slot.sourcedamage - slot.block.damageFactor;
-				slot.sourcedamage = 0f;
+				damageFactor = state.getSourceDamage(slot.index) - state.getDamageFactor(block.index);
+				state.setSourceDamage(slot.index, 0f);
 				if (damageFactor <= 0f) {
 					continue;
 				}
 
 				//this block has been destroyed
-				if (!slot.block.destroy) {
-					slot.block.destroy = true;
-					Block block = world.getBlock(slot.block.realx, slot.block.realy, slot.block.realz);
-					blocksToDestroy.add(block);
+				if (state.setDestroyed(block.index)) {
+					destroyed.add(xoff + block.offsetX);
+					destroyed.add(yoff + block.offsetY);
+					destroyed.add(zoff + block.offsetZ);
 				}
 
 				//one block layer further...
@@ -107,29 +150,28 @@ public class ExplosionModelSpherical extends ExplosionModel {
 					continue;
 				}
 
-				//create a new layer if needed
-				if (slot.next == null) {
-					//create a new layer
-					ExplosionLayer nextLayer = new ExplosionLayer(layer);
-					//finalize the 'next' of the current layer to lead to the new layer
-					for (ExplosionSlot slot2 : layer.slots) {
-						slot2.finish();
+				//the next layer is new to this explosion, either create it or pick up the one
+				//another explosion created, and make room for its slots in the state
+				ExplosionSlot[] next = slot.getNext();
+				if (next == null || i + 1 >= layers.length) {
+					layers = this.layers;
+					if (i + 1 >= layers.length) {
+						layers = createNextLayer(i);
 					}
-					this.layers.add(nextLayer);
+					state.ensure(getSlotCount(), getBlockCount());
+					next = slot.getNext();
 				}
 
 				//set source damage of next slots
-				for (ExplosionSlot slot2 : slot.next) {
-					if (damageFactor > slot2.sourcedamage) {
-						slot2.sourcedamage = damageFactor;
+				for (ExplosionSlot slot2 : next) {
+					if (damageFactor > state.getSourceDamage(slot2.index)) {
+						state.setSourceDamage(slot2.index, damageFactor);
 					}
 				}
 
 				hasDamage = true;
 			}
 		}
-
-		//perform the final block changes, entity damage and explosion messages
-		super.execute(position, size, fire, cause);
+		return destroyed;
 	}
 }
@@ -30,17 +30,19 @@ import java.util.HashSet;
 import java.util.Set;
 
 /**
- * Contains live information of a single element in the chain of the explosion layers
+ * Contains a single element in the chain of the explosion layers<br>
+ * The damage reaching the element is kept in the {@link ExplosionState} of an explosion, by the index of the slot
  */
 public class ExplosionSlot {
-	public ExplosionSlot(final ExplosionBlockSlot block) {
+	public ExplosionSlot(final ExplosionBlockSlot block, final int index) {
 		this.block = block;
+		this.index = index;
 	}
 
 	public final ExplosionBlockSlot block;
+	public final int index;
 	private Set<ExplosionSlot> nextSet = new HashSet<ExplosionSlot>();
-	public ExplosionSlot[] next;
-	public float sourcedamage = 0;
+	private volatile ExplosionSlot[] next;
 
 	/**
 	 * Adds the next linked block slot to the chain
@@ -50,6 +52,14 @@ public class ExplosionSlot {
 		this.nextSet.add(next);
 	}
 
+	/**
+	 * Gets the slots of the next layer this slot leads to
+	 * @return the next slots, or null if the next layer was not created yet
+	 */
+	public ExplosionSlot[] getNext() {
+		return this.next;
+	}
+
 	/**
 	 * Transfers all next slots previously added to the next array
 	 * After this is called you can no longer add new 'next' slots
@@ -0,0 +1,113 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.util.explosion;
+
+import java.util.Arrays;
+
+/**
+ * Contains the live information of a single explosion, indexed by the slots of an {@link ExplosionModel}<br>
+ * A state is reused by the thread executing explosions. Instead of clearing all values for a new explosion,
+ * values are only valid when their stamp matches the generation of the current explosion.
+ */
+public class ExplosionState {
+	private int generation = 0;
+	private int[] loaded = new int[0];
+	private int[] destroyed = new int[0];
+	private float[] damageFactor = new float[0];
+	private int[] damageSet = new int[0];
+	private float[] sourceDamage = new float[0];
+
+	/**
+	 * Starts a new explosion, invalidating all values of the previous one
+	 * @param slotCount the number of slots in the model
+	 * @param blockCount the number of block slots in the model
+	 */
+	public void begin(int slotCount, int blockCount) {
+		if (++generation == 0) {
+			// Stamps wrapped around, clear them all once
+			Arrays.fill(loaded, 0);
+			Arrays.fill(destroyed, 0);
+			Arrays.fill(damageSet, 0);
+			generation = 1;
+		}
+		ensure(slotCount, blockCount);
+	}
+
+	/**
+	 * Makes sure the state can hold all the slots of the model, after the model was extended
+	 * @param slotCount the number of slots in the model
+	 * @param blockCount the number of block slots in the model
+	 */
+	public void ensure(int slotCount, int blockCount) {
+		if (damageSet.length < slotCount) {
+			int size = slotCount + (slotCount >> 2);
+			damageSet = Arrays.copyOf(damageSet, size);
+			sourceDamage = Arrays.copyOf(sourceDamage, size);
+		}
+		if (loaded.length < blockCount) {
+			int size = blockCount + (blockCount >> 2);
+			loaded = Arrays.copyOf(loaded, size);
+			destroyed = Arrays.copyOf(destroyed, size);
+			damageFactor = Arrays.copyOf(damageFactor, size);
+		}
+	}
+
+	public boolean isLoaded(int block) {
+		return loaded[block] == generation;
+	}
+
+	public void load(int block, float factor) {
+		loaded[block] = generation;
+		damageFactor[block] = factor;
+	}
+
+	public float getDamageFactor(int block) {
+		return damageFactor[block];
+	}
+
+	/**
+	 * Marks a block as destroyed
+	 * @param block index
+	 * @return True if the block was not yet destroyed, False if it was
+	 */
+	public boolean setDestroyed(int block) {
+		if (destroyed[block] == generation) {
+			return false;
+		}
+		destroyed[block] = generation;
+		return true;
+	}
+
+	public float getSourceDamage(int slot) {
+		return damageSet[slot] == generation ? sourceDamage[slot] : 0f;
+	}
+
+	public void setSourceDamage(int slot, float damage) {
+		damageSet[slot] = generation;
+		sourceDamage[slot] = damage;
+	}
+}
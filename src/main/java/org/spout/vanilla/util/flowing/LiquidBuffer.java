@@ -0,0 +1,185 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.util.flowing;
+
+import java.util.BitSet;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Block;
+import org.spout.api.geo.discrete.Point;
+import org.spout.api.material.BlockMaterial;
+import org.spout.api.util.cuboid.CuboidBlockMaterialBuffer;
+
+import org.spout.vanilla.material.block.Liquid;
+
+/**
+ * A local copy of the materials and data of a cuboid of blocks, which liquids are simulated on.<br>
+ * Reads and writes go to the copy, so later cells see the changes of earlier ones.
+ * {@link #commit()} writes every changed block back to the world once, with physics.
+ * Blocks outside of the cuboid are read and written directly.
+ */
+public class LiquidBuffer {
+	private final World world;
+	private final int baseX, baseY, baseZ;
+	private final int sizeX, sizeY, sizeZ;
+	private final BlockMaterial[] materials;
+	private final short[] data;
+	private final BitSet dirty;
+	/**
+	 * The liquids which spread into a block, by index, the previous block is destroyed on commit
+	 */
+	private final TIntObjectHashMap<Liquid> destroyed = new TIntObjectHashMap<Liquid>();
+
+	public LiquidBuffer(World world, int x, int y, int z, int sizeX, int sizeY, int sizeZ) {
+		this.world = world;
+		this.baseX = x;
+		this.baseY = y;
+		this.baseZ = z;
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.sizeZ = sizeZ;
+		final int volume = sizeX * sizeY * sizeZ;
+		this.materials = new BlockMaterial[volume];
+		this.data = new short[volume];
+		this.dirty = new BitSet(volume);
+		final CuboidBlockMaterialBuffer blocks = world.getCuboid(x, y, z, sizeX, sizeY, sizeZ);
+		int index = 0;
+		for (int dx = 0; dx < sizeX; dx++) {
+			for (int dy = 0; dy < sizeY; dy++) {
+				for (int dz = 0; dz < sizeZ; dz++) {
+					materials[index] = blocks.get(x + dx, y + dy, z + dz);
+					data[index] = blocks.getData(x + dx, y + dy, z + dz);
+					index++;
+				}
+			}
+		}
+	}
+
+	public World getWorld() {
+		return world;
+	}
+
+	public Point getPosition(int x, int y, int z) {
+		return new Point(world, x, y, z);
+	}
+
+	/**
+	 * Gets the index of a block in the arrays
+	 * @return the index, or -1 if the block is outside of the cuboid
+	 */
+	private int getIndex(int x, int y, int z) {
+		x -= baseX;
+		y -= baseY;
+		z -= baseZ;
+		if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) {
+			return -1;
+		}
+		return (x * sizeY + y) * sizeZ + z;
+	}
+
+	public BlockMaterial getMaterial(int x, int y, int z) {
+		int index = getIndex(x, y, z);
+		return index == -1 ? world.getBlockMaterial(x, y, z) : materials[index];
+	}
+
+	public short getData(int x, int y, int z) {
+		int index = getIndex(x, y, z);
+		return index == -1 ? (short) world.getBlockData(x, y, z) : data[index];
+	}
+
+	public void setMaterial(int x, int y, int z, BlockMaterial material) {
+		set(x, y, z, material, material.getData());
+	}
+
+	public void set(int x, int y, int z, BlockMaterial material, short data) {
+		int index = getIndex(x, y, z);
+		if (index == -1) {
+			world.setBlockMaterial(x, y, z, material, data, null);
+		} else if (materials[index] != material || this.data[index] != data) {
+			materials[index] = material;
+			this.data[index] = data;
+			dirty.set(index);
+		}
+	}
+
+	public int getDataField(int x, int y, int z, int bits) {
+		return (getData(x, y, z) & bits) >> Integer.numberOfTrailingZeros(bits);
+	}
+
+	public void setDataField(int x, int y, int z, int bits, int value) {
+		short old = getData(x, y, z);
+		short data = (short) ((old & ~bits) | ((value << Integer.numberOfTrailingZeros(bits)) & bits));
+		set(x, y, z, getMaterial(x, y, z), data);
+	}
+
+	public boolean isDataBitSet(int x, int y, int z, int bits) {
+		return (getData(x, y, z) & bits) != 0;
+	}
+
+	public void setDataBits(int x, int y, int z, int bits, boolean set) {
+		short old = getData(x, y, z);
+		set(x, y, z, getMaterial(x, y, z), (short) (set ? old | bits : old & ~bits));
+	}
+
+	/**
+	 * Replaces a block by air because a liquid spreads into it, the block is destroyed in the world on commit
+	 * @param liquid which spreads into the block
+	 */
+	public void destroy(int x, int y, int z, Liquid liquid) {
+		int index = getIndex(x, y, z);
+		if (index == -1) {
+			Block block = world.getBlock(x, y, z);
+			block.getMaterial().destroy(block, liquid.toCause(block));
+		} else if (materials[index] != BlockMaterial.AIR) {
+			if (!destroyed.containsKey(index)) {
+				destroyed.put(index, liquid);
+			}
+			set(x, y, z, BlockMaterial.AIR, (short) 0);
+		}
+	}
+
+	/**
+	 * Writes the changed blocks back to the world
+	 */
+	public void commit() {
+		for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+			final int x = baseX + i / (sizeY * sizeZ);
+			final int y = baseY + (i / sizeZ) % sizeY;
+			final int z = baseZ + i % sizeZ;
+			Liquid liquid = destroyed.get(i);
+			if (liquid != null) {
+				Block block = world.getBlock(x, y, z);
+				block.getMaterial().destroy(block, liquid.toCause(block));
+			}
+			world.setBlockMaterial(x, y, z, materials[i], data[i], null);
+		}
+		dirty.clear();
+		destroyed.clear();
+	}
+}
@@ -29,9 +29,9 @@ package org.spout.vanilla.util.flowing;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
 
-import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntIntHashMap;
 
 import org.spout.api.geo.World;
 import org.spout.api.geo.cuboid.Block;
@@ -48,200 +48,289 @@ import org.spout.vanilla.material.block.Liquid;
 
 /**
  * A model used to find the faces to which a liquid can flow<br>
- * Is basically a flat disk where 64 elements can have a state.
+ * Is basically a flat disk where 64 elements can have a state.<br>
+ * The layout of the disk is shared, the states are kept in per-thread arrays, so no locking is needed.
  */
 public class LiquidModel {
-	public static enum State {
-		BLOCKED, OPEN, HOLE
-	}
-
-	public static class Element {
-		public Element(int dX, int dZ) {
-			this.dX = dX;
-			this.dZ = dZ;
-			this.absdX = Math.abs(this.dX);
-			this.absdZ = Math.abs(this.dZ);
-			this.center = (this.dX == 0 && this.absdZ == 1) || (this.dZ == 0 && this.absdX == 1);
-		}
-
-		public final int dX, dZ;
-		public final int absdX, absdZ;
-		private State state;
-		private int holeDistance;
-		public final boolean center;
-		private final List<Element> neighbours = new ArrayList<Element>();
-		public final List<AtomicBoolean> mainDirection = new ArrayList<AtomicBoolean>();
-
-		public void load(World world, int x, int y, int z) {
-			for (AtomicBoolean bool : this.mainDirection) {
-				if (bool.get()) {
-					x += this.dX;
-					z += this.dZ;
-					int fullState = world.getBlockFullState(x, y, z);
-					BlockMaterial mat = BlockFullState.getMaterial(fullState);
-					if (Liquid.isLiquidObstacle(mat) || (VanillaMaterials.WATER.isMaterial(mat) && VanillaMaterials.WATER.isSource(BlockFullState.getData(fullState)))) {
-						this.state = State.BLOCKED;
-						this.holeDistance = Integer.MAX_VALUE;
-					} else if (!Liquid.isLiquidObstacle(world.getBlockMaterial(x, y - 1, z))) {
-						this.state = State.HOLE;
-						this.holeDistance = 0;
-					} else {
-						this.state = State.OPEN;
-						this.holeDistance = Integer.MAX_VALUE;
-					}
-					return;
-				}
-			}
-			this.state = State.BLOCKED;
-			this.holeDistance = Integer.MAX_VALUE;
-		}
-
-		public void link(Element with) {
-			if (with != null) {
-				this.neighbours.add(with);
-			}
-		}
-
-		public void spreadHole() {
-			if (this.holeDistance != -1) {
-				for (Element element : this.neighbours) {
-					if (element.state == State.OPEN && element.holeDistance > this.holeDistance) {
-						element.holeDistance = this.holeDistance + 1;
-					}
-				}
-			}
-		}
-	}
-
-	private final List<Element> elementList = new ArrayList<Element>();
-	private final Element[] center = new Element[4];
-	private final TIntObjectHashMap<Element> elementMap = new TIntObjectHashMap<Element>();
-	private final AtomicBoolean[] mainDirections = new AtomicBoolean[4];
-	private final boolean[] possible = new boolean[4];
-
-	private Element getElement(BlockFace face) {
-		return getElement((int) face.getOffset().getX(), (int) face.getOffset().getZ());
-	}
-
-	private Element getElement(int dX, int dZ) {
-		return elementMap.get(ShortPairHashed.key((short) dX, (short) dZ));
-	}
-
-	private void link(Element element, int dx, int dz) {
-		element.link(getElement(element.dX + dx, element.dZ + dz));
-		for (int i = 0; i < 4; i++) {
-			IntVector3 offset = new IntVector3(BlockFaces.NESW.get(i).getOpposite().getOffset());
-			if (dx == offset.getX() && dz == offset.getZ()) {
-				element.mainDirection.add(this.mainDirections[i]);
-			}
+	private static final byte BLOCKED = 0;
+	private static final byte OPEN = 1;
+	private static final byte HOLE = 2;
+	/**
+	 * The mask returned when all four directions are possible
+	 */
+	public static final int ALL_DIRECTIONS = 0xF;
+	/**
+	 * How far sideways from the liquid the model looks for holes
+	 */
+	public static final int RADIUS = 5;
+	private final int size;
+	private final int[] elementX;
+	private final int[] elementZ;
+	private final boolean[] isCenter;
+	/**
+	 * For each element, a mask of the center directions it can be reached through
+	 */
+	private final int[] mainDirections;
+	private final int[][] neighbours;
+	private final int[] center = new int[4];
+	private final BlockFace[][] faces = new BlockFace[ALL_DIRECTIONS + 1][];
+	private final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>() {
+		@Override
+		protected Buffers initialValue() {
+			return new Buffers(size);
 		}
-	}
+	};
 
 	private LiquidModel() {
-		for (int i = 0; i < this.mainDirections.length; i++) {
-			this.mainDirections[i] = new AtomicBoolean(true);
-		}
-		for (IntVector3 delta : new DiamondEffectRange(1, 5)) {
+		TIntArrayList xs = new TIntArrayList();
+		TIntArrayList zs = new TIntArrayList();
+		TIntIntHashMap indices = new TIntIntHashMap();
+		for (IntVector3 delta : new DiamondEffectRange(1, RADIUS)) {
 			if (delta.getY() == 0) {
-				Element element = new Element(delta.getX(), delta.getZ());
-				elementList.add(element);
-				elementMap.put(ShortPairHashed.key((short) element.dX, (short) element.dZ), element);
+				indices.put(ShortPairHashed.key((short) delta.getX(), (short) delta.getZ()), xs.size());
+				xs.add(delta.getX());
+				zs.add(delta.getZ());
 			}
 		}
+		this.size = xs.size();
+		this.elementX = xs.toArray();
+		this.elementZ = zs.toArray();
+		this.isCenter = new boolean[size];
+		this.mainDirections = new int[size];
+		this.neighbours = new int[size][];
+
+		for (int i = 0; i < size; i++) {
+			int absdX = Math.abs(elementX[i]);
+			int absdZ = Math.abs(elementZ[i]);
+			isCenter[i] = (elementX[i] == 0 && absdZ == 1) || (elementZ[i] == 0 && absdX == 1);
+		}
 		for (int i = 0; i < 4; i++) {
-			center[i] = getElement(BlockFaces.NESW.get(i));
-			center[i].mainDirection.add(new AtomicBoolean(true));
+			BlockFace face = BlockFaces.NESW.get(i);
+			center[i] = getElement(indices, (int) face.getOffset().getX(), (int) face.getOffset().getZ());
 		}
 		// make basic x/z connections
-		for (Element element : this.elementList) {
-			if (element.center) {
+		List<TIntArrayList> links = new ArrayList<TIntArrayList>(size);
+		for (int i = 0; i < size; i++) {
+			TIntArrayList link = new TIntArrayList();
+			links.add(link);
+			if (isCenter[i]) {
 				continue;
 			}
-			if (element.dX == 0) {
-				if (element.absdZ <= 3) {
+			int dX = elementX[i];
+			int dZ = elementZ[i];
+			int absdX = Math.abs(dX);
+			int absdZ = Math.abs(dZ);
+			if (dX == 0) {
+				if (absdZ <= 3) {
 					// 4x middle connections
-					link(element, -1, 0);
-					link(element, 1, 0);
+					link(indices, i, link, -1, 0);
+					link(indices, i, link, 1, 0);
 				}
 			} else {
 				// Simple connections
-				link(element, -Integer.signum(element.dX), 0);
+				link(indices, i, link, -Integer.signum(dX), 0);
 			}
-			if (element.dZ == 0) {
-				if (element.absdX <= 3) {
+			if (dZ == 0) {
+				if (absdX <= 3) {
 					// 4x middle connections
-					link(element, 0, -1);
-					link(element, 0, 1);
+					link(indices, i, link, 0, -1);
+					link(indices, i, link, 0, 1);
 				}
 			} else {
 				// Simple connections
-				link(element, 0, -Integer.signum(element.dZ));
+				link(indices, i, link, 0, -Integer.signum(dZ));
 			}
 			// Advanced
-			if (element.absdX == 2 && element.absdZ == 1) {
-				link(element, 0, element.dZ);
+			if (absdX == 2 && absdZ == 1) {
+				link(indices, i, link, 0, dZ);
 			}
-			if (element.absdZ == 2 && element.absdX == 1) {
-				link(element, element.dX, 0);
+			if (absdZ == 2 && absdX == 1) {
+				link(indices, i, link, dX, 0);
 			}
 		}
+		for (int i = 0; i < size; i++) {
+			neighbours[i] = links.get(i).toArray();
+		}
+
+		List<BlockFace> directions = new ArrayList<BlockFace>(4);
+		for (int mask = 0; mask <= ALL_DIRECTIONS; mask++) {
+			directions.clear();
+			for (int i = 0; i < 4; i++) {
+				if ((mask & (1 << i)) != 0) {
+					directions.add(BlockFaces.NESW.get(i));
+				}
+			}
+			faces[mask] = directions.toArray(new BlockFace[directions.size()]);
+		}
 	}
 
-	public static final LiquidModel INSTANCE = new LiquidModel();
+	private static int getElement(TIntIntHashMap indices, int dX, int dZ) {
+		int key = ShortPairHashed.key((short) dX, (short) dZ);
+		return indices.containsKey(key) ? indices.get(key) : -1;
+	}
 
-	private BlockFace[] getFaces() {
-		List<BlockFace> faces = new ArrayList<BlockFace>(4);
+	private void link(TIntIntHashMap indices, int element, TIntArrayList link, int dx, int dz) {
+		int with = getElement(indices, elementX[element] + dx, elementZ[element] + dz);
+		if (with != -1) {
+			link.add(with);
+		}
 		for (int i = 0; i < 4; i++) {
-			if (this.possible[i]) {
-				faces.add(BlockFaces.NESW.get(i));
+			IntVector3 offset = new IntVector3(BlockFaces.NESW.get(i).getOpposite().getOffset());
+			if (dx == offset.getX() && dz == offset.getZ()) {
+				mainDirections[element] |= 1 << i;
 			}
 		}
-		return faces.toArray(new BlockFace[0]);
 	}
 
-	public synchronized BlockFace[] getHoleDirections(Block block) {
+	public static final LiquidModel INSTANCE = new LiquidModel();
+
+	/**
+	 * Gets the faces, in {@link BlockFaces#NESW} order, which are set in a direction mask
+	 * @param mask of directions, bit i is set for face i of {@link BlockFaces#NESW}
+	 * @return a new array of faces
+	 */
+	public BlockFace[] getFaces(int mask) {
+		return faces[mask].clone();
+	}
+
+	public BlockFace[] getHoleDirections(Block block) {
 		return this.getHoleDirections(block.getWorld(), block.getX(), block.getY(), block.getZ());
 	}
 
-	public synchronized BlockFace[] getHoleDirections(World world, int x, int y, int z) {
+	public BlockFace[] getHoleDirections(World world, int x, int y, int z) {
+		return getFaces(getHoleMask(world, x, y, z));
+	}
+
+	/**
+	 * Gets the directions to which a liquid should flow to reach the nearest hole
+	 * @param block of the liquid
+	 * @return mask of directions, bit i is set for face i of {@link BlockFaces#NESW}
+	 */
+	public int getHoleMask(Block block) {
+		return this.getHoleMask(block.getWorld(), block.getX(), block.getY(), block.getZ());
+	}
+
+	/**
+	 * Gets the directions to which a liquid should flow to reach the nearest hole
+	 * @param world of the liquid
+	 * @param x coordinate of the liquid
+	 * @param y coordinate of the liquid
+	 * @param z coordinate of the liquid
+	 * @return mask of directions, bit i is set for face i of {@link BlockFaces#NESW}
+	 */
+	public int getHoleMask(World world, int x, int y, int z) {
+		return this.getHoleMask(world, null, x, y, z);
+	}
+
+	/**
+	 * Gets the directions to which a liquid should flow to reach the nearest hole, reading the blocks from a buffer
+	 * @param buffer of the blocks around the liquid
+	 * @param x coordinate of the liquid
+	 * @param y coordinate of the liquid
+	 * @param z coordinate of the liquid
+	 * @return mask of directions, bit i is set for face i of {@link BlockFaces#NESW}
+	 */
+	public int getHoleMask(LiquidBuffer buffer, int x, int y, int z) {
+		return this.getHoleMask(buffer.getWorld(), buffer, x, y, z);
+	}
+
+	private int getHoleMask(World world, LiquidBuffer buffer, int x, int y, int z) {
+		final Buffers buffers = this.buffers.get();
+		final byte[] state = buffers.state;
+		final int[] holeDistance = buffers.holeDistance;
 		// Load center
-		boolean instant = false; // for faster generation
+		int open = 0;
+		int holes = 0;
 		for (int i = 0; i < 4; i++) {
-			this.center[i].load(world, x, y, z);
-			instant |= (this.possible[i] = this.center[i].state == State.HOLE);
-			this.mainDirections[i].set(this.center[i].state == State.OPEN);
-		}
-		if (!instant) {
-			// Load other elements
-			for (Element element : elementList) {
-				if (element.center) {
-					continue;
-				}
-				element.load(world, x, y, z);
+			load(world, buffer, x, y, z, center[i], state, holeDistance);
+			if (state[center[i]] == HOLE) {
+				holes |= 1 << i;
+			} else if (state[center[i]] == OPEN) {
+				open |= 1 << i;
 			}
-			// Spread to neighbors
-			for (int c = 0; c < 4; c++) {
-				for (int i = elementList.size() - 1; i >= 0; i--) {
-					elementList.get(i).spreadHole();
-				}
-			}
-			// Get minimum distance
-			int distance = Integer.MAX_VALUE;
-			for (Element elem : this.center) {
-				if (elem.holeDistance < distance) {
-					distance = elem.holeDistance;
-				}
+		}
+		if (holes != 0) {
+			// for faster generation
+			return holes;
+		}
+		// Load other elements
+		for (int i = 0; i < size; i++) {
+			if (isCenter[i]) {
+				continue;
 			}
-			if (distance == Integer.MAX_VALUE) {
-				// No hole, flow in all directions
-				Arrays.fill(this.possible, true);
+			if ((mainDirections[i] & open) != 0) {
+				load(world, buffer, x, y, z, i, state, holeDistance);
 			} else {
-				// Flow to all hole directions
-				for (int i = 0; i < 4; i++) {
-					this.possible[i] = this.center[i].holeDistance <= distance;
+				state[i] = BLOCKED;
+				holeDistance[i] = Integer.MAX_VALUE;
+			}
+		}
+		// Spread to neighbors
+		for (int c = 0; c < 4; c++) {
+			for (int i = size - 1; i >= 0; i--) {
+				int distance = holeDistance[i];
+				for (int neighbour : neighbours[i]) {
+					if (state[neighbour] == OPEN && holeDistance[neighbour] > distance) {
+						holeDistance[neighbour] = distance + 1;
+					}
 				}
 			}
 		}
-		return getFaces();
+		// Get minimum distance
+		int distance = Integer.MAX_VALUE;
+		for (int i = 0; i < 4; i++) {
+			distance = Math.min(distance, holeDistance[center[i]]);
+		}
+		if (distance == Integer.MAX_VALUE) {
+			// No hole, flow in all directions
+			return ALL_DIRECTIONS;
+		}
+		// Flow to all hole directions
+		int directions = 0;
+		for (int i = 0; i < 4; i++) {
+			if (holeDistance[center[i]] <= distance) {
+				directions |= 1 << i;
+			}
+		}
+		return directions;
+	}
+
+	private void load(World world, LiquidBuffer buffer, int x, int y, int z, int element, byte[] state, int[] holeDistance) {
+		x += elementX[element];
+		z += elementZ[element];
+		final BlockMaterial mat;
+		final short data;
+		final BlockMaterial below;
+		if (buffer == null) {
+			int fullState = world.getBlockFullState(x, y, z);
+			mat = BlockFullState.getMaterial(fullState);
+			data = BlockFullState.getData(fullState);
+			below = world.getBlockMaterial(x, y - 1, z);
+		} else {
+			mat = buffer.getMaterial(x, y, z);
+			data = buffer.getData(x, y, z);
+			below = buffer.getMaterial(x, y - 1, z);
+		}
+		if (Liquid.isLiquidObstacle(mat) || (VanillaMaterials.WATER.isMaterial(mat) && VanillaMaterials.WATER.isSource(data))) {
+			state[element] = BLOCKED;
+			holeDistance[element] = Integer.MAX_VALUE;
+		} else if (!Liquid.isLiquidObstacle(below)) {
+			state[element] = HOLE;
+			holeDistance[element] = 0;
+		} else {
+			state[element] = OPEN;
+			holeDistance[element] = Integer.MAX_VALUE;
+		}
+	}
+
+	private static class Buffers {
+		private final byte[] state;
+		private final int[] holeDistance;
+
+		public Buffers(int size) {
+			this.state = new byte[size];
+			this.holeDistance = new int[size];
+			Arrays.fill(holeDistance, Integer.MAX_VALUE);
+		}
 	}
 }
@@ -0,0 +1,236 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.util.flowing;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Block;
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.geo.cuboid.Region;
+import org.spout.api.material.BlockMaterial;
+import org.spout.api.scheduler.TaskPriority;
+import org.spout.api.util.set.TInt21TripleHashSet;
+
+import org.spout.vanilla.VanillaPlugin;
+import org.spout.vanilla.data.configuration.VanillaConfiguration;
+import org.spout.vanilla.material.block.Liquid;
+
+/**
+ * Collects the liquid cells which received a dynamic update, and simulates them in batches.<br>
+ * Every region with pending cells has one batch, which is processed by a single task on the region thread, chunk by chunk.
+ * The cells of a chunk are simulated in order on a {@link LiquidBuffer} of the chunk, which is then written back once.
+ * A cell updated more than once before the batch runs is only simulated once.
+ * Batches are dropped once they drained, or when the task of their region never ran because the region unloaded.
+ */
+public class LiquidSimulator {
+	private static final ConcurrentMap<Region, Batch> batches = new ConcurrentHashMap<Region, Batch>();
+	/**
+	 * How long a scheduled batch may wait before its region is assumed to be unloaded
+	 */
+	private static final long STALE_MILLIS = 30000;
+
+	private LiquidSimulator() {
+	}
+
+	/**
+	 * Gets whether liquid updates are batched
+	 * @return True if batching is enabled, False if liquids are simulated right away
+	 */
+	public static boolean isEnabled() {
+		return VanillaConfiguration.LIQUID_BATCHING.getBoolean();
+	}
+
+	/**
+	 * Queues a liquid block to be simulated with the next batch of its region
+	 * @param block of the liquid
+	 */
+	public static void queue(Block block) {
+		Region region = block.getRegion();
+		while (true) {
+			Batch batch = batches.get(region);
+			if (batch == null) {
+				batch = new Batch(region);
+				Batch previous = batches.putIfAbsent(region, batch);
+				if (previous != null) {
+					batch = previous;
+				} else {
+					sweep();
+				}
+			}
+			if (batch.add(block.getX(), block.getY(), block.getZ())) {
+				return;
+			}
+			// the batch was dropped meanwhile
+			batches.remove(region, batch);
+		}
+	}
+
+	/**
+	 * Drops the batches of the given world, called when the world unloads
+	 * @param world to drop the batches of
+	 */
+	public static void unload(World world) {
+		for (Batch batch : batches.values()) {
+			if (batch.region.getWorld() == world) {
+				batch.drop();
+			}
+		}
+	}
+
+	/**
+	 * Drops the batches whose task did not run for too long
+	 */
+	private static void sweep() {
+		final long now = System.currentTimeMillis();
+		for (Batch batch : batches.values()) {
+			batch.dropIfStale(now);
+		}
+	}
+
+	/**
+	 * Gets the number of regions with a batch
+	 * @return the batch count
+	 */
+	static int getBatchCount() {
+		return batches.size();
+	}
+
+	private static class Batch implements Runnable {
+		private final Region region;
+		private TIntObjectHashMap<TIntArrayList> cells = new TIntObjectHashMap<TIntArrayList>();
+		private TInt21TripleHashSet queued = new TInt21TripleHashSet();
+		private boolean scheduled = false;
+		private long scheduledTime;
+		private boolean dropped = false;
+
+		public Batch(Region region) {
+			this.region = region;
+		}
+
+		private static int getChunkKey(int x, int y, int z) {
+			x = (x >> Chunk.BLOCKS.BITS) & Region.CHUNKS.MASK;
+			y = (y >> Chunk.BLOCKS.BITS) & Region.CHUNKS.MASK;
+			z = (z >> Chunk.BLOCKS.BITS) & Region.CHUNKS.MASK;
+			return (((x << Region.CHUNKS.BITS) | y) << Region.CHUNKS.BITS) | z;
+		}
+
+		/**
+		 * Adds a cell to this batch
+		 * @return False if the batch was dropped and a new one is needed
+		 */
+		public synchronized boolean add(int x, int y, int z) {
+			if (dropped) {
+				return false;
+			}
+			if (!queued.add(x, y, z)) {
+				return true;
+			}
+			int key = getChunkKey(x, y, z);
+			TIntArrayList chunkCells = cells.get(key);
+			if (chunkCells == null) {
+				chunkCells = new TIntArrayList();
+				cells.put(key, chunkCells);
+			}
+			chunkCells.add(x);
+			chunkCells.add(y);
+			chunkCells.add(z);
+			if (!scheduled) {
+				scheduled = true;
+				scheduledTime = System.currentTimeMillis();
+				region.getTaskManager().scheduleSyncDelayedTask(VanillaPlugin.getInstance(), this, TaskPriority.NORMAL);
+			}
+			return true;
+		}
+
+		/**
+		 * Drops this batch and its pending cells
+		 */
+		public synchronized void drop() {
+			dropped = true;
+			scheduled = false;
+			cells = new TIntObjectHashMap<TIntArrayList>();
+			queued = new TInt21TripleHashSet();
+			batches.remove(region, this);
+		}
+
+		public synchronized void dropIfStale(long now) {
+			if (scheduled && now - scheduledTime > STALE_MILLIS) {
+				drop();
+			}
+		}
+
+		@Override
+		public void run() {
+			final TIntObjectHashMap<TIntArrayList> batch;
+			synchronized (this) {
+				if (dropped) {
+					return;
+				}
+				batch = cells;
+				cells = new TIntObjectHashMap<TIntArrayList>();
+				queued = new TInt21TripleHashSet();
+				scheduled = false;
+			}
+			final World world = region.getWorld();
+			TIntObjectIterator<TIntArrayList> iter = batch.iterator();
+			while (iter.hasNext()) {
+				iter.advance();
+				TIntArrayList chunkCells = iter.value();
+				// The chunk, and the blocks around it liquids can reach or look at
+				final int baseX = (chunkCells.get(0) & ~Chunk.BLOCKS.MASK) - LiquidModel.RADIUS;
+				final int baseY = (chunkCells.get(1) & ~Chunk.BLOCKS.MASK) - 1;
+				final int baseZ = (chunkCells.get(2) & ~Chunk.BLOCKS.MASK) - LiquidModel.RADIUS;
+				final int sizeXZ = Chunk.BLOCKS.SIZE + (LiquidModel.RADIUS << 1);
+				final LiquidBuffer buffer = new LiquidBuffer(world, baseX, baseY, baseZ, sizeXZ, Chunk.BLOCKS.SIZE + 2, sizeXZ);
+				for (int i = 0; i < chunkCells.size(); i += 3) {
+					final int x = chunkCells.get(i);
+					final int y = chunkCells.get(i + 1);
+					final int z = chunkCells.get(i + 2);
+					BlockMaterial material = buffer.getMaterial(x, y, z);
+					// Earlier cells of the batch may have replaced this liquid
+					if (material instanceof Liquid) {
+						((Liquid) material).onSimulate(buffer, x, y, z);
+					}
+				}
+				// Before the next chunk reads its blocks, so it sees the changes of this one
+				buffer.commit();
+			}
+			synchronized (this) {
+				// nothing was queued while simulating, so the region is calm
+				if (!scheduled) {
+					drop();
+				}
+			}
+		}
+	}
+}
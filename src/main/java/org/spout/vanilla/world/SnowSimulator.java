@@ -26,26 +26,54 @@
  */
 package org.spout.vanilla.world;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
 
+import gnu.trove.set.hash.TLongHashSet;
+
 import org.spout.api.component.Component;
 import org.spout.api.entity.Player;
+import org.spout.api.generator.biome.Biome;
+import org.spout.api.geo.LoadOption;
 import org.spout.api.geo.World;
 import org.spout.api.geo.cuboid.Block;
+import org.spout.api.geo.cuboid.Chunk;
 import org.spout.api.geo.cuboid.Region;
 import org.spout.api.geo.discrete.Point;
 import org.spout.api.material.BlockMaterial;
 import org.spout.api.material.block.BlockFace;
 import org.spout.api.math.GenericMath;
-import org.spout.api.math.Vector3;
 import org.spout.api.scheduler.TaskPriority;
+import org.spout.api.util.hashing.IntPairHashed;
 
 import org.spout.vanilla.VanillaPlugin;
 import org.spout.vanilla.material.VanillaBlockMaterial;
 import org.spout.vanilla.material.VanillaMaterials;
 import org.spout.vanilla.material.block.misc.Snow;
-
+import org.spout.vanilla.world.generator.biome.VanillaBiome;
+
+/**
+ * Simulates snowfall in the chunks around players while it is raining.<br>
+ * Every tick, the loaded chunk columns near online players that are due
+ * for an update are collected per region, without duplicates, and each
+ * region handles its columns in a single task. The cost of snowfall
+ * therefore depends on the amount of active chunks, not on the amount of
+ * players standing in them.
+ */
 public class SnowSimulator extends Component {
+	/**
+	 * Radius, in chunks, of the columns around a player that receive snow
+	 */
+	private static final int CHUNK_RADIUS = 4;
+	/**
+	 * Each column is updated once every this many ticks, must be a power of two
+	 */
+	private static final int COLUMN_INTERVAL = 8;
+	/**
+	 * Amount of random blocks tried per column update
+	 */
+	private static final int TRIES_PER_COLUMN = 1;
 	final WeatherSimulator weather;
 	private int count = 0;
 
@@ -64,111 +92,98 @@ public class SnowSimulator extends Component {
 
 	@Override
 	public void onTick(float dt) {
-		count++;
-		if (count >= JUMP_TABLE.length) {
-			count = 0;
+		count = (count + 1) & (COLUMN_INTERVAL - 1);
+		if (!weather.isRaining()) {
+			return;
 		}
-		for (Player player : getWorld().getPlayers()) {
+		World world = getWorld();
+		Map<Region, TLongHashSet> columns = new HashMap<Region, TLongHashSet>();
+		for (Player player : world.getPlayers()) {
 			if (!player.isOnline()) {
 				continue;
 			}
-			Region r = player.getRegion();
-			r.getTaskManager().scheduleSyncDelayedTask(VanillaPlugin.getInstance(), new SnowfallTask(player, r, JUMP_TABLE[count]), TaskPriority.LOWEST);
+			Point position = player.getScene().getPosition();
+			int playerX = position.getChunkX(), playerY = position.getChunkY(), playerZ = position.getChunkZ();
+			for (int cx = playerX - CHUNK_RADIUS; cx <= playerX + CHUNK_RADIUS; cx++) {
+				for (int cz = playerZ - CHUNK_RADIUS; cz <= playerZ + CHUNK_RADIUS; cz++) {
+					// spread the columns over the interval
+					if (((cx * 31 + cz + count) & (COLUMN_INTERVAL - 1)) != 0) {
+						continue;
+					}
+					Chunk chunk = world.getChunk(cx, playerY, cz, LoadOption.NO_LOAD);
+					if (chunk == null) {
+						continue;
+					}
+					Region region = chunk.getRegion();
+					TLongHashSet regionColumns = columns.get(region);
+					if (regionColumns == null) {
+						regionColumns = new TLongHashSet();
+						columns.put(region, regionColumns);
+					}
+					regionColumns.add(IntPairHashed.key(cx, cz));
+				}
+			}
 		}
-	}
-
-	private static final Vector3[] JUMP_TABLE = new Vector3[3];
-
-	static {
-		for (int i = 0; i < JUMP_TABLE.length; i++) {
-			JUMP_TABLE[i] = countToOffset(i);
+		for (Map.Entry<Region, TLongHashSet> entry : columns.entrySet()) {
+			Region region = entry.getKey();
+			region.getTaskManager().scheduleSyncDelayedTask(VanillaPlugin.getInstance(), new SnowfallTask(region, entry.getValue().toArray()), TaskPriority.LOWEST);
 		}
 	}
 
-	private static Vector3 countToOffset(int count) {
-		switch (count) {
-			case 0:
-				return Vector3.ZERO;
-			case 1:
-				return new Vector3(0, 16, 0);
-			case 2:
-				return new Vector3(0, -16, 0);
-			default:
-				return Vector3.ZERO;
-		}
+	private boolean hasSnowfall(World world, int x, int y, int z) {
+		Biome biome = world.getBiome(x, y, z);
+		return biome instanceof VanillaBiome && ((VanillaBiome) biome).getClimate().hasSnowfall();
 	}
 
 	private class SnowfallTask implements Runnable {
-		private final Player player;
 		private final Region region;
-		private final Vector3 offset;
+		private final long[] columns;
 
-		private SnowfallTask(Player player, Region region, Vector3 offset) {
-			this.player = player;
+		private SnowfallTask(Region region, long[] columns) {
 			this.region = region;
-			this.offset = offset;
+			this.columns = columns;
 		}
 
 		@Override
 		public void run() {
-			if (!player.isOnline() || !weather.isRaining()) {
+			if (!weather.isRaining()) {
 				return;
 			}
+			World world = region.getWorld();
 			Random rand = GenericMath.getRandom();
-			Point playerPos = player.getScene().getPosition();
-			final int posX = GenericMath.floor(playerPos.getX());
-			final int posY = GenericMath.floor(playerPos.getY());
-			final int posZ = GenericMath.floor(playerPos.getZ());
-			for (int tries = 0; tries < 10; tries++) {
-				//pick a random chunk between -4, -4, to 4, 4 relative to the player's position
-				int cx = (rand.nextBoolean() ? -1 : 1) * rand.nextInt(5);
-				int cz = (rand.nextBoolean() ? -1 : 1) * rand.nextInt(5);
-
-				//pick random coords to try at inside the chunk (0, 0) to (15, 15)
-				int rx = rand.nextInt(16);
-				int rz = rand.nextInt(16);
-
-				//pick a offset from the player's y position (-15 - +15) of their position
-				int offsetY = (rand.nextBoolean() ? -1 : 1) * rand.nextInt(15);
-
-				int x = posX + cx * 16 + rx + offset.getFloorX();
-				int y = posY + offsetY + offset.getFloorY();
-				int z = posZ + cz * 16 + rz + offset.getFloorZ();
-				if (region.containsBlock(x, y, z)) {
-					if (weather.isSnowingAt(x, y, z)) {
-						//Try to find the surface
-						for (int dy = 1; dy < 16; dy++) {
-							if (region.containsBlock(x, y - dy, z)) {
-								Block block = region.getBlock(x, y - dy, z);
-								BlockMaterial mat = block.getMaterial();
-								if (mat instanceof VanillaBlockMaterial) {
-									VanillaBlockMaterial vbm = (VanillaBlockMaterial) mat;
-									//Place snow ontop of solid
-									if (vbm.canSupport(VanillaMaterials.SNOW, BlockFace.TOP)) {
-										Block above = block.translate(BlockFace.TOP);
-										if (!VanillaMaterials.SNOW.willMeltAt(above)) {
-											above.setMaterial(VanillaMaterials.SNOW);
-										}
-										return;
-										//Try to grow snow
-									} else if (vbm instanceof Snow) {
-										short data = block.getData();
-										if (data == 0x7) {
-											Block above = block.translate(BlockFace.TOP);
-											if (above.getMaterial() == BlockMaterial.AIR) {
-												above.setMaterial(VanillaMaterials.SNOW);
-											}
-										} else {
-											block.setData(data + 1);
-										}
-										return;
-									} else {
-										break;
-									}
-								}
-							} else {
-								break;
+			for (long column : columns) {
+				int baseX = IntPairHashed.key1(column) << Chunk.BLOCKS.BITS;
+				int baseZ = IntPairHashed.key2(column) << Chunk.BLOCKS.BITS;
+				for (int tries = 0; tries < TRIES_PER_COLUMN; tries++) {
+					int x = baseX + rand.nextInt(Chunk.BLOCKS.SIZE);
+					int z = baseZ + rand.nextInt(Chunk.BLOCKS.SIZE);
+					// the heightmap gives the surface directly, no need to search for it
+					int y = world.getSurfaceHeight(x, z);
+					if (!region.containsBlock(x, y, z) || !region.containsBlock(x, y + 1, z) || !hasSnowfall(world, x, y + 1, z)) {
+						continue;
+					}
+					Block block = region.getBlock(x, y, z);
+					BlockMaterial mat = block.getMaterial();
+					if (!(mat instanceof VanillaBlockMaterial)) {
+						continue;
+					}
+					VanillaBlockMaterial vbm = (VanillaBlockMaterial) mat;
+					//Place snow ontop of solid
+					if (vbm.canSupport(VanillaMaterials.SNOW, BlockFace.TOP)) {
+						Block above = block.translate(BlockFace.TOP);
+						if (!VanillaMaterials.SNOW.willMeltAt(above)) {
+							above.setMaterial(VanillaMaterials.SNOW);
+						}
+						//Try to grow snow
+					} else if (vbm instanceof Snow) {
+						short data = block.getData();
+						if (data == 0x7) {
+							Block above = block.translate(BlockFace.TOP);
+							if (above.getMaterial() == BlockMaterial.AIR) {
+								above.setMaterial(VanillaMaterials.SNOW);
 							}
+						} else {
+							block.setData(data + 1);
 						}
 					}
 				}
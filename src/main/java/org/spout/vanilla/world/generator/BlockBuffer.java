@@ -0,0 +1,167 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.world.generator;
+
+import java.util.BitSet;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.material.BlockMaterial;
+import org.spout.api.util.cuboid.CuboidBlockMaterialBuffer;
+
+/**
+ * Buffers the block reads and writes of populators and objects in the chunk
+ * column being populated. A chunk of the column is read in one bulk operation
+ * the first time one of its blocks is accessed, and later reads are served from
+ * that snapshot. Writes are kept in the snapshot and {@link #commit()} writes
+ * each touched chunk back in one bulk operation, replacing only the changed
+ * blocks, so the blocks other populators change meanwhile are left alone. Blocks outside of the column, which neighbouring populators may
+ * be working on, are read and written directly.
+ */
+public class BlockBuffer {
+	private final World world;
+	private final boolean buffered;
+	private final int columnX, columnZ;
+	private final TLongObjectHashMap<ChunkBuffer> chunks = new TLongObjectHashMap<ChunkBuffer>();
+	// most accesses hit the same chunk in a row
+	private ChunkBuffer last = null;
+
+	/**
+	 * Creates a buffer which accesses all blocks directly
+	 * @param world to access
+	 */
+	public BlockBuffer(World world) {
+		this.world = world;
+		this.buffered = false;
+		this.columnX = 0;
+		this.columnZ = 0;
+	}
+
+	/**
+	 * Creates a buffer for the column of the chunk
+	 * @param chunk being populated
+	 */
+	public BlockBuffer(Chunk chunk) {
+		this.world = chunk.getWorld();
+		this.buffered = true;
+		this.columnX = chunk.getX();
+		this.columnZ = chunk.getZ();
+	}
+
+	public World getWorld() {
+		return world;
+	}
+
+	public BlockMaterial getBlockMaterial(int x, int y, int z) {
+		if (!isBuffered(x, z)) {
+			return world.getBlockMaterial(x, y, z);
+		}
+		return getChunk(x, y, z).blocks.get(x, y, z);
+	}
+
+	public void setBlockMaterial(int x, int y, int z, BlockMaterial material) {
+		if (!isBuffered(x, z)) {
+			world.setBlockMaterial(x, y, z, material, (short) 0, null);
+			return;
+		}
+		final ChunkBuffer chunk = getChunk(x, y, z);
+		chunk.blocks.set(x, y, z, material);
+		chunk.dirty.set(index(x, y, z));
+	}
+
+	/**
+	 * Writes the changed blocks back to the world and clears the buffer. Each
+	 * touched chunk is read again and written back as a whole in one bulk
+	 * operation, without physics, with only the changed blocks replaced.
+	 */
+	public void commit() {
+		for (ChunkBuffer chunk : chunks.valueCollection()) {
+			if (chunk.dirty.isEmpty()) {
+				continue;
+			}
+			final int baseX = chunk.x << Chunk.BLOCKS.BITS;
+			final int baseY = chunk.y << Chunk.BLOCKS.BITS;
+			final int baseZ = chunk.z << Chunk.BLOCKS.BITS;
+			// the current contents, so that changes made by others meanwhile are kept
+			final CuboidBlockMaterialBuffer current = world.getCuboid(baseX, baseY, baseZ, Chunk.BLOCKS.SIZE, Chunk.BLOCKS.SIZE, Chunk.BLOCKS.SIZE);
+			for (int i = chunk.dirty.nextSetBit(0); i >= 0; i = chunk.dirty.nextSetBit(i + 1)) {
+				final int x = baseX + (i >> (Chunk.BLOCKS.BITS << 1));
+				final int y = baseY + ((i >> Chunk.BLOCKS.BITS) & Chunk.BLOCKS.MASK);
+				final int z = baseZ + (i & Chunk.BLOCKS.MASK);
+				current.set(x, y, z, chunk.blocks.get(x, y, z));
+			}
+			world.setCuboid(current, null);
+		}
+		chunks.clear();
+		last = null;
+	}
+
+	private boolean isBuffered(int x, int z) {
+		return buffered && x >> Chunk.BLOCKS.BITS == columnX && z >> Chunk.BLOCKS.BITS == columnZ;
+	}
+
+	private ChunkBuffer getChunk(int x, int y, int z) {
+		final int cx = x >> Chunk.BLOCKS.BITS;
+		final int cy = y >> Chunk.BLOCKS.BITS;
+		final int cz = z >> Chunk.BLOCKS.BITS;
+		if (last != null && last.x == cx && last.y == cy && last.z == cz) {
+			return last;
+		}
+		final long key = key(cx, cy, cz);
+		ChunkBuffer chunk = chunks.get(key);
+		if (chunk == null) {
+			chunk = new ChunkBuffer(cx, cy, cz, world.getCuboid(cx << Chunk.BLOCKS.BITS, cy << Chunk.BLOCKS.BITS, cz << Chunk.BLOCKS.BITS,
+					Chunk.BLOCKS.SIZE, Chunk.BLOCKS.SIZE, Chunk.BLOCKS.SIZE));
+			chunks.put(key, chunk);
+		}
+		last = chunk;
+		return chunk;
+	}
+
+	private static int index(int x, int y, int z) {
+		return (x & Chunk.BLOCKS.MASK) << (Chunk.BLOCKS.BITS << 1) | (y & Chunk.BLOCKS.MASK) << Chunk.BLOCKS.BITS | z & Chunk.BLOCKS.MASK;
+	}
+
+	private static long key(int x, int y, int z) {
+		return ((long) x & 0x1FFFFF) << 42 | ((long) y & 0x1FFFFF) << 21 | (long) z & 0x1FFFFF;
+	}
+
+	private static class ChunkBuffer {
+		private final int x, y, z;
+		private final CuboidBlockMaterialBuffer blocks;
+		private final BitSet dirty = new BitSet(Chunk.BLOCKS.VOLUME);
+
+		private ChunkBuffer(int x, int y, int z, CuboidBlockMaterialBuffer blocks) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.blocks = blocks;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.world.generator;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import net.royawesome.jlibnoise.module.Module;
+
+/**
+ * Provides noise modules bound to a seed, one per seed and per thread.<br>
+ * A module is built by {@link #create(long)} the first time a thread asks
+ * for a seed and is never modified afterwards, so generators can run on
+ * several threads without sharing noise state.
+ * @param <T> type of the noise module
+ */
+public abstract class SeededNoise<T extends Module> {
+	private final ThreadLocal<TLongObjectHashMap<T>> modules = new ThreadLocal<TLongObjectHashMap<T>>() {
+		@Override
+		protected TLongObjectHashMap<T> initialValue() {
+			return new TLongObjectHashMap<T>(2);
+		}
+	};
+
+	/**
+	 * Gets the module of the current thread for the given seed.
+	 * @param seed of the world
+	 * @return the module
+	 */
+	public T get(long seed) {
+		final TLongObjectHashMap<T> map = modules.get();
+		T module = map.get(seed);
+		if (module == null) {
+			module = create(seed);
+			map.put(seed, module);
+		}
+		return module;
+	}
+
+	/**
+	 * Builds a new module for the given seed.
+	 * @param seed of the world
+	 * @return the module
+	 */
+	protected abstract T create(long seed);
+}
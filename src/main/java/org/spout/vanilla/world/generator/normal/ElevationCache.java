@@ -0,0 +1,110 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.world.generator.normal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import org.spout.api.generator.biome.BiomeSelector;
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.geo.cuboid.Region;
+import org.spout.api.util.hashing.IntPairHashed;
+
+import org.spout.vanilla.world.generator.normal.biome.NormalBiome;
+
+/**
+ * Caches the minimum and maximum biome elevations of block columns for a
+ * world seed, so that the terrain smoothing of neighbouring chunks does not
+ * pick the same biomes again.<br>
+ * Columns are stored per chunk column and grouped by region; the least
+ * recently used regions are evicted first.
+ */
+class ElevationCache {
+	private static final int MAX_REGIONS = 16;
+	private final BiomeSelector selector;
+	private final long seed;
+	private final Map<Long, TIntObjectHashMap<float[][]>> regions = new LinkedHashMap<Long, TIntObjectHashMap<float[][]>>(MAX_REGIONS, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, TIntObjectHashMap<float[][]>> eldest) {
+			return size() > MAX_REGIONS;
+		}
+	};
+
+	ElevationCache(BiomeSelector selector, long seed) {
+		this.selector = selector;
+		this.seed = seed;
+	}
+
+	/**
+	 * Gets the elevations of the columns in a chunk column.
+	 * @param chunkX of the chunk column
+	 * @param chunkZ of the chunk column
+	 * @return the minimum elevations at index 0 and the maximum elevations at
+	 *         index 1, each indexed by {@code (x & 15) << 4 | (z & 15)}
+	 */
+	float[][] get(int chunkX, int chunkZ) {
+		final long regionKey = IntPairHashed.key(chunkX >> Region.CHUNKS.BITS, chunkZ >> Region.CHUNKS.BITS);
+		final int chunkKey = (chunkX & Region.CHUNKS.MASK) << Region.CHUNKS.BITS | (chunkZ & Region.CHUNKS.MASK);
+		synchronized (regions) {
+			final TIntObjectHashMap<float[][]> region = regions.get(regionKey);
+			if (region != null) {
+				final float[][] elevations = region.get(chunkKey);
+				if (elevations != null) {
+					return elevations;
+				}
+			}
+		}
+		final float[][] elevations = compute(chunkX, chunkZ);
+		synchronized (regions) {
+			TIntObjectHashMap<float[][]> region = regions.get(regionKey);
+			if (region == null) {
+				region = new TIntObjectHashMap<float[][]>();
+				regions.put(regionKey, region);
+			}
+			region.put(chunkKey, elevations);
+		}
+		return elevations;
+	}
+
+	private float[][] compute(int chunkX, int chunkZ) {
+		final float[][] elevations = new float[2][Chunk.BLOCKS.SIZE * Chunk.BLOCKS.SIZE];
+		final int baseX = chunkX << Chunk.BLOCKS.BITS;
+		final int baseZ = chunkZ << Chunk.BLOCKS.BITS;
+		for (int xx = 0; xx < Chunk.BLOCKS.SIZE; xx++) {
+			for (int zz = 0; zz < Chunk.BLOCKS.SIZE; zz++) {
+				final NormalBiome biome = (NormalBiome) selector.pickBiome(baseX + xx, 0, baseZ + zz, seed);
+				elevations[0][xx << Chunk.BLOCKS.BITS | zz] = biome.getMinElevation();
+				elevations[1][xx << Chunk.BLOCKS.BITS | zz] = biome.getMaxElevation();
+			}
+		}
+		return elevations;
+	}
+}
@@ -27,6 +27,7 @@
 package org.spout.vanilla.world.generator.normal;
 
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.royawesome.jlibnoise.NoiseQuality;
 import net.royawesome.jlibnoise.module.modifier.ScalePoint;
@@ -44,15 +45,16 @@ import org.spout.api.generator.biome.selector.RidgedMultiRangeLayer;
 import org.spout.api.geo.World;
 import org.spout.api.geo.cuboid.Chunk;
 import org.spout.api.geo.discrete.Point;
+import org.spout.api.material.BlockMaterial;
 import org.spout.api.math.GenericMath;
 import org.spout.api.math.Vector3;
 import org.spout.api.util.LogicUtil;
 import org.spout.api.util.cuboid.CuboidBlockMaterialBuffer;
-import org.spout.api.util.map.TIntPairObjectHashMap;
 
 import org.spout.vanilla.data.Climate;
 import org.spout.vanilla.material.VanillaMaterials;
 import org.spout.vanilla.material.block.Liquid;
+import org.spout.vanilla.world.generator.SeededNoise;
 import org.spout.vanilla.world.generator.biome.VanillaBiomeGenerator;
 import org.spout.vanilla.world.generator.biome.VanillaBiomes;
 import org.spout.vanilla.world.generator.normal.biome.NormalBiome;
@@ -78,34 +80,42 @@ public class NormalGenerator extends VanillaBiomeGenerator {
 	public static final int SEA_LEVEL = 62;
 	private static final byte BEDROCK_DEPTH = 5;
 	// noise for generation
-	private static final Perlin PERLIN = new Perlin();
-	private static final ScalePoint NOISE = new ScalePoint();
+	private static final SeededNoise<ScalePoint> NOISE = new SeededNoise<ScalePoint>() {
+		@Override
+		protected ScalePoint create(long seed) {
+			final Perlin perlin = new Perlin();
+			perlin.setFrequency(0.02);
+			perlin.setLacunarity(2);
+			perlin.setNoiseQuality(NoiseQuality.BEST);
+			perlin.setPersistence(0.5);
+			perlin.setOctaveCount(16);
+			perlin.setSeed((int) seed);
+
+			final ScalePoint noise = new ScalePoint();
+			noise.SetSourceModule(0, perlin);
+			noise.setxScale(1);
+			noise.setyScale(1);
+			noise.setzScale(1);
+			return noise;
+		}
+	};
 	// smoothing stuff
 	private static final int SMOOTH_SIZE = 4;
-	private static final double[][] GAUSSIAN_KERNEL;
+	// the gaussian kernel is separable, this is one axis of it
+	private static final double[] GAUSSIAN_KERNEL;
+	private static final double GAUSSIAN_SCALE;
+	private final ConcurrentHashMap<Long, ElevationCache> elevationCaches = new ConcurrentHashMap<Long, ElevationCache>();
 
 	static {
-		PERLIN.setFrequency(0.02);
-		PERLIN.setLacunarity(2);
-		PERLIN.setNoiseQuality(NoiseQuality.BEST);
-		PERLIN.setPersistence(0.5);
-		PERLIN.setOctaveCount(16);
-
-		NOISE.SetSourceModule(0, PERLIN);
-		NOISE.setxScale(1);
-		NOISE.setyScale(1);
-		NOISE.setzScale(1);
-
 		final int kernelSize = SMOOTH_SIZE * 2 + 1;
-		GAUSSIAN_KERNEL = new double[kernelSize][kernelSize];
+		GAUSSIAN_KERNEL = new double[kernelSize];
 		final double bellSize = 1d / SMOOTH_SIZE;
-		for (int sx = -SMOOTH_SIZE; sx <= SMOOTH_SIZE; sx++) {
-			for (int sz = -SMOOTH_SIZE; sz <= SMOOTH_SIZE; sz++) {
-				final double bx = bellSize * sx;
-				final double bz = bellSize * sz;
-				GAUSSIAN_KERNEL[sx + SMOOTH_SIZE][sz + SMOOTH_SIZE] = 1.5 * Math.exp(-(bx * bx + bz * bz) / 2);
-			}
+		for (int s = -SMOOTH_SIZE; s <= SMOOTH_SIZE; s++) {
+			final double b = bellSize * s;
+			GAUSSIAN_KERNEL[s + SMOOTH_SIZE] = Math.exp(-(b * b) / 2);
 		}
+		// the kernel is averaged over its size, not over its weights
+		GAUSSIAN_SCALE = 1.5 / (kernelSize * kernelSize);
 	}
 
 	@Override
@@ -171,41 +181,16 @@ public class NormalGenerator extends VanillaBiomeGenerator {
 
 	@Override
 	protected void generateTerrain(CuboidBlockMaterialBuffer blockData, int x, int y, int z, BiomeManager biomes, long seed) {
-		PERLIN.setSeed((int) seed);
 		final Vector3 size = blockData.getSize();
 		final int sizeX = size.getFloorX();
 		final int sizeY = size.getFloorY();
 		final int sizeZ = size.getFloorZ();
-		final double[][][] noise = WorldGeneratorUtils.fastNoise(NOISE, sizeX, sizeY, sizeZ, 4, x, y, z);
-		final BiomeSelector selector = getSelector();
-		final TIntPairObjectHashMap<NormalBiome> biomeCache = new TIntPairObjectHashMap<NormalBiome>();
+		final double[][][] noise = WorldGeneratorUtils.fastNoise(NOISE.get(seed), sizeX, sizeY, sizeZ, 4, x, y, z);
+		final double[][] elevations = getSmoothElevations(biomes, sizeX, sizeZ, x, y, z, seed);
 		for (int xx = 0; xx < sizeX; xx++) {
 			for (int zz = 0; zz < sizeZ; zz++) {
-				double maxSum = 0;
-				double minSum = 0;
-				int count = 0;
-				for (int sx = -SMOOTH_SIZE; sx <= SMOOTH_SIZE; sx++) {
-					for (int sz = -SMOOTH_SIZE; sz <= SMOOTH_SIZE; sz++) {
-						final NormalBiome adjacent;
-						if (xx + sx < 0 || zz + sz < 0
-								|| xx + sx >= sizeX || zz + sz >= sizeZ) {
-							if (biomeCache.containsKey(x + xx + sx, z + zz + sz)) {
-								adjacent = biomeCache.get(x + xx + sx, z + zz + sz);
-							} else {
-								adjacent = (NormalBiome) selector.pickBiome(x + xx + sx, y, z + zz + sz, seed);
-								biomeCache.put(x + xx + sx, z + zz + sz, adjacent);
-							}
-						} else {
-							adjacent = (NormalBiome) biomes.getBiome(xx + sx, y, zz + sz);
-						}
-						final double weight = GAUSSIAN_KERNEL[sx + SMOOTH_SIZE][sz + SMOOTH_SIZE];
-						minSum += adjacent.getMinElevation() * weight;
-						maxSum += adjacent.getMaxElevation() * weight;
-						count++;
-					}
-				}
-				final double minElevation = minSum / count;
-				final double smoothHeight = (maxSum / count - minElevation) / 2;
+				final double minElevation = elevations[0][xx * sizeZ + zz];
+				final double smoothHeight = (elevations[1][xx * sizeZ + zz] - minElevation) / 2;
 				for (int yy = 0; yy < sizeY; yy++) {
 					final double noiseValue = pow(noise[xx][yy][zz], 2) - 1 / smoothHeight * (y + yy - smoothHeight - minElevation);
 					if (noiseValue >= 0) {
@@ -226,6 +211,78 @@ public class NormalGenerator extends VanillaBiomeGenerator {
 		}
 	}
 
+	/**
+	 * Smooths the minimum and maximum biome elevations of the columns of a
+	 * chunk with a gaussian kernel, as two one dimensional passes over a
+	 * padded array. Columns outside the chunk, or all of them if the biome
+	 * manager is null, come from the elevation cache.
+	 * @return the minimum elevations at index 0 and the maximum elevations at
+	 *         index 1, each indexed by {@code xx * sizeZ + zz}
+	 */
+	private double[][] getSmoothElevations(BiomeManager biomes, int sizeX, int sizeZ, int x, int y, int z, long seed) {
+		ElevationCache cache = elevationCaches.get(seed);
+		if (cache == null) {
+			cache = new ElevationCache(getSelector(), seed);
+			final ElevationCache previous = elevationCaches.putIfAbsent(seed, cache);
+			if (previous != null) {
+				cache = previous;
+			}
+		}
+		final int paddedX = sizeX + SMOOTH_SIZE * 2;
+		final int paddedZ = sizeZ + SMOOTH_SIZE * 2;
+		final double[][] padded = new double[2][paddedX * paddedZ];
+		float[][] cached = null;
+		int cachedX = 0, cachedZ = 0;
+		for (int px = 0; px < paddedX; px++) {
+			final int xx = px - SMOOTH_SIZE;
+			for (int pz = 0; pz < paddedZ; pz++) {
+				final int zz = pz - SMOOTH_SIZE;
+				final int index = px * paddedZ + pz;
+				if (biomes != null && xx >= 0 && zz >= 0 && xx < sizeX && zz < sizeZ) {
+					final NormalBiome biome = (NormalBiome) biomes.getBiome(xx, y, zz);
+					padded[0][index] = biome.getMinElevation();
+					padded[1][index] = biome.getMaxElevation();
+				} else {
+					final int bx = x + xx, bz = z + zz;
+					final int chunkX = bx >> Chunk.BLOCKS.BITS, chunkZ = bz >> Chunk.BLOCKS.BITS;
+					if (cached == null || chunkX != cachedX || chunkZ != cachedZ) {
+						cached = cache.get(chunkX, chunkZ);
+						cachedX = chunkX;
+						cachedZ = chunkZ;
+					}
+					final int column = (bx & Chunk.BLOCKS.MASK) << Chunk.BLOCKS.BITS | (bz & Chunk.BLOCKS.MASK);
+					padded[0][index] = cached[0][column];
+					padded[1][index] = cached[1][column];
+				}
+			}
+		}
+		final double[] pass = new double[paddedX * sizeZ];
+		final double[][] smooth = new double[2][sizeX * sizeZ];
+		for (int i = 0; i < 2; i++) {
+			// along z
+			for (int px = 0; px < paddedX; px++) {
+				for (int zz = 0; zz < sizeZ; zz++) {
+					double sum = 0;
+					for (int s = 0; s < GAUSSIAN_KERNEL.length; s++) {
+						sum += padded[i][px * paddedZ + zz + s] * GAUSSIAN_KERNEL[s];
+					}
+					pass[px * sizeZ + zz] = sum;
+				}
+			}
+			// along x
+			for (int xx = 0; xx < sizeX; xx++) {
+				for (int zz = 0; zz < sizeZ; zz++) {
+					double sum = 0;
+					for (int s = 0; s < GAUSSIAN_KERNEL.length; s++) {
+						sum += pass[(xx + s) * sizeZ + zz] * GAUSSIAN_KERNEL[s];
+					}
+					smooth[i][xx * sizeZ + zz] = sum * GAUSSIAN_SCALE;
+				}
+			}
+		}
+		return smooth;
+	}
+
 	private static double pow(double val, int pow) {
 		val = val * 0.5 + 0.5;
 		for (int i = 1; i < pow; i++) {
@@ -234,6 +291,143 @@ public class NormalGenerator extends VanillaBiomeGenerator {
 		return (val - 0.5) / 0.5;
 	}
 
+	/**
+	 * Gets the heights of the highest stone blocks of an area from the
+	 * terrain density function alone, without generating any chunk. The noise
+	 * is sampled on the same four block lattice and interpolated the same way
+	 * as in the terrain pass, so the heights match the generated stone.
+	 * @return the heights, indexed by {@code xx * sizeZ + zz}, or the minimum
+	 *         elevation minus one for columns without stone above it
+	 */
+	private int[] estimateSolidHeights(int x, int z, int sizeX, int sizeZ, long seed) {
+		final ScalePoint noise = NOISE.get(seed);
+		final double[][] elevations = getSmoothElevations(null, sizeX, sizeZ, x, 0, z, seed);
+		final NoiseLattice lattice = new NoiseLattice(noise, x, z, sizeX, sizeZ);
+		final int[] heights = new int[sizeX * sizeZ];
+		for (int xx = 0; xx < sizeX; xx++) {
+			for (int zz = 0; zz < sizeZ; zz++) {
+				final int index = xx * sizeZ + zz;
+				final double minElevation = elevations[0][index];
+				final double smoothHeight = (elevations[1][index] - minElevation) / 2;
+				// below the minimum elevation the density is always positive,
+				// above twice the smooth height it never is
+				final int bottom = Math.max(GenericMath.floor(minElevation), 0);
+				final int top = Math.min(GenericMath.floor(minElevation + smoothHeight * 2) + 1, HEIGHT - 1);
+				int y = top;
+				while (y >= bottom && !isStone(lattice, xx, y, zz, minElevation, smoothHeight)) {
+					y--;
+				}
+				heights[index] = Math.max(y, bottom - 1);
+			}
+		}
+		return heights;
+	}
+
+	private static boolean isStone(NoiseLattice lattice, int xx, int y, int zz, double minElevation, double smoothHeight) {
+		return pow(lattice.get(xx, y, zz), 2) - 1 / smoothHeight * (y - smoothHeight - minElevation) >= 0;
+	}
+
+	/**
+	 * Checks if the faces of a box touch the water placed by the terrain pass,
+	 * from the terrain noise alone, without generating any chunk. Liquids
+	 * placed later by populators are not seen.
+	 * @param seed of the world
+	 * @return whether or not any block on the faces of the box is water
+	 */
+	public boolean intersectsWater(long seed, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		final int top = Math.min(maxY, SEA_LEVEL);
+		final int bottom = Math.max(minY, 0);
+		if (bottom > top) {
+			return false;
+		}
+		final int sizeX = maxX - minX + 1;
+		final int sizeZ = maxZ - minZ + 1;
+		final double[][] elevations = getSmoothElevations(null, sizeX, sizeZ, minX, 0, minZ, seed);
+		final NoiseLattice lattice = new NoiseLattice(NOISE.get(seed), minX, minZ, sizeX, sizeZ);
+		for (int xx = 0; xx < sizeX; xx++) {
+			for (int zz = 0; zz < sizeZ; zz++) {
+				final int index = xx * sizeZ + zz;
+				final double minElevation = elevations[0][index];
+				final double smoothHeight = (elevations[1][index] - minElevation) / 2;
+				final boolean side = xx == 0 || zz == 0 || xx == sizeX - 1 || zz == sizeZ - 1;
+				for (int y = bottom; y <= top; y++) {
+					if (!side && y != minY && y != maxY) {
+						continue;
+					}
+					if (!isStone(lattice, xx, y, zz, minElevation, smoothHeight)) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The terrain noise of an area, sampled every four blocks from the
+	 * origin of the world and interpolated in between, like
+	 * {@link WorldGeneratorUtils#fastNoise} does for the chunks. A layer of
+	 * samples is only taken when a column reaches it.
+	 */
+	static class NoiseLattice {
+		private static final int RATE_BITS = 2;
+		private static final int RATE = 1 << RATE_BITS;
+		private final ScalePoint noise;
+		private final int latticeX, latticeZ, offsetX, offsetZ, sizeX, sizeZ;
+		private final double[][] layers = new double[(HEIGHT >> RATE_BITS) + 1][];
+
+		public NoiseLattice(ScalePoint noise, int x, int z, int sizeX, int sizeZ) {
+			this.noise = noise;
+			this.latticeX = x >> RATE_BITS;
+			this.latticeZ = z >> RATE_BITS;
+			this.offsetX = x - (latticeX << RATE_BITS);
+			this.offsetZ = z - (latticeZ << RATE_BITS);
+			this.sizeX = ((x + sizeX - 1) >> RATE_BITS) - latticeX + 2;
+			this.sizeZ = ((z + sizeZ - 1) >> RATE_BITS) - latticeZ + 2;
+		}
+
+		private double[] getLayer(int layer) {
+			double[] samples = layers[layer];
+			if (samples == null) {
+				samples = new double[sizeX * sizeZ];
+				for (int lx = 0; lx < sizeX; lx++) {
+					for (int lz = 0; lz < sizeZ; lz++) {
+						samples[lx * sizeZ + lz] = noise.GetValue((latticeX + lx) << RATE_BITS, layer << RATE_BITS, (latticeZ + lz) << RATE_BITS);
+					}
+				}
+				layers[layer] = samples;
+			}
+			return samples;
+		}
+
+		/**
+		 * Gets the interpolated noise of a block
+		 * @param xx of the block, relative to the area
+		 * @param y of the block
+		 * @param zz of the block, relative to the area
+		 * @return the noise
+		 */
+		public double get(int xx, int y, int zz) {
+			final int bx = xx + offsetX, bz = zz + offsetZ;
+			final int lx = bx >> RATE_BITS, ly = y >> RATE_BITS, lz = bz >> RATE_BITS;
+			final double fx = (double) (bx & (RATE - 1)) / RATE;
+			final double fy = (double) (y & (RATE - 1)) / RATE;
+			final double fz = (double) (bz & (RATE - 1)) / RATE;
+			final double lower = interpolate(getLayer(ly), lx, lz, fx, fz);
+			if (fy == 0) {
+				return lower;
+			}
+			return lower + (interpolate(getLayer(ly + 1), lx, lz, fx, fz) - lower) * fy;
+		}
+
+		private double interpolate(double[] samples, int lx, int lz, double fx, double fz) {
+			final int index = lx * sizeZ + lz;
+			final double low = samples[index] + (samples[index + sizeZ] - samples[index]) * fx;
+			final double high = samples[index + 1] + (samples[index + sizeZ + 1] - samples[index + 1]) * fx;
+			return low + (high - low) * fz;
+		}
+	}
+
 	@Override
 	public Point getSafeSpawn(World world) {
 		short shift = 0;
@@ -249,31 +443,56 @@ public class NormalGenerator extends VanillaBiomeGenerator {
 		for (byte attempts = 0; attempts < 32; attempts++) {
 			final int x = random.nextInt(256) - 127 + shift;
 			final int z = random.nextInt(256) - 127;
-			final int y = getHighestSolidBlock(world, x, z);
-			if (y != -1 && !LogicUtil.equalsAny(world.getBiome(x, y, z),
+			final int estimate = estimateSolidHeights(x, z, 1, 1, seed)[0];
+			// the stone is only dry above the sea level
+			if (estimate < SEA_LEVEL || LogicUtil.equalsAny(selector.pickBiome(x, 0, z, seed),
 					VanillaBiomes.MUSHROOM_SHORE, VanillaBiomes.MUSHROOM)) {
+				continue;
+			}
+			final int y = getFreeBlockAbove(world, x, estimate, z);
+			if (y != -1) {
 				return new Point(world, x, y + 0.5f, z);
 			}
 		}
 		return new Point(world, shift, 80, 0);
 	}
 
-	private int getHighestSolidBlock(World world, int x, int z) {
-		int y = HEIGHT - 1;
-		while (world.getBlockMaterial(x, y, z).isInvisible()) {
-			if (--y == 0 || world.getBlockMaterial(x, y, z) instanceof Liquid) {
+	/**
+	 * Finds the first free block above the ground of a column, starting at
+	 * the estimated stone height. Only the chunks around the estimate are
+	 * generated. Ground cover, trees and caves move the ground away from the
+	 * stone, so the column is walked up or down from there.
+	 * @return the height of the free block, or -1 if the ground is a liquid
+	 */
+	private static int getFreeBlockAbove(World world, int x, int estimate, int z) {
+		int y = estimate + 1;
+		// up through the ground cover and trees
+		while (!isFree(world.getBlockMaterial(x, y, z))) {
+			if (world.getBlockMaterial(x, y, z) instanceof Liquid || ++y >= HEIGHT) {
 				return -1;
 			}
 		}
-		return ++y;
+		// down into caves
+		while (y > 0 && isFree(world.getBlockMaterial(x, y - 1, z))) {
+			y--;
+		}
+		return y == 0 || world.getBlockMaterial(x, y - 1, z) instanceof Liquid ? -1 : y;
+	}
+
+	private static boolean isFree(BlockMaterial material) {
+		return material.isInvisible() && !(material instanceof Liquid);
 	}
 
 	@Override
-	public int[][] getSurfaceHeight(World world, int chunkX, int chunkY) {
-		int[][] heights = new int[Chunk.BLOCKS.SIZE][Chunk.BLOCKS.SIZE];
-		for (int x = 0; x < Chunk.BLOCKS.SIZE; x++) {
-			for (int z = 0; z < Chunk.BLOCKS.SIZE; z++) {
-				heights[x][z] = SEA_LEVEL;
+	public int[][] getSurfaceHeight(World world, int chunkX, int chunkZ) {
+		final int x = chunkX << Chunk.BLOCKS.BITS;
+		final int z = chunkZ << Chunk.BLOCKS.BITS;
+		final int[] solid = estimateSolidHeights(x, z, Chunk.BLOCKS.SIZE, Chunk.BLOCKS.SIZE, world.getSeed());
+		final int[][] heights = new int[Chunk.BLOCKS.SIZE][Chunk.BLOCKS.SIZE];
+		for (int xx = 0; xx < Chunk.BLOCKS.SIZE; xx++) {
+			for (int zz = 0; zz < Chunk.BLOCKS.SIZE; zz++) {
+				// the sea covers anything lower
+				heights[xx][zz] = Math.max(solid[xx * Chunk.BLOCKS.SIZE + zz], SEA_LEVEL);
 			}
 		}
 		return heights;
@@ -40,11 +40,24 @@ import org.spout.api.generator.biome.selector.BiomeSelectorLayer;
 import org.spout.api.generator.biome.selector.LayeredBiomeSelectorElement;
 import org.spout.api.math.Vector2;
 
+import org.spout.vanilla.world.generator.SeededNoise;
+
 public class WhittakerLayer implements BiomeSelectorLayer {
+	// settings of the noise, copied into the modules of each seed and thread
 	private final Perlin temperaturePerlin = new Perlin();
-	private final ScaleBias temperature = new ScaleBias();
 	private final Perlin humidityPerlin = new Perlin();
-	private final ScaleBias humidity = new ScaleBias();
+	private final SeededNoise<ScaleBias> temperature = new SeededNoise<ScaleBias>() {
+		@Override
+		protected ScaleBias create(long seed) {
+			return createNoise(temperaturePerlin, (int) seed * uniquenessValue * uniquenessValue);
+		}
+	};
+	private final SeededNoise<ScaleBias> humidity = new SeededNoise<ScaleBias>() {
+		@Override
+		protected ScaleBias create(long seed) {
+			return createNoise(humidityPerlin, (int) seed * uniquenessValue);
+		}
+	};
 	private double minTemperature = -20;
 	private double maxTemperature = 30;
 	private double minHumidity = 0;
@@ -54,28 +67,31 @@ public class WhittakerLayer implements BiomeSelectorLayer {
 
 	public WhittakerLayer(int uniquenessValue) {
 		this.uniquenessValue = uniquenessValue;
-		Clamp temperatureClamp = new Clamp();
-		temperatureClamp.SetSourceModule(0, temperaturePerlin);
-		temperatureClamp.setLowerBound(-1);
-		temperatureClamp.setUpperBound(1);
-		temperature.SetSourceModule(0, temperatureClamp);
-		temperature.setScale(0.5);
-		temperature.setBias(0.5);
-		Clamp humidityClamp = new Clamp();
-		humidityClamp.SetSourceModule(0, humidityPerlin);
-		humidityClamp.setLowerBound(-1);
-		humidityClamp.setUpperBound(1);
-		humidity.SetSourceModule(0, humidityClamp);
-		humidity.setScale(0.5);
-		humidity.setBias(0.5);
+	}
+
+	private static ScaleBias createNoise(Perlin settings, int seed) {
+		final Perlin perlin = new Perlin();
+		perlin.setFrequency(settings.getFrequency());
+		perlin.setLacunarity(settings.getLacunarity());
+		perlin.setNoiseQuality(settings.getNoiseQuality());
+		perlin.setOctaveCount(settings.getOctaveCount());
+		perlin.setPersistence(settings.getPersistence());
+		perlin.setSeed(seed);
+		final Clamp clamp = new Clamp();
+		clamp.SetSourceModule(0, perlin);
+		clamp.setLowerBound(-1);
+		clamp.setUpperBound(1);
+		final ScaleBias scaleBias = new ScaleBias();
+		scaleBias.SetSourceModule(0, clamp);
+		scaleBias.setScale(0.5);
+		scaleBias.setBias(0.5);
+		return scaleBias;
 	}
 
 	@Override
 	public LayeredBiomeSelectorElement pick(int x, int y, int z, long seed) {
-		temperaturePerlin.setSeed((int) seed * uniquenessValue * uniquenessValue);
-		humidityPerlin.setSeed((int) seed * uniquenessValue);
-		final double temperatureValue = temperature.GetValue(x, y, z);
-		final double humidityValue = humidity.GetValue(x, y, z);
+		final double temperatureValue = temperature.get(seed).GetValue(x, y, z);
+		final double humidityValue = humidity.get(seed).GetValue(x, y, z);
 		return findClosest(humidityValue * temperatureValue * (minTemperature - maxTemperature) + maxTemperature,
 				(1 - humidityValue) * (maxHumidity - minHumidity) + minHumidity);
 	}
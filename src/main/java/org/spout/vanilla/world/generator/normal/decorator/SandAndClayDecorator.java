@@ -29,12 +29,12 @@ package org.spout.vanilla.world.generator.normal.decorator;
 import java.util.Random;
 
 import org.spout.api.generator.biome.Decorator;
-import org.spout.api.geo.World;
 import org.spout.api.geo.cuboid.Chunk;
 import org.spout.api.material.BlockMaterial;
 
 import org.spout.vanilla.material.VanillaMaterials;
 import org.spout.vanilla.material.block.Solid;
+import org.spout.vanilla.world.generator.BlockBuffer;
 import org.spout.vanilla.world.generator.normal.NormalGenerator;
 import org.spout.vanilla.world.generator.normal.object.BlockPatchObject;
 
@@ -48,16 +48,16 @@ public class SandAndClayDecorator extends Decorator {
 		if (chunk.getY() != 4) {
 			return;
 		}
-		final World world = chunk.getWorld();
+		final BlockBuffer buffer = new BlockBuffer(chunk);
 		final BlockPatchObject sand = new BlockPatchObject(VanillaMaterials.SAND);
 		sand.setRandom(random);
 		for (byte count = 0; count < firstSandAmount; count++) {
 			final int x = chunk.getBlockX(random);
 			final int z = chunk.getBlockZ(random);
-			final int y = getHighestWorkableBlock(world, x, z);
+			final int y = getHighestWorkableBlock(buffer, x, z);
 			sand.randomize();
-			if (y != -1 && sand.canPlaceObject(world, x, y, z)) {
-				sand.placeObject(world, x, y, z);
+			if (y != -1 && sand.canPlaceObject(buffer, x, y, z)) {
+				sand.placeObject(buffer, x, y, z);
 			}
 		}
 		final BlockPatchObject clay = new BlockPatchObject(VanillaMaterials.CLAY_BLOCK);
@@ -68,27 +68,28 @@ public class SandAndClayDecorator extends Decorator {
 		for (byte count = 0; count < clayAmount; count++) {
 			final int x = chunk.getBlockX(random);
 			final int z = chunk.getBlockZ(random);
-			final int y = getHighestWorkableBlock(world, x, z);
+			final int y = getHighestWorkableBlock(buffer, x, z);
 			clay.randomize();
-			if (y != -1 && clay.canPlaceObject(world, x, y, z)) {
-				clay.placeObject(world, x, y, z);
+			if (y != -1 && clay.canPlaceObject(buffer, x, y, z)) {
+				clay.placeObject(buffer, x, y, z);
 			}
 		}
 		for (byte count = 0; count < secondSandAmount; count++) {
 			final int x = chunk.getBlockX(random);
 			final int z = chunk.getBlockZ(random);
-			final int y = getHighestWorkableBlock(world, x, z);
+			final int y = getHighestWorkableBlock(buffer, x, z);
 			sand.randomize();
-			if (y != -1 && sand.canPlaceObject(world, x, y, z)) {
-				sand.placeObject(world, x, y, z);
+			if (y != -1 && sand.canPlaceObject(buffer, x, y, z)) {
+				sand.placeObject(buffer, x, y, z);
 			}
 		}
+		buffer.commit();
 	}
 
-	private int getHighestWorkableBlock(World world, int x, int z) {
-		int y = NormalGenerator.HEIGHT;
+	private int getHighestWorkableBlock(BlockBuffer buffer, int x, int z) {
+		int y = NormalGenerator.HEIGHT - 1;
 		BlockMaterial material;
-		while ((material = world.getBlockMaterial(x, y, z)) == VanillaMaterials.ICE
+		while ((material = buffer.getBlockMaterial(x, y, z)) == VanillaMaterials.ICE
 				|| !(material instanceof Solid)) {
 			if (--y <= 0) {
 				return -1;
@@ -34,6 +34,7 @@ import org.spout.api.geo.World;
 import org.spout.api.material.BlockMaterial;
 
 import org.spout.vanilla.material.VanillaMaterials;
+import org.spout.vanilla.world.generator.BlockBuffer;
 import org.spout.vanilla.world.generator.object.RandomObject;
 import org.spout.vanilla.world.generator.object.RandomizableObject;
 
@@ -67,15 +68,31 @@ public class BlockPatchObject extends RandomObject implements RandomizableObject
 		return world.getBlockMaterial(x, y, z).isMaterial(placeIn);
 	}
 
+	public boolean canPlaceObject(BlockBuffer buffer, int x, int y, int z) {
+		return buffer.getBlockMaterial(x, y, z).isMaterial(placeIn);
+	}
+
 	@Override
 	public void placeObject(World world, int x, int y, int z) {
+		// a buffer without a column accesses the world directly
+		placeObject(new BlockBuffer(world), x, y, z);
+	}
+
+	/**
+	 * Places the patch in the block buffer. The buffer is not committed.
+	 * @param buffer to place in
+	 * @param x coordinate
+	 * @param y coordinate
+	 * @param z coordinate
+	 */
+	public void placeObject(BlockBuffer buffer, int x, int y, int z) {
 		for (byte xx = (byte) -totalRadius; xx <= totalRadius; xx++) {
 			for (byte zz = (byte) -totalRadius; zz <= totalRadius; zz++) {
 				if (xx * xx + zz * zz <= totalRadius * totalRadius) {
 					for (byte yy = (byte) -heightRadius; yy <= heightRadius; yy++) {
-						if (overridable.contains(world.getBlockMaterial(x + xx, y + yy, z + zz))
-								&& canPlaceBlock(world, x + xx, y + yy, z + zz)) {
-							world.setBlockMaterial(x + xx, y + yy, z + zz, material, (short) 0, null);
+						if (overridable.contains(buffer.getBlockMaterial(x + xx, y + yy, z + zz))
+								&& canPlaceBlock(buffer, x + xx, y + yy, z + zz)) {
+							buffer.setBlockMaterial(x + xx, y + yy, z + zz, material);
 						}
 					}
 				}
@@ -83,8 +100,8 @@ public class BlockPatchObject extends RandomObject implements RandomizableObject
 		}
 	}
 
-	private boolean canPlaceBlock(World world, int x, int y, int z) {
-		return !world.getBlockMaterial(x, y + 1, z).isMaterial(
+	private boolean canPlaceBlock(BlockBuffer buffer, int x, int y, int z) {
+		return !buffer.getBlockMaterial(x, y + 1, z).isMaterial(
 				VanillaMaterials.LOG,
 				VanillaMaterials.TALL_GRASS,
 				VanillaMaterials.FERN,
@@ -35,6 +35,7 @@ import org.spout.api.math.Vector2;
 import org.spout.api.math.VectorMath;
 
 import org.spout.vanilla.material.VanillaMaterials;
+import org.spout.vanilla.world.generator.BlockBuffer;
 import org.spout.vanilla.world.generator.object.RandomObject;
 
 public class OreObject extends RandomObject {
@@ -67,6 +68,19 @@ public class OreObject extends RandomObject {
 	 */
 	@Override
 	public void placeObject(World world, int originX, int originY, int originZ) {
+		// a buffer without a column accesses the world directly
+		placeObject(new BlockBuffer(world), originX, originY, originZ);
+	}
+
+	/**
+	 * Generates a cluster of this ore at the position using the random given,
+	 * in the block buffer. The buffer is not committed.
+	 * @param buffer to place in
+	 * @param originX of the cluster
+	 * @param originY of the cluster
+	 * @param originZ of the cluster
+	 */
+	public void placeObject(BlockBuffer buffer, int originX, int originY, int originZ) {
 		final int clusterSize = type.clusterSize;
 		final float angle = random.nextFloat() * (float) Math.PI;
 		final Vector2 offset = VectorMath.getDirection2D(angle).multiply(clusterSize).divide(8);
@@ -84,7 +98,8 @@ public class OreObject extends RandomObject {
 			final float size = ((TrigMath.sin(count * (float) Math.PI / clusterSize) + 1) * random.nextFloat() * clusterSize / 16 + 1) / 2;
 
 			final int startX = (int) (seedX - size);
-			final int startY = (int) (seedY - size);
+			// nothing to replace below the world
+			final int startY = Math.max((int) (seedY - size), 0);
 			final int startZ = (int) (seedZ - size);
 			final int endX = (int) (seedX + size);
 			final int endY = (int) (seedY + size);
@@ -103,8 +118,8 @@ public class OreObject extends RandomObject {
 							for (int z = startZ; z <= endZ; z++) {
 								float sizeZ = (z + 0.5f - seedZ) / size;
 								sizeZ *= sizeZ;
-								if (sizeX + sizeY + sizeZ < 1 && world.getBlockMaterial(x, y, z).isMaterial(VanillaMaterials.STONE)) {
-									world.setBlockMaterial(x, y, z, type.material, (short) 0, null);
+								if (sizeX + sizeY + sizeZ < 1 && buffer.getBlockMaterial(x, y, z).isMaterial(VanillaMaterials.STONE)) {
+									buffer.setBlockMaterial(x, y, z, type.material);
 								}
 							}
 						}
@@ -0,0 +1,184 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.world.generator.normal.populator;
+
+import java.util.Arrays;
+
+import org.spout.api.math.Vector3;
+
+/**
+ * The nodes of a carving random walk, such as a cave or ravine branch,
+ * precomputed independently of the chunks they will be carved into.<br>
+ * The nodes are spheres stored in a flat array, followed by the branches
+ * that split from this one after its last node. The bounds cover the area
+ * in which the nodes and the nodes of the child branches can be carved.
+ */
+public class CarveBranch {
+	private static final CarveBranch[] NO_CHILDREN = new CarveBranch[0];
+	// x, y, z, horizontal size, vertical size, nodes left
+	private static final int NODE_SIZE = 6;
+	private final double reach;
+	private final double[] horizontalScales;
+	private double[] nodes = new double[NODE_SIZE * 16];
+	private int nodeCount = 0;
+	private CarveBranch[] children = NO_CHILDREN;
+	private double minX = Double.POSITIVE_INFINITY;
+	private double maxX = Double.NEGATIVE_INFINITY;
+	private double minZ = Double.POSITIVE_INFINITY;
+	private double maxZ = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Creates a new empty branch.
+	 * @param horizontalScale of the branch, which decides how far from a chunk it can stop being carved
+	 * @param horizontalScales per height, for ravines, or null
+	 */
+	public CarveBranch(double horizontalScale, double[] horizontalScales) {
+		final double offsetHorizontalScale = horizontalScale + 18;
+		reach = offsetHorizontalScale * offsetHorizontalScale;
+		this.horizontalScales = horizontalScales;
+	}
+
+	/**
+	 * Adds a node at the end of the branch.
+	 * @param target the center of the node
+	 * @param horizontalSize of the node
+	 * @param verticalSize of the node
+	 * @param nodesLeft the number of nodes in the walk after this one
+	 */
+	public void addNode(Vector3 target, double horizontalSize, double verticalSize, int nodesLeft) {
+		if (nodeCount * NODE_SIZE == nodes.length) {
+			nodes = Arrays.copyOf(nodes, nodes.length * 2);
+		}
+		final int index = nodeCount++ * NODE_SIZE;
+		nodes[index] = target.getX();
+		nodes[index + 1] = target.getY();
+		nodes[index + 2] = target.getZ();
+		nodes[index + 3] = horizontalSize;
+		nodes[index + 4] = verticalSize;
+		nodes[index + 5] = nodesLeft;
+		include(target.getX(), target.getZ(), horizontalSize * 2);
+	}
+
+	/**
+	 * Adds a branch splitting from this one after its last node.
+	 * @param child branch
+	 */
+	public void addChild(CarveBranch child) {
+		children = Arrays.copyOf(children, children.length + 1);
+		children[children.length - 1] = child;
+		minX = Math.min(minX, child.minX);
+		maxX = Math.max(maxX, child.maxX);
+		minZ = Math.min(minZ, child.minZ);
+		maxZ = Math.max(maxZ, child.maxZ);
+	}
+
+	/**
+	 * Trims the node storage once the branch is complete.
+	 */
+	public void trim() {
+		nodes = Arrays.copyOf(nodes, nodeCount * NODE_SIZE);
+	}
+
+	private void include(double x, double z, double margin) {
+		minX = Math.min(minX, x - margin);
+		maxX = Math.max(maxX, x + margin);
+		minZ = Math.min(minZ, z - margin);
+		maxZ = Math.max(maxZ, z + margin);
+	}
+
+	/**
+	 * Checks if any node of this branch or of its children can be carved in
+	 * the chunk column whose middle is at the given coordinates.
+	 * @param middleX of the chunk column
+	 * @param middleZ of the chunk column
+	 * @return whether or not the branch can touch the column
+	 */
+	public boolean canReach(float middleX, float middleZ) {
+		return middleX + 16 >= minX && middleX - 16 <= maxX
+				&& middleZ + 16 >= minZ && middleZ - 16 <= maxZ;
+	}
+
+	/**
+	 * Checks if the walk, at the given node, has gone too far from the chunk
+	 * column whose middle is at the given coordinates to ever come back.
+	 * This node and the following ones, including the child branches, are
+	 * then never carved in that column.
+	 * @param node index
+	 * @param middleX of the chunk column
+	 * @param middleZ of the chunk column
+	 * @return whether or not the walk stops for the column
+	 */
+	public boolean isOutOfReach(int node, float middleX, float middleZ) {
+		final int index = node * NODE_SIZE;
+		final double xOffset = (float) nodes[index] - middleX;
+		final double zOffset = (float) nodes[index + 2] - middleZ;
+		final double nodesLeft = nodes[index + 5];
+		return (xOffset * xOffset + zOffset * zOffset) - nodesLeft * nodesLeft > reach;
+	}
+
+	/**
+	 * Checks if the node is close enough to the chunk column whose middle is
+	 * at the given coordinates to be carved in it.
+	 * @param node index
+	 * @param middleX of the chunk column
+	 * @param middleZ of the chunk column
+	 * @return whether or not the node can touch the column
+	 */
+	public boolean isInRange(int node, float middleX, float middleZ) {
+		final int index = node * NODE_SIZE;
+		final float x = (float) nodes[index];
+		final float z = (float) nodes[index + 2];
+		final double horizontalSize = nodes[index + 3];
+		return x >= middleX - 16 - horizontalSize * 2 && z >= middleZ - 16 - horizontalSize * 2
+				&& x <= middleX + 16 + horizontalSize * 2 && z <= middleZ + 16 + horizontalSize * 2;
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public Vector3 getTarget(int node) {
+		final int index = node * NODE_SIZE;
+		return new Vector3((float) nodes[index], (float) nodes[index + 1], (float) nodes[index + 2]);
+	}
+
+	public double getHorizontalSize(int node) {
+		return nodes[node * NODE_SIZE + 3];
+	}
+
+	public double getVerticalSize(int node) {
+		return nodes[node * NODE_SIZE + 4];
+	}
+
+	public double[] getHorizontalScales() {
+		return horizontalScales;
+	}
+
+	public CarveBranch[] getChildren() {
+		return children;
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.world.generator.normal.populator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.spout.api.generator.GeneratorPopulator;
+import org.spout.api.generator.biome.BiomeManager;
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.math.Vector3;
+import org.spout.api.util.cuboid.CuboidBlockMaterialBuffer;
+import org.spout.api.util.hashing.IntPairHashed;
+
+/**
+ * An overlapping populator which plans the carving random walks of each
+ * chunk column once per world seed. The planned branches are kept in a
+ * bounded cache, so that populating a chunk only clips the nodes of the
+ * surrounding columns that can touch it, instead of replaying every walk.
+ */
+public abstract class CarvingPopulator implements GeneratorPopulator {
+	protected static final byte OVERLAP = OverlapingPopulator.OVERLAP;
+	private static final int MAX_CACHED_COLUMNS = 4096;
+	private static final int MAX_HEIGHT = 120;
+	private static final CarveBranch[] NO_BRANCHES = new CarveBranch[0];
+	private final ConcurrentHashMap<Long, Map<Long, CarveBranch[]>> caches = new ConcurrentHashMap<Long, Map<Long, CarveBranch[]>>();
+
+	@Override
+	public void populate(CuboidBlockMaterialBuffer blockData, int x, int y, int z, BiomeManager biomes, long seed) {
+		if (y < 0 || y >= MAX_HEIGHT) {
+			return;
+		}
+		final Map<Long, CarveBranch[]> cache = getCache(seed);
+		final int cx = x >> Chunk.BLOCKS.BITS;
+		final int cz = z >> Chunk.BLOCKS.BITS;
+		final Vector3 size = blockData.getSize();
+		final int sizeX = size.getFloorX() >> Chunk.BLOCKS.BITS;
+		final int sizeZ = size.getFloorZ() >> Chunk.BLOCKS.BITS;
+		final Random worldRandom = new Random(seed);
+		final long firstSeed = worldRandom.nextLong();
+		final long secondSeed = worldRandom.nextLong();
+		for (int cxx = 0; cxx < sizeX; cxx++) {
+			for (int czz = 0; czz < sizeZ; czz++) {
+				final int dcx = cx + cxx;
+				final int dcz = cz + czz;
+				final Vector3 originChunk = new Vector3(dcx << Chunk.BLOCKS.BITS, y, dcz << Chunk.BLOCKS.BITS);
+				final float middleX = originChunk.getX() + 8;
+				final float middleZ = originChunk.getZ() + 8;
+				for (int cxxx = -OVERLAP; cxxx <= OVERLAP; cxxx++) {
+					for (int czzz = -OVERLAP; czzz <= OVERLAP; czzz++) {
+						final int dcxx = dcx + cxxx;
+						final int dczz = dcz + czzz;
+						final long key = IntPairHashed.key(dcxx, dczz);
+						CarveBranch[] branches;
+						synchronized (cache) {
+							branches = cache.get(key);
+						}
+						if (branches == null) {
+							branches = plan(new Vector3(dcxx << Chunk.BLOCKS.BITS, y, dczz << Chunk.BLOCKS.BITS),
+									new Random((dcxx * firstSeed) ^ (dczz * secondSeed) ^ seed));
+							synchronized (cache) {
+								cache.put(key, branches);
+							}
+						}
+						for (CarveBranch branch : branches) {
+							clip(blockData, originChunk, middleX, middleZ, branch);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private CarveBranch[] plan(Vector3 chunk, Random random) {
+		final List<CarveBranch> branches = new ArrayList<CarveBranch>();
+		plan(chunk, random, branches);
+		if (branches.isEmpty()) {
+			return NO_BRANCHES;
+		}
+		return branches.toArray(new CarveBranch[branches.size()]);
+	}
+
+	private void clip(CuboidBlockMaterialBuffer blockData, Vector3 chunk, float middleX, float middleZ, CarveBranch branch) {
+		if (!branch.canReach(middleX, middleZ)) {
+			return;
+		}
+		for (int node = 0; node < branch.getNodeCount(); node++) {
+			if (branch.isOutOfReach(node, middleX, middleZ)) {
+				return;
+			}
+			if (branch.isInRange(node, middleX, middleZ)) {
+				carve(blockData, chunk, branch, node);
+			}
+		}
+		for (CarveBranch child : branch.getChildren()) {
+			clip(blockData, chunk, middleX, middleZ, child);
+		}
+	}
+
+	private Map<Long, CarveBranch[]> getCache(long seed) {
+		Map<Long, CarveBranch[]> cache = caches.get(seed);
+		if (cache == null) {
+			cache = new LinkedHashMap<Long, CarveBranch[]>(MAX_CACHED_COLUMNS, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Long, CarveBranch[]> eldest) {
+					return size() > MAX_CACHED_COLUMNS;
+				}
+			};
+			final Map<Long, CarveBranch[]> previous = caches.putIfAbsent(seed, cache);
+			if (previous != null) {
+				cache = previous;
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Plans the carving random walks starting in a chunk column. This must
+	 * only depend on the column and the random, not on any block data.
+	 * @param chunk the block coordinates of the column
+	 * @param random of the column
+	 * @param branches to add the complete branches to
+	 */
+	protected abstract void plan(Vector3 chunk, Random random, List<CarveBranch> branches);
+
+	/**
+	 * Carves a node of a branch in a chunk column.
+	 * @param blockData to carve in
+	 * @param chunk the block coordinates of the column to carve in
+	 * @param branch of the node
+	 * @param node index in the branch
+	 */
+	protected abstract void carve(CuboidBlockMaterialBuffer blockData, Vector3 chunk, CarveBranch branch, int node);
+}
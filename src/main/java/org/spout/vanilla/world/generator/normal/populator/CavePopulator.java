@@ -26,6 +26,7 @@
  */
 package org.spout.vanilla.world.generator.normal.populator;
 
+import java.util.List;
 import java.util.Random;
 
 import org.spout.api.material.BlockMaterial;
@@ -38,13 +39,9 @@ import org.spout.api.util.cuboid.CuboidBlockMaterialBuffer;
 import org.spout.vanilla.material.VanillaMaterials;
 import org.spout.vanilla.material.block.liquid.Water;
 
-public class CavePopulator extends OverlapingPopulator {
+public class CavePopulator extends CarvingPopulator {
 	@Override
-	protected void populate(CuboidBlockMaterialBuffer blockData, Vector3 chunk, Vector3 originChunk, Random random) {
-		if (chunk.getFloorY() < 0 || chunk.getFloorY() >= 120) {
-			return;
-		}
-
+	protected void plan(Vector3 chunk, Random random, List<CarveBranch> branches) {
 		if (random.nextInt(15) != 0) {
 			return;
 		}
@@ -57,7 +54,7 @@ public class CavePopulator extends OverlapingPopulator {
 			int numberOfSmallCaves = 1;
 
 			if (random.nextInt(4) == 0) {
-				generateLargeCaveBranch(blockData, originChunk, target, new Random(random.nextLong()));
+				branches.add(generateLargeCaveBranch(target, new Random(random.nextLong())));
 				numberOfSmallCaves += random.nextInt(4);
 			}
 
@@ -70,15 +67,15 @@ public class CavePopulator extends OverlapingPopulator {
 					horizontalScale *= random.nextDouble() * random.nextDouble() * 3 + 1;
 				}
 
-				generateCaveBranch(blockData, originChunk, target, horizontalScale, 1, randomHorizontalAngle, randomVerticalAngle, 0, 0, new Random(random.nextLong()));
+				branches.add(generateCaveBranch(target, horizontalScale, 1, randomHorizontalAngle, randomVerticalAngle, 0, 0, new Random(random.nextLong())));
 			}
 		}
 	}
 
-	private void generateCaveBranch(CuboidBlockMaterialBuffer blockData, Vector3 chunk, Vector3 target, double horizontalScale, double verticalScale,
+	private CarveBranch generateCaveBranch(Vector3 target, double horizontalScale, double verticalScale,
 									double horizontalAngle, double verticalAngle, int startingNode, int nodeAmount, Random random) {
 
-		final Vector3 middle = new Vector3(chunk.getX() + 8, 0, chunk.getZ() + 8);
+		final CarveBranch branch = new CarveBranch(horizontalScale, null);
 		double horizontalOffset = 0;
 		double verticalOffset = 0;
 
@@ -119,9 +116,9 @@ public class CavePopulator extends OverlapingPopulator {
 			if (!lastNode) {
 
 				if (startingNode == intersectionNode && horizontalScale > 1 && nodeAmount > 0) {
-					generateCaveBranch(blockData, chunk, target, random.nextDouble() * 0.5 + 0.5, 1, horizontalAngle - Math.PI / 2, verticalAngle / 3, startingNode, nodeAmount, new Random(random.nextLong()));
-					generateCaveBranch(blockData, chunk, target, random.nextDouble() * 0.5 + 0.5, 1, horizontalAngle + Math.PI / 2, verticalAngle / 3, startingNode, nodeAmount, new Random(random.nextLong()));
-					return;
+					branch.addChild(generateCaveBranch(target, random.nextDouble() * 0.5 + 0.5, 1, horizontalAngle - Math.PI / 2, verticalAngle / 3, startingNode, nodeAmount, new Random(random.nextLong())));
+					branch.addChild(generateCaveBranch(target, random.nextDouble() * 0.5 + 0.5, 1, horizontalAngle + Math.PI / 2, verticalAngle / 3, startingNode, nodeAmount, new Random(random.nextLong())));
+					break;
 				}
 
 				if (random.nextInt(4) == 0) {
@@ -129,40 +126,35 @@ public class CavePopulator extends OverlapingPopulator {
 				}
 			}
 
-			final double xOffset = target.getX() - middle.getX();
-			final double zOffset = target.getZ() - middle.getZ();
-			final double nodesLeft = nodeAmount - startingNode;
-			final double offsetHorizontalScale = horizontalScale + 18;
-
-			if ((xOffset * xOffset + zOffset * zOffset) - nodesLeft * nodesLeft > offsetHorizontalScale * offsetHorizontalScale) {
-				return;
-			}
-
-			if (target.getX() < middle.getX() - 16 - horizontalSize * 2
-					|| target.getZ() < middle.getZ() - 16 - horizontalSize * 2
-					|| target.getX() > middle.getX() + 16 + horizontalSize * 2
-					|| target.getZ() > middle.getZ() + 16 + horizontalSize * 2) {
-				continue;
-			}
-
-			final Vector3 start = new Vector3(GenericMath.floor(target.getX() - horizontalSize) - chunk.getFloorX() - 1,
-					GenericMath.floor(target.getY() - verticalSize) - 1, GenericMath.floor(target.getZ() - horizontalSize) - chunk.getFloorZ() - 1);
-			final Vector3 end = new Vector3(GenericMath.floor(target.getX() + horizontalSize) - chunk.getFloorX() + 1,
-					GenericMath.floor(target.getY() + verticalSize) + 1, GenericMath.floor(target.getZ() + horizontalSize) - chunk.getFloorZ() + 1);
-			final CaveNode node = new CaveNode(blockData, chunk, start, end, target, verticalSize, horizontalSize);
-
-			if (node.canPlace()) {
-				node.place();
-			}
+			branch.addNode(target, horizontalSize, verticalSize, nodeAmount - startingNode);
 
 			if (lastNode) {
 				break;
 			}
 		}
+
+		branch.trim();
+		return branch;
 	}
 
-	private void generateLargeCaveBranch(CuboidBlockMaterialBuffer blockData, Vector3 chunk, Vector3 target, Random random) {
-		generateCaveBranch(blockData, chunk, target, random.nextDouble() * 6 + 1, 0.5, 0, 0, -1, -1, random);
+	private CarveBranch generateLargeCaveBranch(Vector3 target, Random random) {
+		return generateCaveBranch(target, random.nextDouble() * 6 + 1, 0.5, 0, 0, -1, -1, random);
+	}
+
+	@Override
+	protected void carve(CuboidBlockMaterialBuffer blockData, Vector3 chunk, CarveBranch branch, int node) {
+		final Vector3 target = branch.getTarget(node);
+		final double horizontalSize = branch.getHorizontalSize(node);
+		final double verticalSize = branch.getVerticalSize(node);
+		final Vector3 start = new Vector3(GenericMath.floor(target.getX() - horizontalSize) - chunk.getFloorX() - 1,
+				GenericMath.floor(target.getY() - verticalSize) - 1, GenericMath.floor(target.getZ() - horizontalSize) - chunk.getFloorZ() - 1);
+		final Vector3 end = new Vector3(GenericMath.floor(target.getX() + horizontalSize) - chunk.getFloorX() + 1,
+				GenericMath.floor(target.getY() + verticalSize) + 1, GenericMath.floor(target.getZ() + horizontalSize) - chunk.getFloorZ() + 1);
+		final CaveNode caveNode = new CaveNode(blockData, chunk, start, end, target, verticalSize, horizontalSize);
+
+		if (caveNode.canPlace()) {
+			caveNode.place();
+		}
 	}
 
 	private static class CaveNode {
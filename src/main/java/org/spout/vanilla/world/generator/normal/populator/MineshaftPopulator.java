@@ -26,41 +26,93 @@
  */
 package org.spout.vanilla.world.generator.normal.populator;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.spout.api.generator.Populator;
+import org.spout.api.generator.WorldGeneratorUtils;
 import org.spout.api.geo.World;
 import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.math.GenericMath;
+import org.spout.api.util.hashing.IntPairHashed;
 
 import org.spout.vanilla.world.generator.normal.structure.mineshaft.Mineshaft;
 
+/**
+ * Plans a mineshaft per grid cell, at most once per world seed, and places
+ * the pieces of the planned mineshafts that overlap each populated chunk.
+ */
 public class MineshaftPopulator extends Populator {
 	private static final int DISTANCE = 256;
 	private static final int VARIATION = 16;
 	private static final int ODD = 3;
 	private static final int BASE_Y = 35;
 	private static final int RAND_Y = 11;
+	private static final int SALT = 35719;
+	private static final int MAX_CACHED_CELLS = 64;
+	private final ConcurrentHashMap<Long, Map<Long, Mineshaft>> caches = new ConcurrentHashMap<Long, Map<Long, Mineshaft>>();
 
 	@Override
 	public void populate(Chunk chunk, Random random) {
-		if (chunk.getY() != 4) {
-			return;
+		final World world = chunk.getWorld();
+		final int cellX = GenericMath.floor(chunk.getBlockX() / (float) DISTANCE);
+		final int cellZ = GenericMath.floor(chunk.getBlockZ() / (float) DISTANCE);
+		// a mineshaft can reach the chunks of the neighbouring cells
+		for (int cx = cellX - 1; cx <= cellX + 1; cx++) {
+			for (int cz = cellZ - 1; cz <= cellZ + 1; cz++) {
+				final Mineshaft mineshaft = getMineshaft(world, cx, cz);
+				if (mineshaft != null) {
+					mineshaft.placePieces(chunk);
+				}
+			}
 		}
-		final int blockX = chunk.getBlockX();
-		final int blockZ = chunk.getBlockZ();
-		if (Math.abs(blockX % DISTANCE) >= Chunk.BLOCKS.SIZE
-				|| Math.abs(blockZ % DISTANCE) >= Chunk.BLOCKS.SIZE) {
-			return;
+	}
+
+	private Mineshaft getMineshaft(World world, int cellX, int cellZ) {
+		final Map<Long, Mineshaft> cache = getCache(world.getSeed());
+		final long key = IntPairHashed.key(cellX, cellZ);
+		synchronized (cache) {
+			if (cache.containsKey(key)) {
+				return cache.get(key);
+			}
 		}
-		final World world = chunk.getWorld();
+		final Random random = WorldGeneratorUtils.getRandom(world, cellX, 0, cellZ, SALT);
+		Mineshaft mineshaft = null;
 		if (random.nextInt(ODD) == 0) {
-			final Mineshaft mineshaft = new Mineshaft(random);
-			final int x = blockX + random.nextInt(VARIATION * 2 + 1) - VARIATION;
+			mineshaft = new Mineshaft(random);
+			final int x = cellX * DISTANCE + random.nextInt(VARIATION * 2 + 1) - VARIATION;
 			final int y = random.nextInt(RAND_Y) + BASE_Y;
-			final int z = blockZ + random.nextInt(VARIATION * 2 + 1) - VARIATION;
+			final int z = cellZ * DISTANCE + random.nextInt(VARIATION * 2 + 1) - VARIATION;
 			if (mineshaft.canPlaceObject(world, x, y, z)) {
-				mineshaft.placeObject(world, x, y, z);
+				mineshaft.plan(world, x, y, z);
+			} else {
+				mineshaft = null;
+			}
+		}
+		synchronized (cache) {
+			cache.put(key, mineshaft);
+		}
+		return mineshaft;
+	}
+
+	private Map<Long, Mineshaft> getCache(long seed) {
+		Map<Long, Mineshaft> cache = caches.get(seed);
+		if (cache == null) {
+			cache = new LinkedHashMap<Long, Mineshaft>(MAX_CACHED_CELLS, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Long, Mineshaft> eldest) {
+					return size() > MAX_CACHED_CELLS;
+				}
+			};
+			final Map<Long, Mineshaft> previous = caches.putIfAbsent(seed, cache);
+			if (previous != null) {
+				cache = previous;
 			}
 		}
+		return cache;
 	}
 }
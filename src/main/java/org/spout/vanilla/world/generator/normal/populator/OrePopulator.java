@@ -35,6 +35,7 @@ import org.spout.api.generator.Populator;
 import org.spout.api.geo.World;
 import org.spout.api.geo.cuboid.Chunk;
 
+import org.spout.vanilla.world.generator.BlockBuffer;
 import org.spout.vanilla.world.generator.normal.object.OreObject;
 import org.spout.vanilla.world.generator.normal.object.OreObject.OreType;
 
@@ -47,6 +48,7 @@ public class OrePopulator extends Populator {
 			return;
 		}
 		final World world = chunk.getWorld();
+		final BlockBuffer buffer = new BlockBuffer(chunk);
 		for (OreType oreType : oreTypes) {
 			final OreObject ore = new OreObject(oreType);
 			ore.setRandom(random);
@@ -56,10 +58,11 @@ public class OrePopulator extends Populator {
 						+ oreType.getMinHeight();
 				final int z = chunk.getBlockZ(random);
 				if (ore.canPlaceObject(world, x, y, z)) {
-					ore.placeObject(world, x, y, z);
+					ore.placeObject(buffer, x, y, z);
 				}
 			}
 		}
+		buffer.commit();
 	}
 
 	public void clearOreTypes() {
@@ -26,17 +26,19 @@
  */
 package org.spout.vanilla.world.generator.normal.populator;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
-
 import org.spout.api.Spout;
 import org.spout.api.generator.Populator;
 import org.spout.api.generator.WorldGeneratorUtils;
 import org.spout.api.geo.World;
 import org.spout.api.geo.cuboid.Chunk;
-import org.spout.vanilla.VanillaPlugin;
 
+import org.spout.vanilla.VanillaPlugin;
 import org.spout.vanilla.world.generator.normal.structure.stronghold.Stronghold;
 
 public class StrongholdPopulator extends Populator {
@@ -44,58 +46,54 @@ public class StrongholdPopulator extends Populator {
 	private int variation = 256;
 	private int baseElevation = 35;
 	private int randomElevation = 11;
+	private final ConcurrentHashMap<Long, Stronghold[]> strongholds = new ConcurrentHashMap<Long, Stronghold[]>();
 
 	@Override
 	public void populate(Chunk chunk, Random random) {
-		if (chunk.getY() != 4) {
-			return;
+		for (Stronghold stronghold : getStrongholds(chunk.getWorld())) {
+			stronghold.placePieces(chunk);
 		}
-		final int blockX = chunk.getBlockX();
-		final int blockZ = chunk.getBlockZ();
-		final int absBlockX = Math.abs(blockX);
-		final int absBlockZ = Math.abs(blockZ);
-		if (absBlockX <= distance || absBlockX > distance + Chunk.BLOCKS.SIZE
-				|| absBlockZ <= distance || absBlockZ > distance + Chunk.BLOCKS.SIZE) {
-			return;
-		}
-		final World world = chunk.getWorld();
-		final int excludedQuadrant = new Random(world.getSeed()).nextInt(4);
-		switch (excludedQuadrant) {
-			case 0:
-				if (blockX > 0 && blockZ > 0) {
-					return;
-				}
-				break;
-			case 1:
-				if (blockX > 0 && blockZ < 0) {
-					return;
-				}
-				break;
-			case 2:
-				if (blockX < 0 && blockZ < 0) {
-					return;
-				}
-				break;
-			case 3:
-				if (blockX < 0 && blockZ > 0) {
-					return;
-				}
-				break;
+	}
+
+	private Stronghold[] getStrongholds(World world) {
+		Stronghold[] planned = strongholds.get(world.getSeed());
+		if (planned == null) {
+			planned = planStrongholds(world);
+			final Stronghold[] previous = strongholds.putIfAbsent(world.getSeed(), planned);
+			if (previous != null) {
+				planned = previous;
+			}
 		}
+		return planned;
+	}
+
+	private Stronghold[] planStrongholds(World world) {
 		// This means only three strongholds per world, 1 per quadrant, except one excluded quadrant.
 		// All are near + or - 896 on x and z (by + or - 256 on x and z).
-		random = WorldGeneratorUtils.getRandom(world, blockX / absBlockX, 0,
-				blockZ / absBlockZ, 57845);
-		final Stronghold stronghold = new Stronghold(random);
-		final int x = blockX + random.nextInt(2 * variation + 1) - variation;
-		final int y = random.nextInt(randomElevation) + baseElevation;
-		final int z = blockZ + random.nextInt(2 * variation + 1) - variation;
-		if (stronghold.canPlaceObject(world, x, y, z)) {
-			stronghold.placeObject(world, x, y, z);
-			if (VanillaPlugin.getInstance().getEngine().debugMode()) {
-				Spout.getLogger().log(Level.INFO, "Placed stronghold at: (" + x + ", " + y + ", " + z + ")");
+		final int excludedQuadrant = new Random(world.getSeed()).nextInt(4);
+		// the first chunk past the distance
+		final int chunkDistance = (distance >> Chunk.BLOCKS.BITS) + 1 << Chunk.BLOCKS.BITS;
+		final List<Stronghold> planned = new ArrayList<Stronghold>(3);
+		for (int quadrant = 0; quadrant < 4; quadrant++) {
+			if (quadrant == excludedQuadrant) {
+				continue;
+			}
+			final int signX = quadrant < 2 ? 1 : -1;
+			final int signZ = quadrant == 0 || quadrant == 3 ? 1 : -1;
+			final Random random = WorldGeneratorUtils.getRandom(world, signX, 0, signZ, 57845);
+			final Stronghold stronghold = new Stronghold(random);
+			final int x = signX * chunkDistance + random.nextInt(2 * variation + 1) - variation;
+			final int y = random.nextInt(randomElevation) + baseElevation;
+			final int z = signZ * chunkDistance + random.nextInt(2 * variation + 1) - variation;
+			if (stronghold.canPlaceObject(world, x, y, z)) {
+				stronghold.plan(world, x, y, z);
+				planned.add(stronghold);
+				if (VanillaPlugin.getInstance().getEngine().debugMode()) {
+					Spout.getLogger().log(Level.INFO, "Planned stronghold at: (" + x + ", " + y + ", " + z + ")");
+				}
 			}
 		}
+		return planned.toArray(new Stronghold[planned.size()]);
 	}
 
 	public void setDistance(int distance) {
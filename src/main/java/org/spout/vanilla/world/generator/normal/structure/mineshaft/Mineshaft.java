@@ -59,6 +59,17 @@ public class Mineshaft extends Structure {
 
 	@Override
 	public void placeObject(World w, int x, int y, int z) {
+		plan(w, x, y, z);
+		placePieces();
+	}
+
+	/**
+	 * Plans the pieces without writing to the world. The liquid checks of the
+	 * pieces are done here, once for the whole piece.
+	 */
+	@Override
+	public void plan(World w, int x, int y, int z) {
+		clearPieces();
 		final Set<BoundingBox> placed = new HashSet<BoundingBox>();
 		final Queue<StructurePiece> activeBranches = new LinkedList<StructurePiece>();
 		final MineshaftRoom room = new MineshaftRoom(this);
@@ -72,7 +83,7 @@ public class Mineshaft extends Structure {
 			final BoundingBox activeBox = active.getBoundingBox();
 			if (!collides(activeBox, active.getLastComponent(), placed) && active.canPlace()
 					&& active.getPosition().getY() >= 20) {
-				active.place();
+				addPiece(active);
 				if (++count > size) {
 					return;
 				}
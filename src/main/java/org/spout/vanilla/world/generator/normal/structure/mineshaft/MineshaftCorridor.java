@@ -30,7 +30,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
-import org.spout.api.geo.cuboid.Block;
 import org.spout.api.math.Vector3;
 
 import org.spout.vanilla.material.VanillaMaterials;
@@ -137,9 +136,8 @@ public class MineshaftCorridor extends StructurePiece {
 		// bridge gaps
 		for (byte xx = 0; xx <= 2; xx++) {
 			for (byte zz = 0; zz <= lenght; zz++) {
-				final Block block = getBlock(xx, -1, zz);
-				if (block.isMaterial(VanillaMaterials.AIR)) {
-					block.setMaterial(VanillaMaterials.PLANK);
+				if (getBlockMaterial(xx, -1, zz).isMaterial(VanillaMaterials.AIR)) {
+					setBlockMaterial(xx, -1, zz, VanillaMaterials.PLANK);
 				}
 			}
 		}
@@ -30,7 +30,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
-import org.spout.api.geo.cuboid.Block;
 import org.spout.api.math.Vector3;
 
 import org.spout.vanilla.material.VanillaMaterials;
@@ -82,9 +81,8 @@ public class MineshaftIntersection extends StructurePiece {
 		// bridge gaps
 		for (int xx = -1; xx <= 3; xx++) {
 			for (int zz = 0; zz <= 4; zz++) {
-				final Block block = getBlock(xx, -1, zz);
-				if (block.isMaterial(VanillaMaterials.AIR)) {
-					block.setMaterial(VanillaMaterials.PLANK);
+				if (getBlockMaterial(xx, -1, zz).isMaterial(VanillaMaterials.AIR)) {
+					setBlockMaterial(xx, -1, zz, VanillaMaterials.PLANK);
 				}
 			}
 		}
@@ -60,6 +60,17 @@ public class Stronghold extends Structure {
 
 	@Override
 	public void placeObject(World w, int x, int y, int z) {
+		plan(w, x, y, z);
+		placePieces();
+	}
+
+	/**
+	 * Plans the pieces without writing to the world. The liquid checks of the
+	 * pieces are done here, once for the whole piece.
+	 */
+	@Override
+	public void plan(World w, int x, int y, int z) {
+		clearPieces();
 		final Set<BoundingBox> placed = new HashSet<BoundingBox>();
 		final Queue<StructurePiece> activeBranches = new LinkedList<StructurePiece>();
 		final StrongholdCorridor corridor = new StrongholdCorridor(this);
@@ -76,7 +87,7 @@ public class Stronghold extends Structure {
 			if (active.getPosition().getY() >= 10
 					&& !collides(activeBox, active.getLastComponent(), placed)
 					&& active.canPlace()) {
-				active.place();
+				addPiece(active);
 				if (++count > size) {
 					return;
 				}
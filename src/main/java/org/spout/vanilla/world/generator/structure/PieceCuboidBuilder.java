@@ -26,10 +26,12 @@
  */
 package org.spout.vanilla.world.generator.structure;
 
+import org.spout.api.geo.World;
 import org.spout.api.math.IntVector3;
+import org.spout.api.math.Vector3;
 
 import org.spout.vanilla.material.VanillaMaterials;
-import org.spout.vanilla.material.block.Liquid;
+import org.spout.vanilla.world.generator.normal.NormalGenerator;
 
 public class PieceCuboidBuilder extends PieceBuilder {
 	protected final IntVector3 min = new IntVector3(0, 0, 0);
@@ -185,37 +187,24 @@ public class PieceCuboidBuilder extends PieceBuilder {
 		}
 	}
 
+	/**
+	 * Checks if the faces of the cuboid touch the water of the terrain. This
+	 * is decided from the terrain noise of the world generator, without
+	 * reading the world, so that it never loads chunks and gives the same
+	 * answer whichever chunks are generated. Generators without terrain
+	 * water never intersect.
+	 * @return whether or not the cuboid intersects liquids
+	 */
 	public boolean intersectsLiquids() {
-		final int startX = min.getX();
-		final int startY = min.getY();
-		final int startZ = min.getZ();
-		final int endX = max.getX();
-		final int endY = max.getY();
-		final int endZ = max.getZ();
-		for (int yy = startY; yy <= endY; yy++) {
-			if (yy == startY || yy == endY) {
-				for (int xx = startX; xx <= endX; xx++) {
-					for (int zz = startZ; zz <= endZ; zz++) {
-						if (parent.getBlockMaterial(xx, yy, zz) instanceof Liquid) {
-							return true;
-						}
-					}
-				}
-			} else {
-				for (int xx = startX; xx <= endX; xx++) {
-					if (parent.getBlockMaterial(xx, yy, startZ) instanceof Liquid
-							|| parent.getBlockMaterial(xx, yy, endZ) instanceof Liquid) {
-						return true;
-					}
-				}
-				for (int zz = startZ + 1; zz < endZ; zz++) {
-					if (parent.getBlockMaterial(startX, yy, zz) instanceof Liquid
-							|| parent.getBlockMaterial(endX, yy, zz) instanceof Liquid) {
-						return true;
-					}
-				}
-			}
+		final World world = parent.getPosition().getWorld();
+		if (!(world.getGenerator() instanceof NormalGenerator)) {
+			return false;
 		}
-		return false;
+		// the rotations are of quarter turns, so the cuboid stays aligned
+		final Vector3 first = parent.transform(min.getX(), min.getY(), min.getZ());
+		final Vector3 second = parent.transform(max.getX(), max.getY(), max.getZ());
+		return ((NormalGenerator) world.getGenerator()).intersectsWater(world.getSeed(),
+				Math.min(first.getFloorX(), second.getFloorX()), Math.min(first.getFloorY(), second.getFloorY()), Math.min(first.getFloorZ(), second.getFloorZ()),
+				Math.max(first.getFloorX(), second.getFloorX()), Math.max(first.getFloorY(), second.getFloorY()), Math.max(first.getFloorZ(), second.getFloorZ()));
 	}
 }
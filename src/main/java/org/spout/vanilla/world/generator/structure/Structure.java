@@ -26,15 +26,201 @@
  */
 package org.spout.vanilla.world.generator.structure;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import org.spout.api.generator.WorldGenerator;
+import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.math.Vector3;
+import org.spout.api.util.hashing.IntPairHashed;
+
+import org.spout.vanilla.world.generator.biome.VanillaBiomeGenerator;
 import org.spout.vanilla.world.generator.object.RandomObject;
+import org.spout.vanilla.world.generator.structure.StructurePiece.BoundingBox;
 
+/**
+ * A structure made of pieces. Structures that support it are first planned
+ * into a list of pieces, each with its own random seed, without reading or
+ * writing any block. The pieces are then placed chunk by chunk, clipped to
+ * the chunk being populated, so that placing a structure never loads the
+ * chunks it spans.
+ */
 public abstract class Structure extends RandomObject {
+	// how far from its bounding box a piece can read or write blocks
+	private static final int PIECE_MARGIN = 8;
+	// generated height of columns of other generators
+	private static final int DEFAULT_COLUMN_HEIGHT = 256;
+	private final List<StructurePiece> pieces = new ArrayList<StructurePiece>();
+	private final TLongObjectHashMap<List<StructurePiece>> columns = new TLongObjectHashMap<List<StructurePiece>>();
+	private BoundingBox clip = null;
+
 	public Structure() {
 	}
 
 	public Structure(Random random) {
 		super(random);
 	}
+
+	/**
+	 * Plans the pieces of the structure at the position, without reading or
+	 * writing any block. Structures which do not support planning do nothing.
+	 * @param w the world
+	 * @param x coordinate
+	 * @param y coordinate
+	 * @param z coordinate
+	 */
+	public void plan(World w, int x, int y, int z) {
+	}
+
+	/**
+	 * Removes all the planned pieces.
+	 */
+	protected void clearPieces() {
+		pieces.clear();
+		columns.clear();
+	}
+
+	/**
+	 * Adds a piece to the plan, giving it a seed for its placement and
+	 * indexing it by the chunk columns it can touch. Only pieces which passed
+	 * their {@link StructurePiece#canPlace()} check are to be added. That
+	 * check must not read the world, so that every chunk places the same
+	 * pieces no matter which chunks were generated when planning.
+	 * @param piece to add
+	 */
+	protected void addPiece(StructurePiece piece) {
+		piece.setSeed(random.nextLong());
+		pieces.add(piece);
+		final BoundingBox box = piece.getBoundingBox();
+		final int minX = box.getMin().getFloorX() - PIECE_MARGIN >> Chunk.BLOCKS.BITS;
+		final int minZ = box.getMin().getFloorZ() - PIECE_MARGIN >> Chunk.BLOCKS.BITS;
+		final int maxX = box.getMax().getFloorX() + PIECE_MARGIN >> Chunk.BLOCKS.BITS;
+		final int maxZ = box.getMax().getFloorZ() + PIECE_MARGIN >> Chunk.BLOCKS.BITS;
+		for (int cx = minX; cx <= maxX; cx++) {
+			for (int cz = minZ; cz <= maxZ; cz++) {
+				final long key = IntPairHashed.key(cx, cz);
+				List<StructurePiece> column = columns.get(key);
+				if (column == null) {
+					column = new ArrayList<StructurePiece>();
+					columns.put(key, column);
+				}
+				column.add(piece);
+			}
+		}
+	}
+
+	/**
+	 * Gets the planned pieces.
+	 * @return the pieces, in planning order
+	 */
+	public List<StructurePiece> getPieces() {
+		return Collections.unmodifiableList(pieces);
+	}
+
+	/**
+	 * Places all the planned pieces, without any clipping.
+	 */
+	protected synchronized void placePieces() {
+		for (StructurePiece piece : pieces) {
+			placePiece(piece);
+		}
+	}
+
+	/**
+	 * Places the parts of the planned pieces which are inside the chunk. The
+	 * pieces cannot write outside of the chunk, and read blocks outside of
+	 * it as air.
+	 * @param chunk to place the pieces in
+	 */
+	public synchronized void placePieces(Chunk chunk) {
+		final List<StructurePiece> column = columns.get(IntPairHashed.key(chunk.getX(), chunk.getZ()));
+		if (column == null) {
+			return;
+		}
+		final int x = chunk.getBlockX(), y = chunk.getBlockY(), z = chunk.getBlockZ();
+		final int size = Chunk.BLOCKS.SIZE - 1;
+		final BoundingBox reach = new BoundingBox(new Vector3(x - PIECE_MARGIN, y - PIECE_MARGIN, z - PIECE_MARGIN),
+				new Vector3(x + size + PIECE_MARGIN, y + size + PIECE_MARGIN, z + size + PIECE_MARGIN));
+		clip = new BoundingBox(new Vector3(x, y, z), new Vector3(x + size, y + size, z + size));
+		try {
+			for (StructurePiece piece : column) {
+				if (piece.getBoundingBox().intersects(reach)) {
+					placePiece(piece);
+				}
+			}
+		} finally {
+			clip = null;
+		}
+	}
+
+	private void placePiece(StructurePiece piece) {
+		// the same seed for every chunk, so that each places the same piece
+		random.setSeed(piece.getSeed());
+		piece.place();
+	}
+
+	/**
+	 * Checks if pieces can read and write the block at the position. This is
+	 * always true when not placing pieces in a chunk.
+	 * @param x coordinate
+	 * @param y coordinate
+	 * @param z coordinate
+	 * @return whether or not the block is inside the current clip
+	 */
+	public boolean isInClip(int x, int y, int z) {
+		if (clip == null) {
+			return true;
+		}
+		final Vector3 min = clip.getMin();
+		final Vector3 max = clip.getMax();
+		return x >= min.getX() && y >= min.getY() && z >= min.getZ()
+				&& x <= max.getX() && y <= max.getY() && z <= max.getZ();
+	}
+
+	/**
+	 * Checks if the column at the position is the column of the current clip.
+	 * This is always true when not placing pieces in a chunk.
+	 * @param x coordinate
+	 * @param z coordinate
+	 * @return whether or not the column is inside the current clip
+	 */
+	public boolean isInClipColumn(int x, int z) {
+		if (clip == null) {
+			return true;
+		}
+		final Vector3 min = clip.getMin();
+		final Vector3 max = clip.getMax();
+		return x >= min.getX() && z >= min.getZ() && x <= max.getX() && z <= max.getZ();
+	}
+
+	/**
+	 * Checks if the block is in the column of the current clip, between the
+	 * heights the world generator generates together with the clip. This is
+	 * always true when not placing pieces in a chunk.
+	 * @param w the world
+	 * @param x coordinate
+	 * @param y coordinate
+	 * @param z coordinate
+	 * @return whether or not the block is inside the generated column
+	 */
+	public boolean isInGeneratedColumn(World w, int x, int y, int z) {
+		if (clip == null) {
+			return true;
+		}
+		if (!isInClipColumn(x, z)) {
+			return false;
+		}
+		final WorldGenerator generator = w.getGenerator();
+		if (generator instanceof VanillaBiomeGenerator) {
+			final VanillaBiomeGenerator biomeGenerator = (VanillaBiomeGenerator) generator;
+			return y >= (biomeGenerator.getLowestChunkY() << Chunk.BLOCKS.BITS)
+					&& y < (biomeGenerator.getHighestChunkY() + 1 << Chunk.BLOCKS.BITS);
+		}
+		return y >= 0 && y < DEFAULT_COLUMN_HEIGHT;
+	}
 }
@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.Random;
 
 import org.spout.api.generator.WorldGeneratorObject;
+import org.spout.api.geo.World;
 import org.spout.api.geo.cuboid.Block;
 import org.spout.api.geo.discrete.Point;
 import org.spout.api.material.BlockMaterial;
@@ -51,6 +52,7 @@ public abstract class StructurePiece {
 	protected Point position = Point.invalid;
 	protected Quaternion rotation = Quaternion.IDENTITY;
 	protected Vector3 rotationPoint = Vector3.ZERO;
+	private long seed = 0;
 
 	public StructurePiece(Structure parent) {
 		this.parent = parent;
@@ -78,6 +80,9 @@ public abstract class StructurePiece {
 
 	public BlockMaterial getBlockMaterial(int xx, int yy, int zz) {
 		final Vector3 transformed = transform(xx, yy, zz);
+		if (!isInClip(transformed)) {
+			return VanillaMaterials.AIR;
+		}
 		return position.getWorld().getBlockMaterial(transformed.getFloorX(), transformed.getFloorY(), transformed.getFloorZ());
 	}
 
@@ -87,6 +92,9 @@ public abstract class StructurePiece {
 
 	public void setBlockMaterial(int xx, int yy, int zz, BlockMaterial material, short data) {
 		final Vector3 transformed = transform(xx, yy, zz);
+		if (!isInClip(transformed)) {
+			return;
+		}
 		position.getWorld().setBlockMaterial(transformed.getFloorX(), transformed.getFloorY(), transformed.getFloorZ(),
 				material, data, null);
 		if (material instanceof Directional) {
@@ -125,8 +133,15 @@ public abstract class StructurePiece {
 	}
 
 	public void attachMaterial(int xx, int yy, int zz, Attachable attachable) {
-		final Block block = getBlock(xx, yy, zz);
+		final Vector3 transformed = transform(xx, yy, zz);
+		if (!isInClip(transformed)) {
+			return;
+		}
+		final Block block = position.getWorld().getBlock(transformed);
 		for (BlockFace face : BlockFaces.BTNSWE) {
+			if (!isInClip(transformed.add(face.getOffset()))) {
+				continue;
+			}
 			final Block adjacent = block.translate(face);
 			if (attachable.canAttachTo(adjacent, face.getOpposite())) {
 				block.setMaterial((BlockMaterial) attachable);
@@ -140,26 +155,55 @@ public abstract class StructurePiece {
 	}
 
 	public void fillDownwards(int xx, int yy, int zz, int limit, BlockMaterial material, short data) {
+		final Vector3 start = transform(xx, yy, zz);
+		if (!parent.isInClipColumn(start.getFloorX(), start.getFloorZ())) {
+			return;
+		}
+		// the blocks above and below the clip are read from the world, but only
+		// within the column generated with the clip, so the fill stops where it
+		// would without the clip. The part of the fill placed by another chunk
+		// of the column is gone through.
+		final World world = position.getWorld();
 		short counter = 0;
-		Block block;
-		while (((block = getBlock(xx, yy, zz)).getMaterial().isMaterial(VanillaMaterials.AIR)
-				|| block.getMaterial() instanceof Liquid) && counter++ < limit) {
-			block.setMaterial(material, data);
+		BlockMaterial current;
+		while (counter++ < limit) {
+			final Vector3 transformed = transform(xx, yy, zz);
+			if (!parent.isInGeneratedColumn(world, transformed.getFloorX(), transformed.getFloorY(), transformed.getFloorZ())) {
+				break;
+			}
+			current = world.getBlockMaterial(transformed.getFloorX(), transformed.getFloorY(), transformed.getFloorZ());
+			if (!current.isMaterial(VanillaMaterials.AIR) && !(current instanceof Liquid)
+					&& (isInClip(transformed) || !current.isMaterial(material))) {
+				break;
+			}
+			setBlockMaterial(xx, yy, zz, material, data);
 			yy--;
 		}
 	}
 
 	public void placeObject(int xx, int yy, int zz, WorldGeneratorObject object) {
 		final Vector3 transformed = transform(xx, yy, zz);
-		if (object.canPlaceObject(position.getWorld(), transformed.getFloorX(), transformed.getFloorY(), transformed.getFloorZ())) {
+		// objects are placed by the chunk of their origin
+		if (isInClip(transformed) && object.canPlaceObject(position.getWorld(), transformed.getFloorX(), transformed.getFloorY(), transformed.getFloorZ())) {
 			object.placeObject(position.getWorld(), transformed.getFloorX(), transformed.getFloorY(), transformed.getFloorZ());
 		}
 	}
 
 	public void placeDoor(int xx, int yy, int zz, DoorBlock door, BlockFace facing) {
-		final Block bottom = getBlock(xx, yy, zz);
-		door.create(getBlock(xx, yy, zz), bottom.translate(BlockFace.TOP),
-				BlockFace.fromYaw(facing.getDirection().getYaw() + rotation.getYaw()), false, false);
+		// each half is placed by the chunk it is in
+		final Vector3 bottom = transform(xx, yy, zz);
+		final Vector3 top = transform(xx, yy + 1, zz);
+		if (isInClip(top)) {
+			door.createTop(position.getWorld().getBlock(top), false);
+		}
+		if (isInClip(bottom)) {
+			door.createBottom(position.getWorld().getBlock(bottom),
+					BlockFace.fromYaw(facing.getDirection().getYaw() + rotation.getYaw()), false);
+		}
+	}
+
+	private boolean isInClip(Vector3 transformed) {
+		return parent.isInClip(transformed.getFloorX(), transformed.getFloorY(), transformed.getFloorZ());
 	}
 
 	protected Vector3 transform(int x, int y, int z) {
@@ -186,6 +230,19 @@ public abstract class StructurePiece {
 		offsetPosition(offset.getFloorX(), offset.getFloorY(), offset.getFloorZ());
 	}
 
+	/**
+	 * Gets the seed used to place this piece, so that placing it in any chunk
+	 * picks the same random blocks.
+	 * @return the seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
 	public Quaternion getRotation() {
 		return rotation;
 	}
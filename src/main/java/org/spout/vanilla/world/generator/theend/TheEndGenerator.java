@@ -42,6 +42,7 @@ import org.spout.api.util.cuboid.CuboidBlockMaterialBuffer;
 
 import org.spout.vanilla.material.VanillaMaterials;
 import org.spout.vanilla.material.block.Liquid;
+import org.spout.vanilla.world.generator.SeededNoise;
 import org.spout.vanilla.world.generator.biome.VanillaBiomes;
 import org.spout.vanilla.world.generator.biome.VanillaSingleBiomeGenerator;
 
@@ -53,21 +54,25 @@ public class TheEndGenerator extends VanillaSingleBiomeGenerator {
 	public static final int MINIMUM = ELEVATION - LOWER_SIZE;
 	public static final int HEIGHT = ELEVATION + UPPER_SIZE;
 	// noise for generation
-	private static final Perlin PERLIN = new Perlin();
-	private static final ScalePoint NOISE = new ScalePoint();
+	private static final SeededNoise<ScalePoint> NOISE = new SeededNoise<ScalePoint>() {
+		@Override
+		protected ScalePoint create(long seed) {
+			final Perlin perlin = new Perlin();
+			perlin.setFrequency(0.01);
+			perlin.setLacunarity(2);
+			perlin.setNoiseQuality(NoiseQuality.BEST);
+			perlin.setPersistence(0.5);
+			perlin.setOctaveCount(16);
+			perlin.setSeed((int) seed * 23);
 
-	static {
-		PERLIN.setFrequency(0.01);
-		PERLIN.setLacunarity(2);
-		PERLIN.setNoiseQuality(NoiseQuality.BEST);
-		PERLIN.setPersistence(0.5);
-		PERLIN.setOctaveCount(16);
-
-		NOISE.SetSourceModule(0, PERLIN);
-		NOISE.setxScale(1);
-		NOISE.setyScale(1);
-		NOISE.setzScale(1);
-	}
+			final ScalePoint noise = new ScalePoint();
+			noise.SetSourceModule(0, perlin);
+			noise.setxScale(1);
+			noise.setyScale(1);
+			noise.setzScale(1);
+			return noise;
+		}
+	};
 
 	public TheEndGenerator() {
 		super(VanillaBiomes.ENDSTONE);
@@ -86,12 +91,11 @@ public class TheEndGenerator extends VanillaSingleBiomeGenerator {
 
 	@Override
 	protected void generateTerrain(CuboidBlockMaterialBuffer blockData, int x, int y, int z, BiomeManager biomes, long seed) {
-		PERLIN.setSeed((int) seed * 23);
 		final Vector3 size = blockData.getSize();
 		final int sizeX = size.getFloorX();
 		final int sizeY = size.getFloorY();
 		final int sizeZ = size.getFloorZ();
-		final double[][][] noise = WorldGeneratorUtils.fastNoise(NOISE, sizeX, sizeY, sizeZ, 4, x, y, z);
+		final double[][][] noise = WorldGeneratorUtils.fastNoise(NOISE.get(seed), sizeX, sizeY, sizeZ, 4, x, y, z);
 		for (int xx = 0; xx < sizeX; xx++) {
 			for (int zz = 0; zz < sizeZ; zz++) {
 				final int totalX = x + xx;
@@ -0,0 +1,83 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.ai.sensor;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.spout.api.component.type.EntityComponent;
+import org.spout.api.entity.Entity;
+import org.spout.api.geo.LoadOption;
+import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.geo.discrete.Point;
+
+import org.spout.vanilla.EntityMocker;
+
+public class EntityGridTest {
+	public static class Marker extends EntityComponent {
+	}
+
+	@Test
+	public void testCandidates() {
+		final World world = Mockito.mock(World.class);
+		Mockito.when(world.getAge()).thenReturn(1L);
+		final Entity marked = EntityMocker.mockEntity();
+		marked.add(Marker.class);
+		final Entity unmarked = EntityMocker.mockEntity();
+		final Entity farAway = EntityMocker.mockEntity();
+		farAway.add(Marker.class);
+		final Chunk chunk = Mockito.mock(Chunk.class);
+		Mockito.doReturn(Arrays.asList(marked, unmarked)).when(chunk).getEntities();
+		final Chunk farChunk = Mockito.mock(Chunk.class);
+		Mockito.doReturn(Arrays.asList(farAway)).when(farChunk).getEntities();
+		Mockito.when(world.getChunk(0, 4, 0, LoadOption.NO_LOAD)).thenReturn(chunk);
+		Mockito.when(world.getChunk(10, 4, 0, LoadOption.NO_LOAD)).thenReturn(farChunk);
+		final EntityGrid grid = EntityGrid.get(world);
+		try {
+			final List<Entity> candidates = grid.getCandidates(Marker.class, new Point(world, 8, 72, 8), 8);
+			Assert.assertEquals(Arrays.asList(marked), candidates);
+			// the same cell and radius share one list within a tick
+			Assert.assertSame(candidates, grid.getCandidates(Marker.class, new Point(world, 2, 70, 14), 8));
+			Mockito.verify(world, Mockito.never()).getAll();
+
+			// a new tick reads the chunks again
+			Mockito.when(world.getAge()).thenReturn(2L);
+			Mockito.doReturn(Arrays.asList(unmarked)).when(chunk).getEntities();
+			Assert.assertTrue(grid.getCandidates(Marker.class, new Point(world, 8, 72, 8), 8).isEmpty());
+		} finally {
+			EntityGrid.unload(world);
+		}
+		// unloading drops the grid
+		Assert.assertNotSame(grid, EntityGrid.get(world));
+		EntityGrid.unload(world);
+	}
+}
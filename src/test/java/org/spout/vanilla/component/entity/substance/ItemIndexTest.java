@@ -0,0 +1,164 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.component.entity.substance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.spout.api.component.impl.SceneComponent;
+import org.spout.api.entity.Entity;
+import org.spout.api.geo.World;
+import org.spout.api.geo.discrete.Point;
+
+import org.spout.vanilla.EngineFaker;
+
+public class ItemIndexTest {
+	private static final float RADIUS = 1.5f;
+
+	/**
+	 * An item on a mocked entity, which is at the position last passed to {@link #moveTo}
+	 */
+	private static class TestItem {
+		private final Item item = new Item();
+		private final Entity entity = Mockito.mock(Entity.class);
+		private volatile Point position;
+		private volatile boolean removed = false;
+
+		private TestItem() {
+			final SceneComponent scene = Mockito.mock(SceneComponent.class);
+			Mockito.when(entity.getScene()).thenReturn(scene);
+			Mockito.when(scene.getPosition()).thenAnswer(new Answer<Point>() {
+				@Override
+				public Point answer(InvocationOnMock invocation) {
+					return position;
+				}
+			});
+			Mockito.when(entity.isRemoved()).thenAnswer(new Answer<Boolean>() {
+				@Override
+				public Boolean answer(InvocationOnMock invocation) {
+					return removed;
+				}
+			});
+			item.attachTo(entity);
+		}
+
+		private void moveTo(ItemIndex index, Point position) {
+			this.position = position;
+			index.update(item, position);
+		}
+	}
+
+	@Test
+	public void testNearby() {
+		EngineFaker.setupEngine();
+		final World world = Mockito.mock(World.class);
+		final ItemIndex index = new ItemIndex();
+		Assert.assertTrue(index.getNearby(new Point(world, 0, 64, 0), RADIUS).isEmpty());
+
+		// on both sides of a chunk border
+		final TestItem a = new TestItem();
+		a.moveTo(index, new Point(world, 15.5f, 64, 0));
+		final TestItem b = new TestItem();
+		b.moveTo(index, new Point(world, 16.5f, 64, 0));
+		final TestItem far = new TestItem();
+		far.moveTo(index, new Point(world, 40, 64, 0));
+		Assert.assertEquals(3, index.size());
+
+		List<Entity> nearby = index.getNearby(new Point(world, 16, 64, 0), RADIUS);
+		Assert.assertEquals(2, nearby.size());
+		Assert.assertTrue(nearby.contains(a.entity) && nearby.contains(b.entity));
+
+		// moving into another chunk moves the bucket
+		b.moveTo(index, new Point(world, 39, 64, 0));
+		Assert.assertEquals(3, index.size());
+		Assert.assertEquals(Collections.singletonList(a.entity), index.getNearby(new Point(world, 16, 64, 0), RADIUS));
+		Assert.assertEquals(2, index.getNearby(new Point(world, 39.5f, 64, 0), RADIUS).size());
+
+		// removed entities are dropped when found, items removed from the index right away
+		far.removed = true;
+		Assert.assertEquals(Collections.singletonList(b.entity), index.getNearby(new Point(world, 39.5f, 64, 0), RADIUS));
+		Assert.assertEquals(2, index.size());
+		index.remove(a.item);
+		index.remove(b.item);
+		Assert.assertEquals(0, index.size());
+		Assert.assertTrue(index.getNearby(new Point(world, 16, 64, 0), RADIUS).isEmpty());
+	}
+
+	@Test
+	public void testParallelRegions() throws InterruptedException {
+		EngineFaker.setupEngine();
+		final World world = Mockito.mock(World.class);
+		final ItemIndex index = new ItemIndex();
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		final List<TestItem> all = Collections.synchronizedList(new ArrayList<TestItem>());
+		final List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			// each thread moves the items of its own region, as regions tick
+			final int baseX = t * 512;
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						final List<TestItem> items = new ArrayList<TestItem>();
+						for (int i = 0; i < 50; i++) {
+							items.add(new TestItem());
+						}
+						for (int step = 0; step < 200; step++) {
+							for (int i = 0; i < items.size(); i++) {
+								items.get(i).moveTo(index, new Point(world, baseX + (i * 7 + step) % 500, 64, i));
+							}
+							index.getNearby(new Point(world, baseX + step, 64, 10), RADIUS);
+						}
+						all.addAll(items);
+					} catch (Throwable e) {
+						errors.add(e);
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		if (!errors.isEmpty()) {
+			throw new AssertionError(errors.get(0));
+		}
+		Assert.assertEquals(200, index.size());
+		for (TestItem item : all) {
+			Assert.assertTrue(index.getNearby(item.position, 0.1f).contains(item.entity));
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.component.entity.substance;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.spout.api.component.impl.SceneComponent;
+import org.spout.api.entity.Entity;
+import org.spout.api.geo.World;
+import org.spout.api.geo.discrete.Point;
+import org.spout.api.inventory.ItemStack;
+import org.spout.api.util.Parameter;
+
+import org.spout.vanilla.EntityMocker;
+import org.spout.vanilla.component.entity.misc.Metadata;
+import org.spout.vanilla.material.VanillaMaterials;
+import org.spout.vanilla.protocol.msg.entity.EntityMetadataMessage;
+
+public class ItemTest {
+	private static Item mockItem(World world, int id, Point position, ItemStack stack) {
+		final Entity entity = EntityMocker.mockEntity();
+		final SceneComponent scene = Mockito.mock(SceneComponent.class);
+		Mockito.when(scene.getPosition()).thenReturn(position);
+		Mockito.when(entity.getScene()).thenReturn(scene);
+		Mockito.when(entity.getWorld()).thenReturn(world);
+		Mockito.when(entity.getId()).thenReturn(id);
+		// attached without the network setup of onAttached
+		final Item item = new Item();
+		item.attachTo(entity);
+		item.setItemStack(stack);
+		return item;
+	}
+
+	@Test
+	public void testMerge() {
+		final World world = Mockito.mock(World.class);
+		try {
+			final Item first = mockItem(world, 1, new Point(world, 0.5f, 64, 0.5f), new ItemStack(VanillaMaterials.COBBLESTONE, 10));
+			final Item second = mockItem(world, 2, new Point(world, 1.5f, 64, 0.5f), new ItemStack(VanillaMaterials.COBBLESTONE, 20));
+			final Item other = mockItem(world, 3, new Point(world, 1f, 64, 1f), new ItemStack(VanillaMaterials.DIRT, 5));
+			// too far away
+			final Item far = mockItem(world, 4, new Point(world, 5.5f, 64, 0.5f), new ItemStack(VanillaMaterials.COBBLESTONE, 5));
+
+			// register in the index, without reaching the merge interval
+			second.onTick(0.1f);
+			other.onTick(0.1f);
+			far.onTick(0.1f);
+			final Metadata metadata = first.getOwner().get(Metadata.class);
+			Mockito.when(world.getAge()).thenReturn(1L);
+			metadata.getUpdateMessage();
+			final long merges = Item.getMergeCount();
+
+			first.onTick(1f);
+			Assert.assertEquals(30, first.getItemStack().getAmount());
+			Assert.assertEquals(merges + 1, Item.getMergeCount());
+			Mockito.verify(second.getOwner()).remove();
+			Mockito.verify(other.getOwner(), Mockito.never()).remove();
+			Mockito.verify(far.getOwner(), Mockito.never()).remove();
+			Assert.assertEquals(3, ItemIndex.get(world).size());
+
+			// viewers are sent the new amount
+			Mockito.when(world.getAge()).thenReturn(2L);
+			final EntityMetadataMessage message = metadata.getUpdateMessage();
+			Assert.assertNotNull(message);
+			final Parameter<?> parameter = message.getParameters().get(0);
+			Assert.assertEquals(10, parameter.getIndex());
+			Assert.assertEquals(30, ((ItemStack) parameter.getValue()).getAmount());
+		} finally {
+			ItemIndex.unload(world);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.inventory.recipe;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.api.inventory.recipe.Recipe;
+import org.spout.api.inventory.recipe.RecipeBuilder;
+import org.spout.api.material.Material;
+
+import org.spout.vanilla.EngineFaker;
+import org.spout.vanilla.material.VanillaMaterials;
+
+public class RecipeIndexTest {
+	private static Recipe shaped(String... rows) {
+		RecipeBuilder builder = new RecipeBuilder();
+		builder.setResult(VanillaMaterials.STONE, 1);
+		builder.setIngredient('c', VanillaMaterials.COBBLESTONE);
+		builder.setIngredient('d', VanillaMaterials.DIRT);
+		for (String row : rows) {
+			Character[] chars = new Character[row.length()];
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = row.charAt(i);
+			}
+			builder.addRow(Arrays.asList(chars));
+		}
+		return builder.buildShapedRecipe();
+	}
+
+	private static Recipe shapeless(Material... ingredients) {
+		RecipeBuilder builder = new RecipeBuilder();
+		builder.setResult(VanillaMaterials.STONE, 1);
+		for (Material ingredient : ingredients) {
+			builder.addIngredient(ingredient);
+		}
+		return builder.buildShapelessRecipe();
+	}
+
+	@Test
+	public void testShaped() {
+		EngineFaker.setupEngine();
+		final RecipeIndex index = new RecipeIndex();
+		final Recipe recipe = shaped("cd", " c");
+		index.add(recipe);
+		final Material c = VanillaMaterials.COBBLESTONE, d = VanillaMaterials.DIRT;
+
+		// the grid starts with the bottom row, and the shape may be anywhere in it
+		Assert.assertSame(recipe, index.match(new Material[] {null, c, c, d}, 2));
+		Assert.assertSame(recipe, index.match(new Material[] {
+				null, null, null,
+				null, null, c,
+				null, c, d}, 3));
+		// mirrored, or with an extra cell
+		Assert.assertNull(index.match(new Material[] {c, null, d, c}, 2));
+		Assert.assertNull(index.match(new Material[] {c, c, c, d}, 2));
+		Assert.assertNull(index.match(new Material[4], 2));
+	}
+
+	@Test
+	public void testShapeless() {
+		EngineFaker.setupEngine();
+		final RecipeIndex index = new RecipeIndex();
+		final Recipe recipe = shapeless(VanillaMaterials.DIRT, VanillaMaterials.COBBLESTONE, VanillaMaterials.DIRT);
+		index.add(recipe);
+		final Material c = VanillaMaterials.COBBLESTONE, d = VanillaMaterials.DIRT;
+
+		Assert.assertSame(recipe, index.match(new Material[] {d, null, c, d}, 2));
+		Assert.assertSame(recipe, index.match(new Material[] {null, c, d, null, null, null, null, null, d}, 3));
+		Assert.assertNull(index.match(new Material[] {d, null, c, null}, 2));
+		Assert.assertNull(index.match(new Material[] {d, c, c, d}, 2));
+
+		// shaped recipes take precedence
+		final Recipe shaped = shaped("dc", "d ");
+		index.add(shaped);
+		Assert.assertSame(shaped, index.match(new Material[] {d, null, d, c}, 2));
+		Assert.assertSame(recipe, index.match(new Material[] {d, d, null, c}, 2));
+
+		index.clear();
+		Assert.assertNull(index.match(new Material[] {d, null, c, d}, 2));
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.protocol.netcache;
+
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import org.spout.api.geo.World;
+import org.spout.api.protocol.event.ProtocolEvent;
+
+import org.spout.vanilla.EngineFaker;
+
+public class ColumnPayloadCacheTest {
+	private static ColumnPayload createPayload() {
+		return new ColumnPayload(new byte[][]{new byte[100]}, new byte[256], new ArrayList<ProtocolEvent>());
+	}
+
+	@Test
+	public void testInvalidation() {
+		EngineFaker.setupEngine();
+		World world = Mockito.mock(World.class);
+		Mockito.when(world.getName()).thenReturn("cache_test");
+		ColumnPayloadCache cache = ColumnPayloadCache.INSTANCE;
+		cache.clear();
+
+		// changes of columns which are not cached do not add entries
+		cache.invalidate(world, 5, 5);
+		Assert.assertEquals(0, cache.getSize());
+
+		ColumnPayload payload = createPayload();
+		cache.put(world, 1, 2, 0, cache.getStamp(), payload);
+		Assert.assertSame(payload, cache.get(world, 1, 2, 0));
+		Assert.assertNull(cache.get(world, 1, 2, 1));
+
+		cache.invalidate(world, 1, 2);
+		Assert.assertNull(cache.get(world, 1, 2, 0));
+		Assert.assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void testChangeWhileBuilding() {
+		EngineFaker.setupEngine();
+		World world = Mockito.mock(World.class);
+		Mockito.when(world.getName()).thenReturn("cache_test");
+		ColumnPayloadCache cache = ColumnPayloadCache.INSTANCE;
+		cache.clear();
+
+		// the column changes after the payload was started, it must not be stored
+		long stamp = cache.getStamp();
+		cache.invalidate(world, 3, -4);
+		cache.put(world, 3, -4, 0, stamp, createPayload());
+		Assert.assertNull(cache.get(world, 3, -4, 0));
+
+		// a payload started after the change is stored
+		ColumnPayload payload = createPayload();
+		cache.put(world, 3, -4, 0, cache.getStamp(), payload);
+		Assert.assertSame(payload, cache.get(world, 3, -4, 0));
+		cache.clear();
+	}
+}
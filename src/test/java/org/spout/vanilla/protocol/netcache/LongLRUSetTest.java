@@ -0,0 +1,74 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.protocol.netcache;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongLRUSetTest {
+	@Test
+	public void testEviction() {
+		LongLRUSet set = new LongLRUSet(3);
+		Assert.assertTrue(set.add(1L));
+		Assert.assertTrue(set.add(2L));
+		Assert.assertTrue(set.add(3L));
+		Assert.assertFalse(set.add(1L));
+		Assert.assertTrue(set.add(4L));
+		Assert.assertEquals(3, set.size());
+		Assert.assertTrue(set.contains(1L));
+		Assert.assertFalse(set.contains(2L));
+		Assert.assertTrue(set.contains(3L));
+		Assert.assertTrue(set.contains(4L));
+	}
+
+	@Test
+	public void testChurn() {
+		Random random = new Random(1);
+		LongLRUSet set = new LongLRUSet(64);
+		for (int i = 0; i < 100000; i++) {
+			set.add(random.nextInt(256));
+			Assert.assertTrue(set.size() <= 64);
+		}
+		long last = 1000L;
+		set.add(last);
+		Assert.assertTrue(set.contains(last));
+		set.clear();
+		Assert.assertEquals(0, set.size());
+		Assert.assertFalse(set.contains(last));
+	}
+
+	@Test
+	public void testPaddedHash() {
+		byte[] data = new byte[1000];
+		new Random(2).nextBytes(data);
+		byte[] padded = Arrays.copyOf(data, 2048);
+		Assert.assertEquals(PartitionChunk.hash(padded), PartitionChunk.hash(data, 0, data.length, 2048));
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.util.explosion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+import org.spout.api.geo.World;
+import org.spout.api.geo.discrete.Point;
+
+import org.spout.vanilla.EngineFaker;
+import org.spout.vanilla.material.VanillaMaterials;
+
+public class ExplosionModelSphericalTest {
+	private static final int ROUNDS = 10;
+
+	@Test
+	public void testParallelGrowth() throws InterruptedException {
+		EngineFaker.setupEngine();
+		final World world = Mockito.mock(World.class);
+		Mockito.when(world.getBlockMaterial(Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt())).thenReturn(VanillaMaterials.AIR);
+		final Point position = new Point(world, 0, 64, 0);
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		for (int round = 0; round < ROUNDS; round++) {
+			final ExplosionModelSpherical model = new ExplosionModelSpherical();
+			final CountDownLatch start = new CountDownLatch(1);
+			Thread small = new ExplosionThread(model, position, 3f, start, errors);
+			Thread large = new ExplosionThread(model, position, 8f, start, errors);
+			small.start();
+			large.start();
+			start.countDown();
+			small.join();
+			large.join();
+		}
+		if (!errors.isEmpty()) {
+			throw new AssertionError(errors.get(0));
+		}
+	}
+
+	/**
+	 * Gets the distance in blocks an explosion through air reaches at the least
+	 * @param size of the explosion
+	 * @return the distance
+	 */
+	private static double getMinimumReach(float size) {
+		// the weakest source damage loses 0.225 per layer, layers are 0.3 blocks apart
+		int layers = (int) (size * 0.7f / 0.225f);
+		return (layers - 1) * 0.3 - 1.0;
+	}
+
+	private static class ExplosionThread extends Thread {
+		private final ExplosionModelSpherical model;
+		private final Point position;
+		private final float size;
+		private final CountDownLatch start;
+		private final List<Throwable> errors;
+
+		public ExplosionThread(ExplosionModelSpherical model, Point position, float size, CountDownLatch start, List<Throwable> errors) {
+			this.model = model;
+			this.position = position;
+			this.size = size;
+			this.start = start;
+			this.errors = errors;
+		}
+
+		@Override
+		public void run() {
+			try {
+				start.await();
+				for (int i = 0; i < 3; i++) {
+					TIntArrayList destroyed = model.getDestroyedBlocks(position, size);
+					double reach = 0.0;
+					for (int j = 0; j < destroyed.size(); j += 3) {
+						double dx = destroyed.get(j) - position.getBlockX();
+						double dy = destroyed.get(j + 1) - position.getBlockY();
+						double dz = destroyed.get(j + 2) - position.getBlockZ();
+						reach = Math.max(reach, Math.sqrt(dx * dx + dy * dy + dz * dz));
+					}
+					Assert.assertTrue("Explosion of size " + size + " was cut short at " + reach, reach >= getMinimumReach(size));
+				}
+			} catch (Throwable t) {
+				errors.add(t);
+			}
+		}
+	}
+}
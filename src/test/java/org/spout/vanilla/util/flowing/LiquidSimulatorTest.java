@@ -0,0 +1,117 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.util.flowing;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import org.spout.api.event.Cause;
+import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Block;
+import org.spout.api.geo.cuboid.Region;
+import org.spout.api.material.BlockMaterial;
+import org.spout.api.scheduler.TaskManager;
+import org.spout.api.scheduler.TaskPriority;
+import org.spout.api.util.cuboid.CuboidBlockMaterialBuffer;
+
+import org.spout.vanilla.EngineFaker;
+import org.spout.vanilla.material.VanillaMaterials;
+
+public class LiquidSimulatorTest {
+	private static Block mockBlock(World world, Region region, int x, int y, int z) {
+		Block block = Mockito.mock(Block.class);
+		Mockito.when(block.getRegion()).thenReturn(region);
+		Mockito.when(block.getX()).thenReturn(x);
+		Mockito.when(block.getY()).thenReturn(y);
+		Mockito.when(block.getZ()).thenReturn(z);
+		Mockito.when(world.getBlock(x, y, z)).thenReturn(block);
+		return block;
+	}
+
+	@Test
+	public void testBatchLifecycle() {
+		EngineFaker.setupEngine();
+		final World world = Mockito.mock(World.class);
+		final Region region = Mockito.mock(Region.class);
+		final TaskManager taskManager = Mockito.mock(TaskManager.class);
+		Mockito.when(region.getWorld()).thenReturn(world);
+		Mockito.when(region.getTaskManager()).thenReturn(taskManager);
+		Mockito.when(world.getCuboid(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt())).thenReturn(Mockito.mock(CuboidBlockMaterialBuffer.class));
+		final int batches = LiquidSimulator.getBatchCount();
+
+		// one task for cells queued before it runs
+		LiquidSimulator.queue(mockBlock(world, region, 1, 2, 3));
+		LiquidSimulator.queue(mockBlock(world, region, 40, 2, 3));
+		Assert.assertEquals(batches + 1, LiquidSimulator.getBatchCount());
+		ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+		Mockito.verify(taskManager).scheduleSyncDelayedTask(Mockito.any(), task.capture(), Mockito.any(TaskPriority.class));
+
+		// a drained batch is dropped
+		task.getValue().run();
+		Assert.assertEquals(batches, LiquidSimulator.getBatchCount());
+
+		// and the next update schedules a new one
+		LiquidSimulator.queue(mockBlock(world, region, 1, 2, 3));
+		Assert.assertEquals(batches + 1, LiquidSimulator.getBatchCount());
+		Mockito.verify(taskManager, Mockito.times(2)).scheduleSyncDelayedTask(Mockito.any(), Mockito.any(Runnable.class), Mockito.any(TaskPriority.class));
+
+		// unloading the world drops a batch that never ran
+		LiquidSimulator.unload(world);
+		Assert.assertEquals(batches, LiquidSimulator.getBatchCount());
+		LiquidSimulator.queue(mockBlock(world, region, 1, 2, 3));
+		Mockito.verify(taskManager, Mockito.times(3)).scheduleSyncDelayedTask(Mockito.any(), Mockito.any(Runnable.class), Mockito.any(TaskPriority.class));
+		LiquidSimulator.unload(world);
+	}
+
+	@Test
+	public void testSimulateOnBuffer() {
+		EngineFaker.setupEngine();
+		final World world = Mockito.mock(World.class);
+		final Region region = Mockito.mock(Region.class);
+		final TaskManager taskManager = Mockito.mock(TaskManager.class);
+		Mockito.when(region.getWorld()).thenReturn(world);
+		Mockito.when(region.getTaskManager()).thenReturn(taskManager);
+		// a water source surrounded by air
+		final CuboidBlockMaterialBuffer blocks = Mockito.mock(CuboidBlockMaterialBuffer.class);
+		Mockito.when(blocks.get(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt())).thenReturn(VanillaMaterials.AIR);
+		Mockito.when(blocks.get(1, 64, 3)).thenReturn(VanillaMaterials.WATER);
+		Mockito.when(world.getCuboid(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt())).thenReturn(blocks);
+
+		LiquidSimulator.queue(mockBlock(world, region, 1, 64, 3));
+		ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+		Mockito.verify(taskManager).scheduleSyncDelayedTask(Mockito.any(), task.capture(), Mockito.any(TaskPriority.class));
+		task.getValue().run();
+
+		// the chunk is read once, and only the block the water flowed into is written
+		Mockito.verify(world, Mockito.times(1)).getCuboid(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt());
+		Mockito.verify(world).setBlockMaterial(1, 63, 3, VanillaMaterials.WATER, (short) 0x8, null);
+		Mockito.verify(world, Mockito.times(1)).setBlockMaterial(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt(), Mockito.any(BlockMaterial.class), Mockito.anyShort(), Mockito.<Cause<?>>any());
+		Mockito.verify(world, Mockito.never()).getBlock(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyInt());
+	}
+}
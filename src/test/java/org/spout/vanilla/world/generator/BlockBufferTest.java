@@ -0,0 +1,87 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.world.generator;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+import org.spout.api.event.Cause;
+import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.material.BlockMaterial;
+import org.spout.api.util.cuboid.CuboidBlockMaterialBuffer;
+
+import org.spout.vanilla.EngineFaker;
+import org.spout.vanilla.material.VanillaMaterials;
+
+public class BlockBufferTest {
+	@Test
+	public void testChangedBlocksOnly() {
+		EngineFaker.setupEngine();
+		final World world = Mockito.mock(World.class);
+		final CuboidBlockMaterialBuffer snapshot = Mockito.mock(CuboidBlockMaterialBuffer.class);
+		Mockito.when(snapshot.get(Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt())).thenReturn(VanillaMaterials.STONE);
+		Mockito.when(world.getCuboid(Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt())).thenReturn(snapshot);
+		Mockito.when(world.getBlockMaterial(Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt())).thenReturn(VanillaMaterials.DIRT);
+		final Chunk chunk = Mockito.mock(Chunk.class);
+		Mockito.when(chunk.getWorld()).thenReturn(world);
+		Mockito.when(chunk.getX()).thenReturn(1);
+		Mockito.when(chunk.getY()).thenReturn(4);
+		Mockito.when(chunk.getZ()).thenReturn(-1);
+
+		final BlockBuffer buffer = new BlockBuffer(chunk);
+		// inside of the column, served from the snapshot and written on commit
+		Assert.assertEquals(VanillaMaterials.STONE, buffer.getBlockMaterial(20, 70, -5));
+		buffer.setBlockMaterial(20, 70, -5, VanillaMaterials.COAL_ORE);
+		buffer.setBlockMaterial(20, 70, -5, VanillaMaterials.COAL_ORE);
+		verifyWrites(world, 20, 70, -5, 0);
+		// outside of the column, accessed directly
+		Assert.assertEquals(VanillaMaterials.DIRT, buffer.getBlockMaterial(33, 70, -5));
+		buffer.setBlockMaterial(33, 70, -5, VanillaMaterials.COAL_ORE);
+		verifyWrites(world, 33, 70, -5, 1);
+
+		// the chunk is read again, and written back with only the changed block replaced
+		final CuboidBlockMaterialBuffer current = Mockito.mock(CuboidBlockMaterialBuffer.class);
+		Mockito.when(world.getCuboid(Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt())).thenReturn(current);
+		Mockito.when(snapshot.get(20, 70, -5)).thenReturn(VanillaMaterials.COAL_ORE);
+		buffer.commit();
+		Mockito.verify(current).set(20, 70, -5, VanillaMaterials.COAL_ORE);
+		Mockito.verify(current, Mockito.times(1)).set(Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt(), Matchers.any(BlockMaterial.class));
+		Mockito.verify(world, Mockito.times(1)).setCuboid(current, null);
+		// only the write outside of the column went block by block
+		Mockito.verify(world, Mockito.times(1)).setBlockMaterial(Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt(), Matchers.any(BlockMaterial.class), Matchers.anyShort(), Matchers.<Cause<?>>any());
+		// nothing is left to write
+		buffer.commit();
+		Mockito.verify(world, Mockito.times(1)).setCuboid(Matchers.any(CuboidBlockMaterialBuffer.class), Matchers.<Cause<?>>any());
+	}
+
+	private static void verifyWrites(World world, int x, int y, int z, int times) {
+		Mockito.verify(world, Mockito.times(times)).setBlockMaterial(Matchers.eq(x), Matchers.eq(y), Matchers.eq(z), Matchers.any(BlockMaterial.class), Matchers.eq((short) 0), Matchers.<Cause<?>>any());
+	}
+}
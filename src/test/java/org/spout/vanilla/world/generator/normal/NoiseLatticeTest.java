@@ -0,0 +1,74 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.world.generator.normal;
+
+import net.royawesome.jlibnoise.NoiseQuality;
+import net.royawesome.jlibnoise.module.modifier.ScalePoint;
+import net.royawesome.jlibnoise.module.source.Perlin;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.spout.api.generator.WorldGeneratorUtils;
+
+public class NoiseLatticeTest {
+	private static ScalePoint createNoise() {
+		final Perlin perlin = new Perlin();
+		perlin.setFrequency(0.02);
+		perlin.setNoiseQuality(NoiseQuality.STANDARD);
+		perlin.setOctaveCount(4);
+		perlin.setSeed(42);
+		final ScalePoint noise = new ScalePoint();
+		noise.SetSourceModule(0, perlin);
+		return noise;
+	}
+
+	private static void assertMatchesTerrain(ScalePoint noise, int x, int y, int z, int sizeX, int sizeZ, int offsetX, int offsetZ, int width) {
+		final double[][][] terrain = WorldGeneratorUtils.fastNoise(noise, sizeX, 16, sizeZ, 4, x, y, z);
+		final NormalGenerator.NoiseLattice lattice = new NormalGenerator.NoiseLattice(noise, x + offsetX, z + offsetZ, width, width);
+		for (int xx = 0; xx < width; xx++) {
+			for (int yy = 0; yy < 16; yy++) {
+				for (int zz = 0; zz < width; zz++) {
+					Assert.assertEquals(terrain[xx + offsetX][yy][zz + offsetZ], lattice.get(xx, y + yy, zz), 1e-6);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testChunk() {
+		assertMatchesTerrain(createNoise(), -32, 64, 48, 16, 16, 0, 0, 16);
+	}
+
+	@Test
+	public void testColumn() {
+		// a single column off the lattice, like the spawn search uses
+		final ScalePoint noise = createNoise();
+		assertMatchesTerrain(noise, 16, 48, -16, 16, 16, 7, 13, 1);
+		assertMatchesTerrain(noise, -16, 48, -16, 16, 16, 5, 2, 1);
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * This file is part of Vanilla.
+ *
+ * Copyright (c) 2011-2012, Spout LLC <http://www.spout.org/>
+ * Vanilla is licensed under the Spout License Version 1.
+ *
+ * Vanilla is free software: you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * In addition, 180 days after any changes are published, you can use the
+ * software, incorporating those changes, under the terms of the MIT license,
+ * as described in the Spout License Version 1.
+ *
+ * Vanilla is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License,
+ * the MIT license and the Spout License Version 1 along with this program.
+ * If not, see <http://www.gnu.org/licenses/> for the GNU Lesser General Public
+ * License and see <http://spout.in/licensev1> for the full license, including
+ * the MIT license.
+ */
+package org.spout.vanilla.world.generator.structure;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.hamcrest.BaseMatcher;
+import org.hamcrest.Description;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.spout.api.event.Cause;
+import org.spout.api.geo.World;
+import org.spout.api.geo.cuboid.Chunk;
+import org.spout.api.geo.discrete.Point;
+import org.spout.api.material.BlockMaterial;
+import org.spout.api.math.Vector3;
+
+import org.spout.vanilla.EngineFaker;
+import org.spout.vanilla.material.VanillaMaterials;
+import org.spout.vanilla.world.generator.structure.StructurePiece.BoundingBox;
+
+public class StructureTest {
+	@Test
+	public void testClippedWrites() {
+		EngineFaker.setupEngine();
+		final World world = mockWorld(-1);
+		final TestStructure structure = new TestStructure(false);
+		structure.plan(world, 10, 64, 0);
+
+		structure.placePieces(mockChunk(world, 0, 4, 0));
+		structure.placePieces(mockChunk(world, 1, 4, 0));
+		// not overlapping the piece
+		structure.placePieces(mockChunk(world, 0, 3, 0));
+
+		// every block of the row is written once, by the chunk it is in
+		for (int x = 10; x <= 20; x++) {
+			verifyWrites(world, x, 64, 0, 1);
+		}
+		Mockito.verify(world, Mockito.times(11)).setBlockMaterial(Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt(),
+				Matchers.any(BlockMaterial.class), Matchers.anyShort(), Matchers.<Cause<?>>any());
+	}
+
+	@Test
+	public void testFillAcrossChunks() {
+		EngineFaker.setupEngine();
+		// solid ground at 65 stops the fill right away, even for the chunk below
+		final World world = mockWorld(65);
+		final TestStructure structure = new TestStructure(true);
+		structure.plan(world, 0, 66, 0);
+
+		structure.placePieces(mockChunk(world, 0, 3, 0));
+		structure.placePieces(mockChunk(world, 0, 4, 0));
+
+		verifyWrites(world, 0, 66, 0, 1);
+		Mockito.verify(world, Mockito.times(1)).setBlockMaterial(Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt(),
+				Matchers.any(BlockMaterial.class), Matchers.anyShort(), Matchers.<Cause<?>>any());
+	}
+
+	@Test
+	public void testPlanningReadsNoBlocks() {
+		EngineFaker.setupEngine();
+		final World world = mockWorld(-1);
+		final TestStructure structure = new TestStructure(false);
+		structure.plan(world, 10, 64, 0);
+		Assert.assertEquals(1, structure.getPieces().size());
+		Mockito.verify(world, Mockito.never()).getBlockMaterial(Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt());
+	}
+
+	@Test
+	public void testFillStaysInColumn() {
+		EngineFaker.setupEngine();
+		// no ground at all, the fill runs out of the column at 0
+		final World world = mockWorld(-1);
+		Mockito.when(world.getBlockMaterial(Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt())).thenReturn(VanillaMaterials.AIR);
+		final TestStructure structure = new TestStructure(true);
+		structure.plan(world, 0, 10, 0);
+
+		structure.placePieces(mockChunk(world, 0, 0, 0));
+
+		verifyWrites(world, 0, 0, 0, 1);
+		Mockito.verify(world, Mockito.times(11)).setBlockMaterial(Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt(),
+				Matchers.any(BlockMaterial.class), Matchers.anyShort(), Matchers.<Cause<?>>any());
+		Mockito.verify(world, Mockito.never()).getBlockMaterial(Matchers.anyInt(), Matchers.intThat(new BaseMatcher<Integer>() {
+			@Override
+			public boolean matches(Object item) {
+				return (Integer) item < 0;
+			}
+
+			@Override
+			public void describeTo(Description description) {
+				description.appendText("below the column");
+			}
+		}), Matchers.anyInt());
+	}
+
+	private static void verifyWrites(World world, int x, int y, int z, int times) {
+		Mockito.verify(world, Mockito.times(times)).setBlockMaterial(Matchers.eq(x), Matchers.eq(y), Matchers.eq(z),
+				Matchers.any(BlockMaterial.class), Matchers.anyShort(), Matchers.<Cause<?>>any());
+	}
+
+	/**
+	 * Creates a world of air, with stone below y 40 and at the solid height
+	 */
+	private static World mockWorld(final int solidY) {
+		final World world = Mockito.mock(World.class);
+		Mockito.when(world.getBlockMaterial(Matchers.anyInt(), Matchers.anyInt(), Matchers.anyInt())).thenAnswer(new Answer<BlockMaterial>() {
+			@Override
+			public BlockMaterial answer(InvocationOnMock invocation) {
+				final int y = (Integer) invocation.getArguments()[1];
+				return y < 40 || y == solidY ? VanillaMaterials.STONE : VanillaMaterials.AIR;
+			}
+		});
+		return world;
+	}
+
+	private static Chunk mockChunk(World world, int x, int y, int z) {
+		final Chunk chunk = Mockito.mock(Chunk.class);
+		Mockito.when(chunk.getWorld()).thenReturn(world);
+		Mockito.when(chunk.getX()).thenReturn(x);
+		Mockito.when(chunk.getY()).thenReturn(y);
+		Mockito.when(chunk.getZ()).thenReturn(z);
+		Mockito.when(chunk.getBlockX()).thenReturn(x << Chunk.BLOCKS.BITS);
+		Mockito.when(chunk.getBlockY()).thenReturn(y << Chunk.BLOCKS.BITS);
+		Mockito.when(chunk.getBlockZ()).thenReturn(z << Chunk.BLOCKS.BITS);
+		return chunk;
+	}
+
+	private static class TestStructure extends Structure {
+		private final boolean pillar;
+
+		private TestStructure(boolean pillar) {
+			this.pillar = pillar;
+		}
+
+		@Override
+		public void plan(World w, int x, int y, int z) {
+			clearPieces();
+			final StructurePiece piece = pillar ? new PillarPiece(this) : new RowPiece(this);
+			piece.setPosition(new Point(w, x, y, z));
+			if (piece.canPlace()) {
+				addPiece(piece);
+			}
+		}
+
+		@Override
+		public boolean canPlaceObject(World w, int x, int y, int z) {
+			return true;
+		}
+
+		@Override
+		public void placeObject(World w, int x, int y, int z) {
+			plan(w, x, y, z);
+			placePieces();
+		}
+	}
+
+	private static abstract class TestPiece extends StructurePiece {
+		private TestPiece(Structure parent) {
+			super(parent);
+		}
+
+		@Override
+		public boolean canPlace() {
+			final PieceCuboidBuilder box = new PieceCuboidBuilder(this);
+			box.setMinMax(-1, -1, -1, 1, 1, 1);
+			return !box.intersectsLiquids();
+		}
+
+		@Override
+		public void randomize() {
+		}
+
+		@Override
+		public List<StructurePiece> getNextComponents() {
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * A row of 11 blocks along x, crossing a chunk border
+	 */
+	private static class RowPiece extends TestPiece {
+		private RowPiece(Structure parent) {
+			super(parent);
+		}
+
+		@Override
+		public void place() {
+			for (int xx = 0; xx <= 10; xx++) {
+				setBlockMaterial(xx, 0, 0, VanillaMaterials.COBBLESTONE);
+			}
+		}
+
+		@Override
+		public BoundingBox getBoundingBox() {
+			return new BoundingBox(position, position.add(new Vector3(10, 0, 0)));
+		}
+	}
+
+	/**
+	 * A pillar filled downwards, crossing a chunk border
+	 */
+	private static class PillarPiece extends TestPiece {
+		private PillarPiece(Structure parent) {
+			super(parent);
+		}
+
+		@Override
+		public void place() {
+			fillDownwards(0, 0, 0, 20, VanillaMaterials.COBBLESTONE);
+		}
+
+		@Override
+		public BoundingBox getBoundingBox() {
+			return new BoundingBox(position.subtract(new Vector3(0, 20, 0)), position);
+		}
+	}
+}